@@ -0,0 +1,105 @@
+package benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heavy mixes of insert and delete calls on a tree that keeps its size.
+ * <p>
+ * The keys 0, 1, ..., 2 * size - 1 are split in random order into the ones
+ * in the tree and the ones not in it. Every call of
+ * <code>deleteAndInsert</code> deletes a random key of the tree and inserts a
+ * random key that is not in it, so every insert and delete changes the tree.
+ * <code>deleteNearRoot</code> deletes and reinserts the elements around the
+ * median, which are close to the root, where a deletion is the most
+ * expensive.
+ * <p>
+ * Run with <code>java -jar target/benchmarks.jar ChurnBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+public class ChurnBenchmark {
+
+	private static final int MIDDLE = 64;
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "AVLTree" })
+	public String implementation;
+
+	private Object tree;
+	private Integer[] keys; // the first size keys are in the tree
+	private Integer[] middle; // the elements around the median
+	private SplittableRandom random;
+	private int next;
+
+	/**
+	 * Builds the tree in random order
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		int[] order = Keys.random(2 * size, 7);
+		keys = new Integer[order.length];
+		for (int i = 0; i < order.length; i++) {
+			keys[i] = order[i];
+		}
+		tree = Trees.create(implementation);
+		for (int i = 0; i < size; i++) {
+			Trees.insert(tree, keys[i]);
+		}
+		middle = new Integer[MIDDLE];
+		for (int i = 0; i < MIDDLE; i++) {
+			middle[i] = (Integer) Trees.select(tree, size / 2 - MIDDLE / 2 + i);
+		}
+		random = new SplittableRandom(7);
+	}
+
+	/**
+	 * Deletes a random element and inserts a random absent key, the time is
+	 * per call
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void deleteAndInsert() throws Throwable {
+		int present = random.nextInt(size);
+		int absent = size + random.nextInt(size);
+		Integer deleted = keys[present];
+		Integer inserted = keys[absent];
+		Trees.delete(tree, deleted);
+		Trees.insert(tree, inserted);
+		keys[present] = inserted;
+		keys[absent] = deleted;
+	}
+
+	/**
+	 * Deletes an element close to the root and inserts it again, the time is
+	 * per call
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void deleteNearRoot() throws Throwable {
+		Integer key = middle[next];
+		next = (next + 1) & (MIDDLE - 1);
+		Trees.delete(tree, key);
+		Trees.insert(tree, key);
+	}
+}
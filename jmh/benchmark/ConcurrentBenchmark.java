@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of a tree shared by many threads. ConcurrentAVLTree is compared
+ * with an AVLTree guarded by one global lock, for a read mostly mix (90%
+ * contains) and a mix of only inserts and deletes.
+ * <p>
+ * The tree holds the even numbers 0, 2, ..., 2 * (size - 1). Every thread
+ * owns its own odd keys and alternates between inserting one at a random
+ * place and deleting it again, so every write changes the tree and writers
+ * mostly work in disjoint subtrees.
+ * <p>
+ * <code>main</code> runs the benchmark with 1, 2, 4, ..., 32 threads and the
+ * allocation profiler and prints a summary:
+ * <code>java -cp target/benchmarks.jar benchmark.ConcurrentBenchmark</code>.
+ * The threads only scale up to the number of cores of the machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ConcurrentBenchmark {
+
+	@Param({ "1000000" })
+	public int size;
+
+	@Param({ "ConcurrentAVLTree", "AVLTree" })
+	public String implementation;
+
+	@Param({ "90", "0" })
+	public int reads; // percentage of contains calls
+
+	private Object tree;
+	private boolean global; // whether every call is guarded by the global lock
+	private Integer[] present;
+
+	/**
+	 * The keys and the pending insertion of a thread
+	 */
+	@State(Scope.Thread)
+	public static class Worker {
+		private final SplittableRandom random = new SplittableRandom();
+		private int index, threads;
+		private Integer inserted; // the odd key inserted by the last write, deleted by the next one
+
+		/**
+		 * @param params The position of the thread among the benchmark threads
+		 */
+		@Setup(Level.Trial)
+		public void setUp(ThreadParams params) {
+			index = params.getThreadIndex();
+			threads = params.getThreadCount();
+		}
+
+		/**
+		 * @param size Number of elements in the tree
+		 * @return A random odd key that belongs to this thread
+		 */
+		private Integer freeKey(int size) {
+			int slot = random.nextInt(size / threads) * threads + index;
+			return 2 * slot + 1;
+		}
+	}
+
+	/**
+	 * Builds the tree in random order
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		tree = Trees.create(implementation);
+		global = !implementation.equals("ConcurrentAVLTree");
+		present = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			present[i] = 2 * i;
+		}
+		for (int key : Keys.random(size, 3)) {
+			Trees.insert(tree, present[key]);
+		}
+	}
+
+	/**
+	 * Runs one call of the mix
+	 *
+	 * @param worker The state of the calling thread
+	 * @return The result of a contains call, false for a write
+	 */
+	@Benchmark
+	public boolean mix(Worker worker) throws Throwable {
+		if (global) {
+			synchronized (this) {
+				return call(worker);
+			}
+		}
+		return call(worker);
+	}
+
+	/**
+	 * @param worker The state of the calling thread
+	 * @return The result of a contains call, false for a write
+	 */
+	private boolean call(Worker worker) throws Throwable {
+		if (worker.random.nextInt(100) < reads) {
+			return Trees.contains(tree, present[worker.random.nextInt(size)]);
+		}
+		if (worker.inserted == null) {
+			worker.inserted = worker.freeKey(size);
+			Trees.insert(tree, worker.inserted);
+		} else {
+			Trees.delete(tree, worker.inserted);
+			worker.inserted = null;
+		}
+		return false;
+	}
+
+	/**
+	 * Runs the benchmark with 1 to 32 threads
+	 *
+	 * @param args Not used
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		List<RunResult> results = new ArrayList<>();
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			Options options = new OptionsBuilder()
+					.include(ConcurrentBenchmark.class.getName())
+					.threads(threads)
+					.addProfiler(GCProfiler.class)
+					.build();
+			Collection<RunResult> run = new Runner(options).run();
+			results.addAll(run);
+		}
+		System.out.printf("%n%-18s %5s %7s %14s%n", "implementation", "reads", "threads", "ops/us");
+		for (RunResult result : results) {
+			System.out.printf("%-18s %4s%% %7d %14.3f%n", result.getParams().getParam("implementation"),
+					result.getParams().getParam("reads"), result.getParams().getThreads(),
+					result.getPrimaryResult().getScore());
+		}
+	}
+}
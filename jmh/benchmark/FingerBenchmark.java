@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts and searches of AVLTree through a cursor, which starts at the
+ * last position instead of the root, compared with the calls on the tree,
+ * for monotonic, nearly sorted and random streams of 2^20 distinct keys.
+ * <p>
+ * In the nearly sorted stream every tenth key arrives up to 100 places
+ * late. Every call inserts the whole stream into a new tree or searches all
+ * of it, and the time is per key. Run with
+ * <code>java -jar target/benchmarks.jar FingerBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class FingerBenchmark {
+
+	private static final int STREAM = 1 << 20;
+	private static final Class<?> AVL_TREE = Trees.load("AVLTree");
+	private static final Class<?> CURSOR = Trees.load("AVLTree$Cursor");
+	private static final MethodHandle NEW_CURSOR = Trees.bind(AVL_TREE, "cursor", CURSOR);
+	private static final MethodHandle CURSOR_INSERT = Trees.bind(CURSOR, "insert", void.class, Comparable.class);
+	private static final MethodHandle CURSOR_CONTAINS = Trees.bind(CURSOR, "contains", boolean.class,
+			Comparable.class);
+
+	@Param({ "monotonic", "nearlySorted", "random" })
+	public String stream;
+
+	private Integer[] keys;
+	private Object tree;
+	private Object cursor;
+
+	/**
+	 * Draws the stream and builds the tree searched by the contains benchmarks
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		int[] order = stream.equals("random") ? Keys.random(STREAM, 79) : Keys.sequential(STREAM);
+		if (stream.equals("nearlySorted")) {
+			Random random = new Random(79);
+			for (int i = 0; i < STREAM; i++) {
+				if (random.nextInt(10) == 0) {
+					// the key of i arrives after the one of j
+					int j = Math.min(STREAM - 1, i + 1 + random.nextInt(100));
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+				}
+			}
+		}
+		keys = new Integer[STREAM];
+		for (int i = 0; i < STREAM; i++) {
+			keys[i] = 2 * order[i];
+		}
+		tree = insert();
+		cursor = (Object) NEW_CURSOR.invokeExact(tree);
+	}
+
+	/**
+	 * Inserts the stream into a new tree
+	 *
+	 * @return The tree
+	 */
+	@Benchmark
+	@OperationsPerInvocation(STREAM)
+	public Object insert() throws Throwable {
+		Object built = Trees.create("AVLTree");
+		for (Integer key : keys) {
+			Trees.insert(built, key);
+		}
+		return built;
+	}
+
+	/**
+	 * Inserts the stream into a new tree through a cursor
+	 *
+	 * @return The tree
+	 */
+	@Benchmark
+	@OperationsPerInvocation(STREAM)
+	public Object cursorInsert() throws Throwable {
+		Object built = Trees.create("AVLTree");
+		Object finger = (Object) NEW_CURSOR.invokeExact(built);
+		for (Integer key : keys) {
+			CURSOR_INSERT.invokeExact(finger, (Object) key);
+		}
+		return built;
+	}
+
+	/**
+	 * Searches the stream in its order
+	 *
+	 * @return The number of keys found
+	 */
+	@Benchmark
+	@OperationsPerInvocation(STREAM)
+	public int contains() throws Throwable {
+		int found = 0;
+		for (Integer key : keys) {
+			if (Trees.contains(tree, key)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Searches the stream in its order through a cursor
+	 *
+	 * @return The number of keys found
+	 */
+	@Benchmark
+	@OperationsPerInvocation(STREAM)
+	public int cursorContains() throws Throwable {
+		int found = 0;
+		for (Integer key : keys) {
+			if ((boolean) CURSOR_CONTAINS.invokeExact(cursor, (Object) key)) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
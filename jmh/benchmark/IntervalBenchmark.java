@@ -0,0 +1,151 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Updates, stabbing queries and overlap queries of IntervalTree, compared
+ * with scanning every interval.
+ * <p>
+ * The tree stores intervals with even lower endpoints in [0, 10^9) and
+ * lengths up to 2000. The intervals inserted and deleted by
+ * <code>insertAndDelete</code> start at odd points, so they are never in the
+ * tree before. The overlap queries are 10^5 wide. Run with
+ * <code>java -jar target/benchmarks.jar IntervalBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+public class IntervalBenchmark {
+
+	private static final long RANGE = 1_000_000_000L;
+	private static final long WIDTH = 100_000L;
+	private static final int PROBES = 1 << 10;
+	private static final Class<?> INTERVAL_TREE = Trees.load("IntervalTree");
+	private static final Class<?> INTERVAL = Trees.load("IntervalTree$Interval");
+	private static final MethodHandle INSERT = Trees.bind(INTERVAL_TREE, "insert", void.class, Comparable.class,
+			Comparable.class);
+	private static final MethodHandle DELETE = Trees.bind(INTERVAL_TREE, "delete", void.class, Comparable.class,
+			Comparable.class);
+	private static final MethodHandle STAB = Trees.bind(INTERVAL_TREE, "stab", Iterator.class, Comparable.class);
+	private static final MethodHandle OVERLAPPING = Trees.bind(INTERVAL_TREE, "overlapping", Iterator.class,
+			Comparable.class, Comparable.class);
+	private static final MethodHandle CONTAINS = Trees.bind(INTERVAL, "contains", boolean.class, Comparable.class);
+
+	@Param({ "10000000" })
+	public int size;
+
+	private Object tree;
+	private Long[] points; // query points, odd lower endpoints of the updates
+	private int next;
+
+	/**
+	 * Builds the tree in random order and draws the query points
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		SplittableRandom random = new SplittableRandom(47);
+		tree = Trees.create("IntervalTree");
+		for (int i = 0; i < size; i++) {
+			Long low = 2 * random.nextLong(RANGE / 2);
+			INSERT.invokeExact(tree, (Object) low, (Object) (low + random.nextInt(2001)));
+		}
+		points = new Long[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			points[i] = 2 * random.nextLong(RANGE / 2) + 1;
+		}
+	}
+
+	/**
+	 * @return The next query point
+	 */
+	private Long point() {
+		Long point = points[next];
+		next = (next + 1) & (PROBES - 1);
+		return point;
+	}
+
+	/**
+	 * @param iterator An iterator
+	 * @return The number of elements left in the iterator
+	 */
+	private static int count(Iterator<?> iterator) {
+		int count = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Inserts an interval that is not in the tree and deletes it, the time is
+	 * per update
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void insertAndDelete() throws Throwable {
+		Long low = point();
+		Long high = low + 1000;
+		INSERT.invokeExact(tree, (Object) low, (Object) high);
+		DELETE.invokeExact(tree, (Object) low, (Object) high);
+	}
+
+	/**
+	 * Reports the intervals containing a point
+	 *
+	 * @return The number of intervals
+	 */
+	@Benchmark
+	public int stab() throws Throwable {
+		return count((Iterator<?>) (Object) STAB.invokeExact(tree, (Object) point()));
+	}
+
+	/**
+	 * Reports the intervals intersecting a range
+	 *
+	 * @return The number of intervals
+	 */
+	@Benchmark
+	public int overlapping() throws Throwable {
+		Long low = point();
+		return count((Iterator<?>) (Object) OVERLAPPING.invokeExact(tree, (Object) low, (Object) (low + WIDTH)));
+	}
+
+	/**
+	 * Finds the intervals containing a point by checking every interval
+	 *
+	 * @return The number of intervals
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int scan() throws Throwable {
+		Long point = point();
+		int found = 0;
+		for (Object interval : (Iterable<?>) tree) {
+			if ((boolean) CONTAINS.invokeExact(interval, (Object) point)) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
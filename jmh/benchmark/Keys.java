@@ -0,0 +1,124 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Keys of the benchmarks
+ */
+final class Keys {
+
+	private Keys() {
+	}
+
+	/**
+	 * @param size Number of keys
+	 * @return The keys 0, 1, ..., size - 1 in ascending order
+	 */
+	static int[] sequential(int size) {
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = i;
+		}
+		return keys;
+	}
+
+	/**
+	 * @param size Number of keys
+	 * @param seed Seed of the random generator
+	 * @return The keys 0, 1, ..., size - 1 in random order
+	 */
+	static int[] random(int size, long seed) {
+		int[] keys = sequential(size);
+		Random random = new Random(seed);
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = tmp;
+		}
+		return keys;
+	}
+
+	/**
+	 * @param size  Number of keys
+	 * @param range The keys are drawn from [0, range)
+	 * @param seed  Seed of the random generator
+	 * @return Distinct keys in ascending order
+	 */
+	static Integer[] sortedSample(int size, int range, long seed) {
+		Random random = new Random(seed);
+		TreeSet<Integer> keys = new TreeSet<>();
+		while (keys.size() < size) {
+			keys.add(random.nextInt(range));
+		}
+		return keys.toArray(new Integer[0]);
+	}
+
+	/**
+	 * Draws ranks from a Zipfian distribution with exponent 0.99, where rank 0
+	 * is the most frequent one, using the method of Gray et al. ("Quickly
+	 * generating billion-record synthetic databases", SIGMOD 1994).
+	 *
+	 * @param size  Number of ranks
+	 * @param count Number of ranks to draw
+	 * @param seed  Seed of the random generator
+	 * @return The drawn ranks, each in [0, size)
+	 */
+	static int[] zipfianRanks(int size, int count, long seed) {
+		double theta = 0.99;
+		double zetaN = 0;
+		for (int i = 1; i <= size; i++) {
+			zetaN += 1 / Math.pow(i, theta);
+		}
+		double zeta2 = 1 + 1 / Math.pow(2, theta);
+		double alpha = 1 / (1 - theta);
+		double eta = (1 - Math.pow(2.0 / size, 1 - theta)) / (1 - zeta2 / zetaN);
+		Random random = new Random(seed);
+		int[] ranks = new int[count];
+		for (int i = 0; i < count; i++) {
+			double u = random.nextDouble();
+			double uz = u * zetaN;
+			if (uz < 1) {
+				ranks[i] = 0;
+			} else if (uz < 1 + Math.pow(0.5, theta)) {
+				ranks[i] = 1;
+			} else {
+				ranks[i] = Math.min(size - 1, (int) (size * Math.pow(eta * u - eta + 1, alpha)));
+			}
+		}
+		return ranks;
+	}
+
+	/**
+	 * Orders the keys for the insert and delete calls, which must not repeat
+	 * a key. Without Zipfian ranks the keys keep their order, with them the
+	 * drawn keys come first in the order of their first draw, followed by the
+	 * keys that were never drawn.
+	 *
+	 * @param keys  The keys 0, 1, ..., size - 1 in the order the tree was built
+	 * @param ranks Zipfian ranks drawn as indexes into keys, or null
+	 * @return Every key exactly once
+	 */
+	static int[] distinctOrder(int[] keys, int[] ranks) {
+		if (ranks == null) {
+			return keys;
+		}
+		boolean[] seen = new boolean[keys.length];
+		int[] order = new int[keys.length];
+		int count = 0;
+		for (int rank : ranks) {
+			int key = keys[rank];
+			if (!seen[key]) {
+				seen[key] = true;
+				order[count++] = key;
+			}
+		}
+		for (int key : keys) {
+			if (!seen[key]) {
+				order[count++] = key;
+			}
+		}
+		return order;
+	}
+}
@@ -0,0 +1,228 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The time of the tree operations for sequential, random and Zipfian keys
+ * at the sizes 10^3 to 10^7.
+ * <p>
+ * The tree holds the even numbers 0, 2, ..., 2 * (size - 1). Probes are
+ * present keys drawn from the distribution. Every insert is of a distinct
+ * odd key, which is absent, and it is deleted again in the same call, so
+ * every timed insert and delete changes the tree. The same holds for the
+ * delete and reinsert of a present key.
+ * <p>
+ * <code>main</code> runs the benchmarks with the GC and allocation profiler
+ * and takes the options of JMH:
+ * <code>java -cp target/benchmarks.jar benchmark.OperationsBenchmark</code>.
+ * Another implementation of AVLTreeInterface is measured with
+ * <code>-p implementation=ArrayAVLTree</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+public class OperationsBenchmark {
+
+	private static final int PROBES = 1 << 16;
+
+	@Param({ "sequential", "random", "zipfian" })
+	public String distribution;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int size;
+
+	@Param({ "AVLTree" })
+	public String implementation;
+
+	private Object tree;
+	private Integer[] probes; // present keys in the pattern of the distribution
+	private Integer[] uppers; // upper bounds of the range queries, 100 keys above the probes
+	private Integer[] absent; // distinct absent keys
+	private Integer[] present; // distinct present keys
+	private int next;
+
+	/**
+	 * Builds the tree and draws the keys
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		int[] keys = distribution.equals("sequential") ? Keys.sequential(size) : Keys.random(size, 53);
+		tree = Trees.create(implementation);
+		for (int key : keys) {
+			Trees.insert(tree, 2 * key);
+		}
+		int[] ranks = distribution.equals("zipfian") ? Keys.zipfianRanks(size, PROBES, 53) : null;
+		Random random = new Random(53);
+		probes = new Integer[PROBES];
+		uppers = new Integer[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			switch (distribution) {
+			case "sequential":
+				probes[i] = 2 * (i % size);
+				break;
+			case "random":
+				probes[i] = 2 * random.nextInt(size);
+				break;
+			default:
+				// hot ranks are spread over the key space by the random order of keys
+				probes[i] = 2 * keys[ranks[i]];
+			}
+			uppers[i] = probes[i] + 200;
+		}
+		int[] order = Keys.distinctOrder(keys, ranks);
+		int changes = Math.min(PROBES, size);
+		absent = new Integer[changes];
+		present = new Integer[changes];
+		for (int i = 0; i < changes; i++) {
+			absent[i] = 2 * order[i] + 1;
+			present[i] = 2 * order[i];
+		}
+	}
+
+	/**
+	 * @return The index of the next key in an array of the given length
+	 */
+	private int next(int length) {
+		int index = next;
+		next = index + 1 == length ? 0 : index + 1;
+		return index;
+	}
+
+	/**
+	 * Searches a present key
+	 */
+	@Benchmark
+	public boolean contains() throws Throwable {
+		return Trees.contains(tree, probes[next(PROBES)]);
+	}
+
+	/**
+	 * Inserts an absent key and deletes it again, the time is per call
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void insertAndDelete() throws Throwable {
+		Integer key = absent[next(absent.length)];
+		Trees.insert(tree, key);
+		Trees.delete(tree, key);
+	}
+
+	/**
+	 * Deletes a present key and inserts it again, the time is per call
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public void deleteAndInsert() throws Throwable {
+		Integer key = present[next(present.length)];
+		Trees.delete(tree, key);
+		Trees.insert(tree, key);
+	}
+
+	/**
+	 * Counts the 100 elements above a present key
+	 */
+	@Benchmark
+	public int numElementsInRange() throws Throwable {
+		int index = next(PROBES);
+		return Trees.numElementsInRange(tree, probes[index], uppers[index]);
+	}
+
+	/**
+	 * Finds the element of a rank
+	 */
+	@Benchmark
+	public Object select() throws Throwable {
+		// the element 2k has rank k
+		return Trees.select(tree, probes[next(PROBES)] / 2);
+	}
+
+	/**
+	 * Copies the whole tree in order
+	 */
+	@Benchmark
+	public int inOrderTraversal() throws Throwable {
+		return Trees.inOrderTraversal(tree).size();
+	}
+
+	/**
+	 * Finds the deepest node above two present keys and compares their depths
+	 */
+	@Benchmark
+	public boolean areCousins() throws Throwable {
+		int index = next(PROBES);
+		return Trees.areCousins(tree, probes[index], probes[(index + 1) & (PROBES - 1)]);
+	}
+
+	/**
+	 * Finds the balance factor of the node of a present key
+	 */
+	@Benchmark
+	public int balanceFactor() throws Throwable {
+		return Trees.balanceFactor(tree, probes[next(PROBES)]);
+	}
+
+	/**
+	 * Reads the number of elements
+	 */
+	@Benchmark
+	public int size() throws Throwable {
+		return Trees.size(tree);
+	}
+
+	/**
+	 * Reads the height of the tree
+	 */
+	@Benchmark
+	public int height() throws Throwable {
+		return Trees.height(tree);
+	}
+
+	/**
+	 * Copies the whole tree level by level
+	 */
+	@Benchmark
+	public int bfTraverse() throws Throwable {
+		return Trees.bfTraverse(tree).size();
+	}
+
+	/**
+	 * Runs the benchmarks with the GC and allocation profiler
+	 *
+	 * @param args Options of JMH, for example <code>-p size=1000</code>
+	 * @throws CommandLineOptionException if the options are not valid
+	 * @throws RunnerException            if JMH fails
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(OperationsBenchmark.class.getName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
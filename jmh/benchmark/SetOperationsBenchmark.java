@@ -0,0 +1,127 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Union, intersection and difference of two AVLTrees by split and join,
+ * compared with inserting or deleting the elements of the smaller tree one
+ * by one.
+ * <p>
+ * The set operations take their arguments apart, so both trees are built
+ * from sorted keys in every call, and <code>buildOnly</code> measures that
+ * part alone. The one by one versions build only the larger tree. Run with
+ * <code>java -jar target/benchmarks.jar SetOperationsBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+public class SetOperationsBenchmark {
+
+	private static final Class<?> AVL_TREE = Trees.load("AVLTree");
+	private static final MethodHandle FROM_SORTED = Trees.bindStatic(AVL_TREE, "fromSorted", AVL_TREE,
+			Comparable[].class);
+	private static final MethodHandle UNION = Trees.bindStatic(AVL_TREE, "union", AVL_TREE, AVL_TREE, AVL_TREE);
+	private static final MethodHandle INTERSECTION = Trees.bindStatic(AVL_TREE, "intersection", AVL_TREE, AVL_TREE,
+			AVL_TREE);
+	private static final MethodHandle DIFFERENCE = Trees.bindStatic(AVL_TREE, "difference", AVL_TREE, AVL_TREE,
+			AVL_TREE);
+
+	@Param({ "1000000" })
+	public int size;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int smallSize;
+
+	private Integer[] large;
+	private Integer[] small;
+
+	/**
+	 * Draws the keys of both trees from the same range
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		large = Keys.sortedSample(size, 2 * size, 41);
+		small = Keys.sortedSample(smallSize, 2 * size, 43);
+	}
+
+	/**
+	 * @param keys Distinct keys in ascending order
+	 * @return A new AVLTree of the keys
+	 */
+	private static Object build(Integer[] keys) throws Throwable {
+		return (Object) FROM_SORTED.invokeExact((Object) keys);
+	}
+
+	/**
+	 * Builds both trees
+	 */
+	@Benchmark
+	public int buildOnly() throws Throwable {
+		return Trees.size(build(large)) + Trees.size(build(small));
+	}
+
+	/**
+	 * Unites the trees
+	 */
+	@Benchmark
+	public int union() throws Throwable {
+		return Trees.size((Object) UNION.invokeExact(build(large), build(small)));
+	}
+
+	/**
+	 * Inserts the keys of the smaller tree into the larger one
+	 */
+	@Benchmark
+	public int insertOneByOne() throws Throwable {
+		Object tree = build(large);
+		for (Integer key : small) {
+			Trees.insert(tree, key);
+		}
+		return Trees.size(tree);
+	}
+
+	/**
+	 * Intersects the trees
+	 */
+	@Benchmark
+	public int intersection() throws Throwable {
+		return Trees.size((Object) INTERSECTION.invokeExact(build(large), build(small)));
+	}
+
+	/**
+	 * Subtracts the smaller tree from the larger one
+	 */
+	@Benchmark
+	public int difference() throws Throwable {
+		return Trees.size((Object) DIFFERENCE.invokeExact(build(large), build(small)));
+	}
+
+	/**
+	 * Deletes the keys of the smaller tree from the larger one
+	 */
+	@Benchmark
+	public int deleteOneByOne() throws Throwable {
+		Object tree = build(large);
+		for (Integer key : small) {
+			Trees.delete(tree, key);
+		}
+		return Trees.size(tree);
+	}
+}
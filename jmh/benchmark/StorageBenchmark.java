@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Memory and lookup time of the linked AVLTree and the array based
+ * ArrayAVLTree at 10^7 keys.
+ * <p>
+ * <code>build</code> inserts every key into a new tree. ArrayAVLTree is made
+ * with the capacity for all of them, so neither tree allocates anything it
+ * does not keep while it is built: the <code>gc.alloc.rate.norm</code> of
+ * <code>build</code> divided by the size is the memory of the tree per key,
+ * without the keys. <code>contains</code> searches present keys in random
+ * order.
+ * <p>
+ * Run with <code>java -jar target/benchmarks.jar StorageBenchmark -prof gc</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms3g", "-Xmx3g" })
+public class StorageBenchmark {
+
+	private static final int PROBES = 1 << 16;
+
+	@Param({ "10000000" })
+	public int size;
+
+	@Param({ "AVLTree", "ArrayAVLTree" })
+	public String implementation;
+
+	private Integer[] keys;
+	private Integer[] probes;
+	private Object tree;
+	private int next;
+
+	/**
+	 * Draws the keys and builds the tree searched by contains
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		int[] order = Keys.random(size, 13);
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = order[i];
+		}
+		Random random = new Random(13);
+		probes = new Integer[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			probes[i] = keys[random.nextInt(size)];
+		}
+		tree = build();
+	}
+
+	/**
+	 * Builds a tree of all the keys
+	 *
+	 * @return The tree
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public Object build() throws Throwable {
+		Object built = Trees.create(implementation, size);
+		for (Integer key : keys) {
+			Trees.insert(built, key);
+		}
+		return built;
+	}
+
+	/**
+	 * Searches a present key
+	 */
+	@Benchmark
+	public boolean contains() throws Throwable {
+		Integer probe = probes[next];
+		next = (next + 1) & (PROBES - 1);
+		return Trees.contains(tree, probe);
+	}
+}
@@ -0,0 +1,223 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calls the trees, which are in the default package and cannot be named
+ * from the package of the benchmarks. JMH requires benchmarks to be in a
+ * package.
+ * <p>
+ * Every method of AVLTreeInterface is bound to a constant method handle,
+ * which the JIT compiles like a direct call through the interface. The
+ * benchmarks of methods outside the interface bind them the same way with
+ * <code>bind</code> and <code>bindStatic</code>.
+ */
+final class Trees {
+
+	private static final Class<?> INTERFACE = load("AVLTreeInterface");
+	private static final MethodHandle INSERT = bind("insert", void.class, Comparable.class);
+	private static final MethodHandle DELETE = bind("delete", void.class, Comparable.class);
+	private static final MethodHandle CONTAINS = bind("contains", boolean.class, Comparable.class);
+	private static final MethodHandle SIZE = bind("size", int.class);
+	private static final MethodHandle HEIGHT = bind("height", int.class);
+	private static final MethodHandle NUM_ELEMENTS_IN_RANGE = bind("numElementsInRange", int.class,
+			Comparable.class, Comparable.class);
+	private static final MethodHandle SELECT = bind("select", Comparable.class, int.class);
+	private static final MethodHandle IN_ORDER_TRAVERSAL = bind("inOrderTraversal", ArrayList.class);
+	private static final MethodHandle BF_TRAVERSE = bind("bfTraverse", ArrayList.class);
+	private static final MethodHandle ARE_COUSINS = bind("areCousins", boolean.class, Comparable.class,
+			Comparable.class);
+	private static final MethodHandle BALANCE_FACTOR = bind("balanceFactor", int.class, Comparable.class);
+
+	private Trees() {
+	}
+
+	/**
+	 * @param name Name of a class in the default package
+	 * @return The class
+	 */
+	static Class<?> load(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("The trees are not on the class path", e);
+		}
+	}
+
+	/**
+	 * Finds a method of AVLTreeInterface and adapts it to take the tree
+	 * and the elements as Object
+	 *
+	 * @param name       Name of the method
+	 * @param returnType Erased return type of the method
+	 * @param parameters Erased parameter types of the method
+	 * @return The method handle
+	 */
+	private static MethodHandle bind(String name, Class<?> returnType, Class<?>... parameters) {
+		return bind(INTERFACE, name, returnType, parameters);
+	}
+
+	/**
+	 * Finds a public method of a class and adapts it to take the receiver
+	 * and the other objects as Object
+	 *
+	 * @param owner      The class declaring the method
+	 * @param name       Name of the method
+	 * @param returnType Erased return type of the method
+	 * @param parameters Erased parameter types of the method
+	 * @return The method handle
+	 */
+	static MethodHandle bind(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+		try {
+			return generic(MethodHandles.publicLookup().findVirtual(owner, name,
+					MethodType.methodType(returnType, parameters)));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(owner.getName() + " has no method " + name, e);
+		}
+	}
+
+	/**
+	 * Finds a public static method of a class and adapts it to take and
+	 * return objects as Object
+	 *
+	 * @param owner      The class declaring the method
+	 * @param name       Name of the method
+	 * @param returnType Erased return type of the method
+	 * @param parameters Erased parameter types of the method
+	 * @return The method handle
+	 */
+	static MethodHandle bindStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+		try {
+			return generic(MethodHandles.publicLookup().findStatic(owner, name,
+					MethodType.methodType(returnType, parameters)));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(owner.getName() + " has no method " + name, e);
+		}
+	}
+
+	/**
+	 * @param handle A method handle
+	 * @return The handle with Object in place of every reference type
+	 */
+	private static MethodHandle generic(MethodHandle handle) {
+		MethodType type = handle.type();
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (!type.parameterType(i).isPrimitive()) {
+				type = type.changeParameterType(i, Object.class);
+			}
+		}
+		if (!type.returnType().isPrimitive()) {
+			type = type.changeReturnType(Object.class);
+		}
+		return handle.asType(type);
+	}
+
+	/**
+	 * @param implementation Name of a tree class in the default package
+	 * @return An empty tree of the class
+	 */
+	static Object create(String implementation) {
+		try {
+			return load(implementation).getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create " + implementation, e);
+		}
+	}
+
+	/**
+	 * @param implementation Name of a tree class in the default package
+	 * @param capacity       Number of elements the tree will hold
+	 * @return An empty tree of the class, made with its constructor taking
+	 *         the capacity if it has one
+	 */
+	static Object create(String implementation, int capacity) {
+		try {
+			return load(implementation).getConstructor(int.class).newInstance(capacity);
+		} catch (NoSuchMethodException e) {
+			return create(implementation);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create " + implementation, e);
+		}
+	}
+
+	/**
+	 * Calls <code>tree.insert(element)</code>
+	 */
+	static void insert(Object tree, Object element) throws Throwable {
+		INSERT.invokeExact(tree, element);
+	}
+
+	/**
+	 * Calls <code>tree.delete(element)</code>
+	 */
+	static void delete(Object tree, Object element) throws Throwable {
+		DELETE.invokeExact(tree, element);
+	}
+
+	/**
+	 * @return <code>tree.contains(element)</code>
+	 */
+	static boolean contains(Object tree, Object element) throws Throwable {
+		return (boolean) CONTAINS.invokeExact(tree, element);
+	}
+
+	/**
+	 * @return <code>tree.size()</code>
+	 */
+	static int size(Object tree) throws Throwable {
+		return (int) SIZE.invokeExact(tree);
+	}
+
+	/**
+	 * @return <code>tree.height()</code>
+	 */
+	static int height(Object tree) throws Throwable {
+		return (int) HEIGHT.invokeExact(tree);
+	}
+
+	/**
+	 * @return <code>tree.numElementsInRange(lower, upper)</code>
+	 */
+	static int numElementsInRange(Object tree, Object lower, Object upper) throws Throwable {
+		return (int) NUM_ELEMENTS_IN_RANGE.invokeExact(tree, lower, upper);
+	}
+
+	/**
+	 * @return <code>tree.select(index)</code>
+	 */
+	static Object select(Object tree, int index) throws Throwable {
+		return (Object) SELECT.invokeExact(tree, index);
+	}
+
+	/**
+	 * @return <code>tree.inOrderTraversal()</code>
+	 */
+	static List<?> inOrderTraversal(Object tree) throws Throwable {
+		return (List<?>) (Object) IN_ORDER_TRAVERSAL.invokeExact(tree);
+	}
+
+	/**
+	 * @return <code>tree.bfTraverse()</code>
+	 */
+	static List<?> bfTraverse(Object tree) throws Throwable {
+		return (List<?>) (Object) BF_TRAVERSE.invokeExact(tree);
+	}
+
+	/**
+	 * @return <code>tree.areCousins(element1, element2)</code>
+	 */
+	static boolean areCousins(Object tree, Object element1, Object element2) throws Throwable {
+		return (boolean) ARE_COUSINS.invokeExact(tree, element1, element2);
+	}
+
+	/**
+	 * @return <code>tree.balanceFactor(element)</code>
+	 */
+	static int balanceFactor(Object tree, Object element) throws Throwable {
+		return (int) BALANCE_FACTOR.invokeExact(tree, element);
+	}
+}
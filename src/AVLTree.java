@@ -1,10 +1,56 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 
-public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+public class AVLTree<T extends Comparable<T>> extends AbstractSet<T> implements AVLTreeInterface<T>, NavigableSet<T> {
 
 	public Node<T> root;
 
+	private int modCount; // number of structural changes, checked by iterators
+
+	private AVLTreeMetrics metrics; // null while the instrumentation is disabled
+
+	// at most one monoid is set, its summaries are kept in the nodes
+	private final Monoid<? super T, Object> monoid;
+	private final Monoid.OfLong<? super T> longMonoid;
+	private final Monoid.OfDouble<? super T> doubleMonoid;
+	private final boolean augmented; // whether a monoid is set
+	private int visits; // nodes visited by the running insert or delete, counted only with metrics
+
+	/**
+	 * Number of elements in the parts of two trees above which a set
+	 * operation processes the left parts in another task
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	private static final long SNAPSHOT_MAGIC = 0x41564C534E415031L; // "AVLSNAP1"
+	private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+	private static final int SNAPSHOT_LEFT = 1; // the node has a left child
+	private static final int SNAPSHOT_RIGHT = 2; // the node has a right child
+
 	/**
 	 * Basic storage units in a tree. Each Node object has a left and right
 	 * children fields.
@@ -16,6 +62,7 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 		private E data;
 		private Node<E> left, right; // left and right subtrees
 		private int height = 1;
+		private int size = 1; // number of nodes in the subtree rooted here
 
 		public Node(E data) {
 			this.data = data;
@@ -24,6 +71,125 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 
 	// CHANGES START BELOW THIS LINE
 
+	/**
+	 * A node that also keeps the summary of its subtree
+	 */
+	private class SummaryNode extends Node<T> {
+		private Object summary;
+
+		private SummaryNode(T data) {
+			super(data);
+		}
+	}
+
+	/**
+	 * A node that also keeps the summary of its subtree as a long
+	 */
+	private class LongSummaryNode extends Node<T> {
+		private long summary;
+
+		private LongSummaryNode(T data) {
+			super(data);
+		}
+	}
+
+	/**
+	 * A node that also keeps the summary of its subtree as a double
+	 */
+	private class DoubleSummaryNode extends Node<T> {
+		private double summary;
+
+		private DoubleSummaryNode(T data) {
+			super(data);
+		}
+	}
+
+	/**
+	 * Creates an empty tree
+	 */
+	public AVLTree() {
+		this(null, null, null);
+	}
+
+	/**
+	 * Creates an empty tree that keeps the summary of every subtree for
+	 * rangeAggregate. The summaries are updated on every change of the tree.
+	 *
+	 * @param monoid Summarizes the elements
+	 */
+	public AVLTree(Monoid<? super T, ?> monoid) {
+		this(Objects.requireNonNull(monoid), null, null);
+	}
+
+	/**
+	 * Creates an empty tree that keeps the summary of every subtree as
+	 * a long, without boxing, see AVLTree(Monoid).
+	 *
+	 * @param monoid Summarizes the elements
+	 */
+	public AVLTree(Monoid.OfLong<? super T> monoid) {
+		this(null, Objects.requireNonNull(monoid), null);
+	}
+
+	/**
+	 * Creates an empty tree that keeps the summary of every subtree as
+	 * a double, without boxing, see AVLTree(Monoid).
+	 *
+	 * @param monoid Summarizes the elements
+	 */
+	public AVLTree(Monoid.OfDouble<? super T> monoid) {
+		this(null, null, Objects.requireNonNull(monoid));
+	}
+
+	/**
+	 * @param monoid       The monoid of the summaries, or null
+	 * @param longMonoid   The monoid of long summaries, or null
+	 * @param doubleMonoid The monoid of double summaries, or null
+	 */
+	@SuppressWarnings("unchecked")
+	private AVLTree(Monoid<? super T, ?> monoid, Monoid.OfLong<? super T> longMonoid,
+			Monoid.OfDouble<? super T> doubleMonoid) {
+		this.monoid = (Monoid<? super T, Object>) monoid;
+		this.longMonoid = longMonoid;
+		this.doubleMonoid = doubleMonoid;
+		augmented = monoid != null || longMonoid != null || doubleMonoid != null;
+	}
+
+	/**
+	 * Creates an empty tree with the monoid of this tree, whose nodes can
+	 * be mixed with the nodes of this tree and of the other one.
+	 *
+	 * @param other A tree whose nodes are moved to the new tree, or null
+	 * @return An empty tree
+	 * @throws IllegalArgumentException if the trees keep different summaries
+	 */
+	private AVLTree<T> newTree(AVLTree<T> other) {
+		if (other != null && (monoid != other.monoid || longMonoid != other.longMonoid
+				|| doubleMonoid != other.doubleMonoid)) {
+			throw new IllegalArgumentException("Trees keep different summaries");
+		}
+		return new AVLTree<>(monoid, longMonoid, doubleMonoid);
+	}
+
+	/**
+	 * @param element The element of the node
+	 * @return A new leaf, with room for the summary if a monoid is set
+	 */
+	private Node<T> newNode(T element) {
+		Node<T> node;
+		if (!augmented) {
+			return new Node<T>(element);
+		} else if (longMonoid != null) {
+			node = new LongSummaryNode(element);
+		} else if (doubleMonoid != null) {
+			node = new DoubleSummaryNode(element);
+		} else {
+			node = new SummaryNode(element);
+		}
+		summarize(node);
+		return node;
+	}
+
 	/**
 	 * @return true if the tree is empty
 	 */
@@ -32,21 +198,51 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 	}
 
 	/**
-	 * @param node The parent node whose number of child nodes is to be calculated
-	 * @return Number of child nodes under the given node
+	 * Starts counting rotations, comparisons and visited nodes.
+	 * <p>
+	 * contains, balanceFactor, insert and delete are counted, and rotations
+	 * are counted for every operation that rebalances the tree. While the
+	 * instrumentation is disabled, the counted paths only check a null field.
+	 *
+	 * @return The counters of the tree, the same object until it is disabled
+	 */
+	public AVLTreeMetrics enableMetrics() {
+		if (metrics == null) {
+			metrics = new AVLTreeMetrics();
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stops counting. The counters returned by enableMetrics keep their values.
+	 */
+	public void disableMetrics() {
+		metrics = null;
+	}
+
+	/**
+	 * @return The counters of the tree, or null if the instrumentation is disabled
+	 */
+	public AVLTreeMetrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * @param node The node whose subtree size is requested
+	 * @return Number of nodes in the subtree of the given node
 	 */
-	private int childNumberOf(Node<T> node) {
+	private int size(Node<T> node) {
 		if (node == null) {
 			return 0;
 		}
-		return childNumberOf(node.left) + childNumberOf(node.right) + 1;
+		return node.size;
 	}
 
 	/**
 	 * @return the number of nodes in the tree
 	 */
 	public int size() {
-		return childNumberOf(root);
+		return size(root);
 	}
 
 	/**
@@ -57,40 +253,51 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 	 * @return Whether tree contains the parameter
 	 */
 	public boolean contains(T element) {
-		ArrayList<Node<T>> array = new ArrayList<>();
-		searchElementAndParent(array, root, element);
-		if(array.size()>0){
-			return true;
-		}
-		return false;
+		return searchNode(element) != null;
 	}
 
 	/**
-	 * Searches an element starting from the given node
+	 * Searches an element starting from the root
+	 * with a single comparison per level
 	 *
-	 * @param node    The node under which the search operation is started
 	 * @param element The element to be searched
 	 * @return The Node containing element or null if element couldn't found
 	 */
-	private void searchElementAndParent(ArrayList<Node<T>> array, Node<T> node, T element) {
-		if (node == null) {
-			array.clear();
-			return;
+	private Node<T> searchNode(T element) {
+		if (metrics != null) {
+			return countedSearchNode(element);
 		}
-		if (node.data.compareTo(element) == 0) {
-			array.clear();
-			array.add(node);
-			return;
-		} else if (node.data.compareTo(element) > 0) {
-			searchElementAndParent(array, node.left, element);
-		} else {
-			searchElementAndParent(array, node.right, element);
+		Node<T> node = root;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return node;
+			}
+			node = comparison > 0 ? node.left : node.right;
 		}
-		if(array.size()==1){
-			array.add(node);
+		return null;
+	}
+
+	/**
+	 * The same search as searchNode, which also counts the visited nodes
+	 *
+	 * @param element The element to be searched
+	 * @return The Node containing element or null if element couldn't found
+	 */
+	private Node<T> countedSearchNode(T element) {
+		int visited = 0;
+		Node<T> node = root;
+		while (node != null) {
+			visited++;
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				break;
+			}
+			node = comparison > 0 ? node.left : node.right;
 		}
+		metrics.recordSearch(visited);
+		return node;
 	}
-	
 
 	/**
 	 * Inserts the element in the parameter to the tree
@@ -101,9 +308,16 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 	 * @param element Element to be added
 	 */
 	public void insert(T element) {
-		Node<T> node = insert(root, element);
-		if(root == null){
-			root = node;
+		int size = size();
+		root = insert(root, element);
+		boolean inserted = size() != size;
+		if (inserted) {
+			modCount++;
+		}
+		if (metrics != null) {
+			// two comparisons on every visited node, but one on an equal node
+			metrics.recordInsert(visits, 2 * visits - (inserted ? 0 : 1));
+			visits = 0;
 		}
 	}
 
@@ -119,7 +333,10 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 	 */
 	public Node<T> insert(Node<T> node, T element) {
 		if (node == null) {
-			return new Node<T>(element);
+			return newNode(element);
+		}
+		if (metrics != null) {
+			visits++;
 		}
 		if (node.data.compareTo(element) == 0) {
 			return node;
@@ -129,377 +346,2137 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 			node.right = insert(node.right, element);
 		}
 
-		node.height = Integer.max(height(node.left), height(node.right)) + 1;
+		update(node);
 		return makeBalanced(node);
 	}
 
 	/**
-	 * Calculates the balance factor of the given node,
-	 * and makes rotation if necessary.
-	 * @param node The node whose balance is controlled
-	 * @return The node at that location after rotation
+	 * Builds a tree from elements given in ascending order in linear time.
+	 * Equal neighbours are stored once.
+	 *
+	 * @param elements The elements in ascending order
+	 * @return A perfectly balanced tree of the elements
+	 * @throws IllegalArgumentException if the elements are not in ascending order
 	 */
-	private Node<T> makeBalanced(Node<T> node){
-		int balance = height(node.left) - height(node.right);
-		if (balance > 1) {
-			if (height(node.left.left) >= height(node.left.right)) {
-				return rightRotate(node);
-			} else {
-				return leftRightRotate(node);
-			}
-		} else if (balance < -1) {
-			if (height(node.right.right) >= height(node.right.left)) {
-				return leftRotate(node);
-			} else {
-				return rightLeftRotate(node);
+	public static <T extends Comparable<T>> AVLTree<T> fromSorted(T[] elements) {
+		for (int i = 1; i < elements.length; i++) {
+			if (elements[i - 1].compareTo(elements[i]) >= 0) {
+				// duplicates or wrong order, the iterator version handles both
+				return fromSorted(Arrays.asList(elements).iterator());
 			}
 		}
-		return node;
+		AVLTree<T> tree = new AVLTree<>();
+		tree.root = tree.build(Arrays.asList(elements), 0, elements.length);
+		return tree;
 	}
 
 	/**
-	 * Makes the necessary right rotation to maintain balance
-	 * @param node The node to be rotated
-	 * @return The parent of the given node after rotation 
+	 * Builds a tree from elements given in ascending order in linear time.
+	 * Equal neighbours are stored once.
+	 *
+	 * @param elements Iterator over the elements in ascending order
+	 * @return A perfectly balanced tree of the elements
+	 * @throws IllegalArgumentException if the elements are not in ascending order
 	 */
-	private Node<T> rightRotate(Node<T> node) {
-		Node<T> leftNode = node.left;
-		Node<T> leftRightNode = leftNode.right;
-		node.left = leftRightNode;
-		leftNode.right = node;
-		node.height = Integer.max(height(node.left), height(node.right)) + 1;
-		leftNode.height = Integer.max(height(leftNode.left), height(leftNode.right)) + 1;
-		if(node == root){
-			root = leftNode;
+	public static <T extends Comparable<T>> AVLTree<T> fromSorted(Iterator<? extends T> elements) {
+		ArrayList<T> sorted = new ArrayList<>();
+		while (elements.hasNext()) {
+			T element = elements.next();
+			if (!sorted.isEmpty()) {
+				int comparison = sorted.get(sorted.size() - 1).compareTo(element);
+				if (comparison > 0) {
+					throw new IllegalArgumentException("Elements are not in ascending order: " + element);
+				} else if (comparison == 0) {
+					continue;
+				}
+			}
+			sorted.add(element);
 		}
-		return leftNode;
+		AVLTree<T> tree = new AVLTree<>();
+		tree.root = tree.build(sorted, 0, sorted.size());
+		return tree;
 	}
 
 	/**
-	 * Makes the necessary left rotation to maintain balance
-	 * @param node The node to be rotated
-	 * @return The parent of the given node after rotation 
+	 * Builds a perfectly balanced subtree from a range of distinct
+	 * elements in ascending order, without any comparison.
+	 *
+	 * @param sorted The elements in ascending order
+	 * @param from   First index of the range
+	 * @param to     Index after the range
+	 * @return The root of the subtree, or null if the range is empty
 	 */
-	private Node<T> leftRotate(Node<T> node) {
-		Node<T> rightNode = node.right;
-		Node<T> rightLeftNode = rightNode.left;
-		node.right = rightLeftNode;
-		rightNode.left = node;
-		node.height = Integer.max(height(node.left), height(node.right)) + 1;
-		rightNode.height = Integer.max(height(rightNode.left), height(rightNode.right)) + 1;
-		if(node == root){
-			root = rightNode;
+	private Node<T> build(List<T> sorted, int from, int to) {
+		if (from >= to) {
+			return null;
 		}
-		return rightNode;
-	}
-
-	/**
-	 * Makes the necessary left-right rotation to maintain balance
-	 * @param node The node to be rotated
-	 * @return The parent of the given node after double rotation 
-	 */
-	private Node<T> leftRightRotate(Node<T> node) {
-		Node<T> leftNode = node.left;
-		Node<T> leftRightNode = node.left.right;
-		node.left = leftRightNode;
-		leftNode.right = leftRightNode.left;
-		leftRightNode.left = leftNode;
-		leftNode.height = Integer.max(height(leftNode.left), height(leftNode.right)) + 1;
-		leftRightNode.height = Integer.max(height(leftRightNode.left), height(leftRightNode.right)) + 1;
-		node.height = Integer.max(height(node.left), height(node.right)) + 1;
-		return rightRotate(node);
+		int middle = (from + to) >>> 1;
+		Node<T> node = newNode(sorted.get(middle));
+		node.left = build(sorted, from, middle);
+		node.right = build(sorted, middle + 1, to);
+		update(node);
+		return node;
 	}
 
 	/**
-	 * Makes the necessary right-left rotation to maintain balance
-	 * @param node The node to be rotated
-	 * @return The parent of the given node after double rotation 
+	 * Makes an immutable copy of the tree for fast lookups.
+	 * The tree itself is not changed and stays mutable.
+	 *
+	 * @return The elements of the tree in the Eytzinger layout
+	 * @see FrozenAVLTree
 	 */
-	private Node<T> rightLeftRotate(Node<T> node) {
-		Node<T> rightNode = node.right;
-		Node<T> rightLeftNode = node.right.left;
-		node.right = rightLeftNode;
-		rightNode.left = rightLeftNode.right;
-		rightLeftNode.right = rightNode;
-		rightNode.height = Integer.max(height(rightNode.left), height(rightNode.right)) + 1;
-		rightLeftNode.height = Integer.max(height(rightLeftNode.left), height(rightLeftNode.right)) + 1;
-		node.height = Integer.max(height(node.left), height(node.right)) + 1;
-		return leftRotate(node);
+	public FrozenAVLTree<T> freeze() {
+		return new FrozenAVLTree<>(inOrderTraversal().toArray());
 	}
 
 	/**
-	 * Deletes the element in the parameter
+	 * Inserts all the elements in the parameter to the tree.
 	 * <p>
-	 * If tree does not contain the element in the parameter,
-	 * no update is done on the tree
+	 * A batch that is large compared to the tree is sorted, merged with the
+	 * elements of the tree and the tree is rebuilt in linear time. A small
+	 * batch is inserted one by one.
 	 *
-	 * @param element Element to be deleted
+	 * @param elements Elements to be added
 	 */
-	public void delete(T element) {
-		ArrayList<Node<T>> array = new ArrayList<>();
-		searchElementAndParent(array, root, element);
-		Node<T> node = null;
-		Node<T> parent = null;
-		if(array.size()>0){
-			node = array.get(0);
-			if(array.size()==2){
-				parent = array.get(1);
+	@SuppressWarnings("unchecked")
+	public void bulkInsert(Collection<? extends T> elements) {
+		int size = size();
+		// one by one insertion costs about log(size) steps per element
+		if ((long) elements.size() * (32 - Integer.numberOfLeadingZeros(size)) < size) {
+			for (T element : elements) {
+				insert(element);
 			}
-		}
-		if(node == null){
 			return;
 		}
-		if(node.right!=null){
-			Node<T> biggerMostLeft = findMostLeftNode(node.right);
-			T leftData = biggerMostLeft.data;
-			delete(leftData);
-			node.data = leftData;
-		}
-		else if(node.left!=null){
-			node.data = node.left.data;
-			node.right = node.left.right;
-			node.left = node.left.left;
-		}
-		else if(parent == null){
-			root = null;
-		}
-		else{
-			if(parent.left == node){
-				parent.left = null;
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		ArrayList<T> existing = inOrderTraversal();
+		ArrayList<T> merged = new ArrayList<>(existing.size() + batch.length);
+		int i = 0, j = 0;
+		while (i < existing.size() || j < batch.length) {
+			T next;
+			if (j == batch.length) {
+				next = existing.get(i++);
+			} else if (i == existing.size()) {
+				next = (T) batch[j++];
+			} else {
+				int comparison = existing.get(i).compareTo((T) batch[j]);
+				if (comparison <= 0) {
+					// an element already in the tree is kept, as insert does
+					next = existing.get(i++);
+					if (comparison == 0) {
+						j++;
+					}
+				} else {
+					next = (T) batch[j++];
+				}
 			}
-			else{
-				parent.right = null;
+			if (merged.isEmpty() || merged.get(merged.size() - 1).compareTo(next) != 0) {
+				merged.add(next);
 			}
-			node = parent;
 		}
-		root = updateHeightAndBalanceAboveAndBelowElement(root, node.data, true);
+		root = build(merged, 0, merged.size());
+		modCount++;
 	}
 
 	/**
-	 * Retrieves the smallest node in the subtree of given node
-	 * 
-	 * @param node The node whose subtree is to be searched
-	 * @return The smallest node in the subtree
+	 * Inserts all the elements in the parameter to the tree.
+	 * <p>
+	 * The batch is sorted, built into a balanced subtree and united with the
+	 * tree. Each sorted part of the batch only reaches the subtree that covers
+	 * it, every affected node is rebalanced once per batch and large parts are
+	 * processed in parallel.
+	 *
+	 * @param elements Elements to be added
 	 */
-	private Node<T> findMostLeftNode(Node<T> node){
-		if(node.left == null){
-			return node;
-		}
-		return findMostLeftNode(node.left);
+	public void insertAll(Collection<? extends T> elements) {
+		Node<T> batch = sortedBatch(elements);
+		root = union(root, batch);
+		modCount++;
 	}
 
 	/**
-	 * Updates the height and balance factors of all parents and children of the node 
-	 * whose data is equal to <code>element</code> 
-	 * starting from the <code>node</code> and going downward.
-	 * Rotation operations are done if necessary.
-	 * This function doesn't traverse and update cousins or siblings
-	 * of parents.
-	 * This function is used after a node whose data is equal to <code>element</code>
-	 * is deleted.
-	 * 
-	 * @param node The node whose below is to be updated
-	 * @param element The data of the deleted element
-	 * @param isAbove Whether the current node is above the node of element or not
-	 * @return Balanced node at that location
+	 * Deletes all the elements in the parameter.
+	 * <p>
+	 * The batch is sorted, built into a balanced subtree and subtracted from
+	 * the tree, in the same way as insertAll.
+	 *
+	 * @param elements Elements to be deleted
 	 */
-	private Node<T> updateHeightAndBalanceAboveAndBelowElement(Node<T> node, T element, boolean isAbove){
-		if(node == null){
-			return null;
-		}
-		if(node.data.compareTo(element)==0){
-			isAbove = false;
-		}
-		if(node.data.compareTo(element)>0 || !isAbove){
-			node.left = updateHeightAndBalanceAboveAndBelowElement(node.left, element, isAbove);
-		}
-		if(node.data.compareTo(element)<0 || !isAbove){
-			node.right = updateHeightAndBalanceAboveAndBelowElement(node.right, element, isAbove);
+	public void deleteAll(Collection<? extends T> elements) {
+		Node<T> batch = sortedBatch(elements);
+		root = difference(root, batch);
+		modCount++;
+	}
+
+	/**
+	 * @param elements A batch of elements in any order
+	 * @return A perfectly balanced subtree of the distinct elements of the batch
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<T> sortedBatch(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		ArrayList<T> sorted = new ArrayList<>(batch.length);
+		for (Object element : batch) {
+			if (sorted.isEmpty() || sorted.get(sorted.size() - 1).compareTo((T) element) != 0) {
+				sorted.add((T) element);
+			}
 		}
-		node.height = Integer.max(height(node.left), height(node.right))+1;
-		return makeBalanced(node);
+		return build(sorted, 0, sorted.size());
 	}
 
 	/**
-	 * The height of a node is defined as the number of edges
-	 * from the node to the deepest leaf.
+	 * Moves the elements greater than or equal to <code>element</code> to a
+	 * new tree in O(log n) time. This tree keeps the smaller elements.
 	 *
-	 * @param node The node whose height is to be calculated
-	 * @return The height of the node
+	 * @param element The element where the tree is split
+	 * @return A tree of the elements greater than or equal to <code>element</code>
 	 */
-	private int height(Node<T> node) {
-		if (node == null) {
-			return 0;
-		}
-		return node.height;
+	public AVLTree<T> split(T element) {
+		Split split = split(root, element);
+		AVLTree<T> greater = newTree(null);
+		greater.root = split.found == null ? split.right : join(null, split.found, split.right);
+		root = split.left;
+		modCount++;
+		return greater;
 	}
 
 	/**
-	 * The height of a node is defined as the number of edges
-	 * from the node to the deepest leaf.
-	 * The height of a tree is the height of the root.
+	 * Joins two trees and an element between them into a new tree in
+	 * O(|height(left) - height(right)| + 1) time. The nodes of both trees
+	 * are reused, so both trees are emptied.
 	 *
-	 * @return The height of the tree
+	 * @param left    A tree of elements less than <code>element</code>
+	 * @param element The element between the trees
+	 * @param right   A tree of elements greater than <code>element</code>
+	 * @return A tree of all the elements
+	 * @throws IllegalArgumentException if the elements are not in that order,
+	 *                                  or if the trees keep different summaries
 	 */
-	public int height() {
-		return height(root);
+	public static <T extends Comparable<T>> AVLTree<T> join(AVLTree<T> left, T element, AVLTree<T> right) {
+		if ((!left.isEmpty() && left.last().compareTo(element) >= 0)
+				|| (!right.isEmpty() && right.first().compareTo(element) <= 0)) {
+			throw new IllegalArgumentException("Trees are not ordered around " + element);
+		}
+		AVLTree<T> tree = left.newTree(right);
+		tree.root = tree.join(left.root, tree.newNode(element), right.root);
+		left.clear();
+		right.clear();
+		return tree;
 	}
 
 	/**
-	 * Traverses the tree "in order".
-	 * This means, the left subtree of the node is traversed first.
-	 * Then, the node itself is visited.
-	 * Then, the the right subtree is traversed.
+	 * Returns the union of two trees in O(m log(n/m + 1)) time, where m is
+	 * the size of the smaller tree and n the size of the larger one. Large
+	 * trees are processed in parallel. The nodes of both trees are reused,
+	 * so both trees are emptied.
 	 * <p>
-	 * The data in each node is added to an ArrayList as the
-	 * node is processed. In other words, this ArrayList stores the order of visiting
-	 * of the nodes in the tree
+	 * If both trees contain an element, the one in <code>first</code> is kept.
 	 *
-	 * @return An ArrayList that stores the "data" field in nodes visited
+	 * @param first  A tree
+	 * @param second Another tree
+	 * @return A tree of the elements that are in any of the trees
+	 * @throws IllegalArgumentException if the trees keep different summaries
 	 */
-	public ArrayList<T> inOrderTraversal() {
-		ArrayList<T> list = new ArrayList<>();
-		inOrderTraversal(list, root);
-		return list;
+	public static <T extends Comparable<T>> AVLTree<T> union(AVLTree<T> first, AVLTree<T> second) {
+		AVLTree<T> tree = first.newTree(second);
+		tree.root = first == second ? first.root : tree.union(first.root, second.root);
+		first.clear();
+		second.clear();
+		return tree;
 	}
 
 	/**
-	 * The recursive function to traverse tree in order.
-	 * 
-	 * @param list List of nodes traversed
-	 * @param node The next node to be traversed
+	 * Returns the intersection of two trees in O(m log(n/m + 1)) time, where
+	 * m is the size of the smaller tree and n the size of the larger one.
+	 * Large trees are processed in parallel. The nodes of both trees are
+	 * reused, so both trees are emptied.
+	 * <p>
+	 * The elements are taken from <code>first</code>.
+	 *
+	 * @param first  A tree
+	 * @param second Another tree
+	 * @return A tree of the elements that are in both trees
+	 * @throws IllegalArgumentException if the trees keep different summaries
 	 */
-	private void inOrderTraversal(ArrayList<T> list, Node<T> node) {
-		if (node == null) {
-			return;
-		}
-		inOrderTraversal(list, node.left);
-		list.add(node.data);
-		inOrderTraversal(list, node.right);
+	public static <T extends Comparable<T>> AVLTree<T> intersection(AVLTree<T> first, AVLTree<T> second) {
+		AVLTree<T> tree = first.newTree(second);
+		tree.root = first == second ? first.root : tree.intersection(first.root, second.root);
+		first.clear();
+		second.clear();
+		return tree;
 	}
 
 	/**
-	 * Visits all the nodes in a breadth first manner.
-	 * As nodes are visited, "data" fields are added to an ArrayList.
+	 * Returns the difference of two trees in O(m log(n/m + 1)) time, where
+	 * m is the size of the smaller tree and n the size of the larger one.
+	 * Large trees are processed in parallel. The nodes of both trees are
+	 * reused, so both trees are emptied.
 	 *
-	 * @return An ArrayList that stores the "data" field in nodes visited
+	 * @param first  A tree
+	 * @param second The tree whose elements are removed from <code>first</code>
+	 * @return A tree of the elements of <code>first</code> that are not in <code>second</code>
+	 * @throws IllegalArgumentException if the trees keep different summaries
 	 */
-	public ArrayList<T> bfTraverse() {
-		ArrayList<T> list = new ArrayList<>();
-		LinkedList<Node<T>> queue = new LinkedList<>() {{
-			add(root);
-		}};
-		bfTraverse(list, queue);
-		return list;
+	public static <T extends Comparable<T>> AVLTree<T> difference(AVLTree<T> first, AVLTree<T> second) {
+		AVLTree<T> tree = first.newTree(second);
+		tree.root = first == second ? null : tree.difference(first.root, second.root);
+		first.clear();
+		second.clear();
+		return tree;
 	}
 
-	private void bfTraverse(ArrayList<T> list, LinkedList<Node<T>> queue) {
-		Node<T> node = queue.pollFirst();
+	/**
+	 * The parts of a subtree that is split at an element
+	 */
+	private class Split {
+		private Node<T> left; // elements less than the element
+		private Node<T> found; // the node of the element, or null
+		private Node<T> right; // elements greater than the element
+	}
+
+	/**
+	 * Splits the subtree of node at an element. The nodes of the subtree
+	 * are reused by the parts.
+	 *
+	 * @param node    The root of the subtree
+	 * @param element The element where the subtree is split
+	 * @return The parts of the subtree
+	 */
+	private Split split(Node<T> node, T element) {
 		if (node == null) {
-			return;
+			return new Split();
 		}
-		list.add(node.data);
-		if (node.left != null) {
-			queue.add(node.left);
+		int comparison = node.data.compareTo(element);
+		if (comparison == 0) {
+			Split split = new Split();
+			split.left = node.left;
+			split.found = node;
+			split.right = node.right;
+			return split;
+		} else if (comparison > 0) {
+			Split split = split(node.left, element);
+			split.right = join(split.right, node, node.right);
+			return split;
+		} else {
+			Split split = split(node.right, element);
+			split.left = join(node.left, node, split.left);
+			return split;
 		}
-		if (node.right != null) {
-			queue.add(node.right);
+	}
+
+	/**
+	 * Joins two subtrees with a node between them. The taller subtree is
+	 * descended along its inner side until the height of the other one, the
+	 * node is placed there and the nodes on the way back up are rebalanced.
+	 *
+	 * @param left   A subtree of elements less than the element of middle
+	 * @param middle The node between the subtrees, its children are replaced
+	 * @param right  A subtree of elements greater than the element of middle
+	 * @return The root of the joined subtree
+	 */
+	private Node<T> join(Node<T> left, Node<T> middle, Node<T> right) {
+		int difference = height(left) - height(right);
+		if (difference > 1) {
+			left.right = join(left.right, middle, right);
+			update(left);
+			return makeBalanced(left);
+		} else if (difference < -1) {
+			right.left = join(left, middle, right.left);
+			update(right);
+			return makeBalanced(right);
 		}
-		bfTraverse(list, queue);
+		middle.left = left;
+		middle.right = right;
+		update(middle);
+		return middle;
 	}
 
 	/**
-	 * For two nodes, if their distances to the root is the same and
-	 * their parents are not the same, they are said to be "cousins".
+	 * Joins two subtrees using the smallest node of right between them
+	 *
+	 * @param left  A subtree
+	 * @param right A subtree of elements greater than the elements of left
+	 * @return The root of the joined subtree
+	 */
+	private Node<T> join(Node<T> left, Node<T> right) {
+		if (right == null) {
+			return left;
+		}
+		Node<T> middle = findMostLeftNode(right);
+		return join(left, middle, deleteMostLeftNode(right));
+	}
+
+	/**
+	 * The recursive function of union. The second subtree is split at the
+	 * root of the first one and the parts are united with its subtrees.
+	 *
+	 * @return The root of the union
+	 */
+	private Node<T> union(Node<T> first, Node<T> second) {
+		if (first == null) {
+			return second;
+		} else if (second == null) {
+			return first;
+		}
+		Split parts = expose(first);
+		applyToParts(this::union, parts, split(second, first.data));
+		return join(parts.left, first, parts.right);
+	}
+
+	/**
+	 * The recursive function of intersection. The second subtree is split at
+	 * the root of the first one and the parts are intersected with its subtrees.
+	 *
+	 * @return The root of the intersection
+	 */
+	private Node<T> intersection(Node<T> first, Node<T> second) {
+		if (first == null || second == null) {
+			return null;
+		}
+		Split parts = expose(first);
+		Split split = split(second, first.data);
+		applyToParts(this::intersection, parts, split);
+		return split.found != null ? join(parts.left, first, parts.right) : join(parts.left, parts.right);
+	}
+
+	/**
+	 * The recursive function of difference. The first subtree is split at the
+	 * root of the second one and the subtrees of the second one are removed
+	 * from the parts.
+	 *
+	 * @return The root of the difference
+	 */
+	private Node<T> difference(Node<T> first, Node<T> second) {
+		if (first == null || second == null) {
+			return first;
+		}
+		Split parts = split(first, second.data);
+		applyToParts(this::difference, parts, expose(second));
+		return join(parts.left, parts.right);
+	}
+
+	/**
+	 * @param node A node
+	 * @return The node and its subtrees as parts
+	 */
+	private Split expose(Node<T> node) {
+		Split parts = new Split();
+		parts.left = node.left;
+		parts.found = node;
+		parts.right = node.right;
+		return parts;
+	}
+
+	/**
+	 * Applies a set operation to the left parts and to the right parts of two
+	 * split subtrees. The left parts are handed to the fork join pool if the
+	 * parts are large and the pool can run more than one task.
+	 *
+	 * @param operation The set operation
+	 * @param first     The first parts, which are replaced by the results
+	 * @param second    The second parts
+	 */
+	private void applyToParts(BinaryOperator<Node<T>> operation, Split first, Split second) {
+		int size = size(first.left) + size(first.right) + size(second.left) + size(second.right);
+		if (size >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			Node<T> firstLeft = first.left, secondLeft = second.left;
+			ForkJoinTask<Node<T>> left = ForkJoinTask.adapt(() -> operation.apply(firstLeft, secondLeft)).fork();
+			first.right = operation.apply(first.right, second.right);
+			first.left = left.join();
+		} else {
+			first.left = operation.apply(first.left, second.left);
+			first.right = operation.apply(first.right, second.right);
+		}
+	}
+
+	/**
+	 * Writes the tree to a new file, see writeSnapshot(FileChannel, KeyCodec).
+	 *
+	 * @param file  The file to be written, replaced if it exists
+	 * @param codec Writes the elements
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeSnapshot(Path file, KeyCodec<? super T> codec) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeSnapshot(channel, codec);
+		}
+	}
+
+	/**
+	 * Writes the tree to the channel at its position in a compact binary format.
 	 * <p>
-	 * Of course, if one of the parameters is not in the list, they
-	 * cannot be cousins.
+	 * The nodes are written in pre order, each one as a byte telling which
+	 * children it has, a byte for its height and its encoded element. The
+	 * bytes are streamed through a fixed size buffer, so the whole snapshot
+	 * is never held in memory.
 	 *
-	 * @return true if elements in the parameter are cousins, false otherwise
+	 * @param channel The channel to be written
+	 * @param codec   Writes the elements
+	 * @throws IOException if the channel cannot be written
 	 */
-	public boolean areCousins(T element1, T element2) {
-		Node<T> node = root;
-		while (node != null) {
-			int comparison1 = node.data.compareTo(element1);
-			int comparison2 = node.data.compareTo(element2);
-			if (comparison1 != comparison2) {
-				break;
+	public void writeSnapshot(FileChannel channel, KeyCodec<? super T> codec) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+		buffer.putLong(SNAPSHOT_MAGIC);
+		buffer.putInt(size());
+		buffer = writeSnapshot(channel, codec, buffer, root);
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * The recursive function to write the subtree of node in pre order.
+	 *
+	 * @param channel The channel to be written
+	 * @param codec   Writes the elements
+	 * @param buffer  The buffer that collects the bytes for the channel
+	 * @param node    The next node to be written
+	 * @return The buffer to be used afterwards, replaced by a larger one if an element did not fit
+	 * @throws IOException if the channel cannot be written
+	 */
+	private ByteBuffer writeSnapshot(FileChannel channel, KeyCodec<? super T> codec, ByteBuffer buffer, Node<T> node)
+			throws IOException {
+		if (node == null) {
+			return buffer;
+		}
+		int recordSize = 2 + codec.encodedSize(node.data);
+		if (buffer.remaining() < recordSize) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
 			}
-			if (comparison1 == 0) {
-				break;
+			buffer.clear();
+			if (buffer.capacity() < recordSize) {
+				buffer = ByteBuffer.allocateDirect(recordSize);
 			}
-			if (comparison1 > 0) {
-				node = node.left;
-			} else {
-				node = node.right;
+		}
+		buffer.put((byte) ((node.left != null ? SNAPSHOT_LEFT : 0) | (node.right != null ? SNAPSHOT_RIGHT : 0)));
+		buffer.put((byte) node.height);
+		codec.encode(node.data, buffer);
+		buffer = writeSnapshot(channel, codec, buffer, node.left);
+		return writeSnapshot(channel, codec, buffer, node.right);
+	}
+
+	/**
+	 * Reads a tree from a file, see readSnapshot(FileChannel, KeyCodec).
+	 *
+	 * @param file  The file written by writeSnapshot
+	 * @param codec Reads the elements
+	 * @return The tree in the file
+	 * @throws IOException if the file cannot be read or is not a valid snapshot
+	 */
+	public static <T extends Comparable<T>> AVLTree<T> readSnapshot(Path file, KeyCodec<T> codec) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return readSnapshot(channel, codec);
+		}
+	}
+
+	/**
+	 * Reads a tree written by writeSnapshot from the channel at its position.
+	 * <p>
+	 * The rest of the channel is memory mapped and the elements are decoded
+	 * directly from the mapping. The nodes are linked as they were written,
+	 * so the tree has exactly the shape of the written one and no element is
+	 * compared. The channel is positioned after the snapshot.
+	 *
+	 * @param channel The channel to be read
+	 * @param codec   Reads the elements
+	 * @return The tree in the channel
+	 * @throws IOException if the channel cannot be read, the snapshot is not valid
+	 *                     or it is larger than 2 GB
+	 */
+	public static <T extends Comparable<T>> AVLTree<T> readSnapshot(FileChannel channel, KeyCodec<T> codec)
+			throws IOException {
+		long start = channel.position();
+		long length = channel.size() - start;
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot is too large to be mapped: " + length + " bytes");
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		AVLTree<T> tree = new AVLTree<>();
+		try {
+			if (buffer.getLong() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not an AVL tree snapshot");
 			}
+			int size = buffer.getInt();
+			tree.root = size == 0 ? null : tree.readSnapshot(buffer, codec, Byte.MAX_VALUE);
+			if (tree.size() != size) {
+				throw new IOException("Corrupt snapshot: " + tree.size() + " nodes instead of " + size);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated snapshot", e);
 		}
-		if (node == null) {
-			return false;
+		channel.position(start + buffer.position());
+		return tree;
+	}
+
+	/**
+	 * The recursive function to read a subtree written in pre order.
+	 *
+	 * @param buffer    The buffer positioned at the root of the subtree
+	 * @param codec     Reads the elements
+	 * @param maxHeight The height of the parent, the subtree must be lower
+	 * @return The root of the subtree
+	 * @throws IOException if the heights in the snapshot are not consistent
+	 */
+	private Node<T> readSnapshot(ByteBuffer buffer, KeyCodec<T> codec, int maxHeight) throws IOException {
+		byte children = buffer.get();
+		int height = buffer.get();
+		if (height < 1 || height >= maxHeight) {
+			throw new IOException("Corrupt snapshot: height " + height + " under height " + maxHeight);
 		}
-		int level1 = elementLevel(node, element1);
-		int level2 = elementLevel(node, element2);
-		if (level1 != level2) {
-			return false;
+		Node<T> node = new Node<T>(codec.decode(buffer));
+		if ((children & SNAPSHOT_LEFT) != 0) {
+			node.left = readSnapshot(buffer, codec, height);
 		}
-		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
-		if (level1 <= 1) {
-			return false;
+		if ((children & SNAPSHOT_RIGHT) != 0) {
+			node.right = readSnapshot(buffer, codec, height);
+		}
+		node.height = height;
+		node.size = size(node.left) + size(node.right) + 1;
+		return node;
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private Node<T> makeBalanced(Node<T> node){
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			if (height(node.left.left) >= height(node.left.right)) {
+				if (metrics != null) {
+					metrics.rightRotation();
+				}
+				return rightRotate(node);
+			} else {
+				if (metrics != null) {
+					metrics.leftRightRotation();
+				}
+				return leftRightRotate(node);
+			}
+		} else if (balance < -1) {
+			if (height(node.right.right) >= height(node.right.left)) {
+				if (metrics != null) {
+					metrics.leftRotation();
+				}
+				return leftRotate(node);
+			} else {
+				if (metrics != null) {
+					metrics.rightLeftRotation();
+				}
+				return rightLeftRotate(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation 
+	 */
+	private Node<T> rightRotate(Node<T> node) {
+		Node<T> leftNode = node.left;
+		Node<T> leftRightNode = leftNode.right;
+		node.left = leftRightNode;
+		leftNode.right = node;
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation 
+	 */
+	private Node<T> leftRotate(Node<T> node) {
+		Node<T> rightNode = node.right;
+		Node<T> rightLeftNode = rightNode.left;
+		node.right = rightLeftNode;
+		rightNode.left = node;
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Makes the necessary left-right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation 
+	 */
+	private Node<T> leftRightRotate(Node<T> node) {
+		Node<T> leftNode = node.left;
+		Node<T> leftRightNode = node.left.right;
+		node.left = leftRightNode;
+		leftNode.right = leftRightNode.left;
+		leftRightNode.left = leftNode;
+		update(leftNode);
+		update(leftRightNode);
+		update(node);
+		return rightRotate(node);
+	}
+
+	/**
+	 * Makes the necessary right-left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation 
+	 */
+	private Node<T> rightLeftRotate(Node<T> node) {
+		Node<T> rightNode = node.right;
+		Node<T> rightLeftNode = node.right.left;
+		node.right = rightLeftNode;
+		rightNode.left = rightLeftNode.right;
+		rightLeftNode.right = rightNode;
+		update(rightNode);
+		update(rightLeftNode);
+		update(node);
+		return leftRotate(node);
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		int size = size();
+		root = delete(root, element);
+		if (size() != size) {
+			modCount++;
+		}
+		if (metrics != null) {
+			metrics.recordDelete(visits, visits);
+			visits = 0;
 		}
-		return true;
 	}
 
 	/**
-	 * Searches an element starting from the given node
+	 * Deletes the element in the parameter from the subtree of node
+	 * in a single descent, rebalancing the nodes on the way back up.
+	 * <p>
+	 * If the subtree does not contain the element in the parameter,
+	 * no update is done on the subtree
 	 *
-	 * @param node    The node under which the search operation is started
-	 * @param element The element to be searched
-	 * @return The Node containing element or null if element couldn't found
+	 * @param node Parent node of the subtree
+	 * @param element Element to be deleted
+	 * @return The node at that location after deletion
 	 */
-	private int elementLevel(Node<T> node, T element){
+	private Node<T> delete(Node<T> node, T element) {
 		if (node == null) {
-			return Integer.MIN_VALUE;
+			return null;
 		}
-		if (node.data.compareTo(element) == 0) {
-			return 0;
-		} else if (node.data.compareTo(element) > 0) {
-			return elementLevel(node.left, element) + 1;
+		if (metrics != null) {
+			visits++;
+		}
+		int comparison = node.data.compareTo(element);
+		if (comparison > 0) {
+			node.left = delete(node.left, element);
+		} else if (comparison < 0) {
+			node.right = delete(node.right, element);
+		} else if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
 		} else {
-			return elementLevel(node.right, element) + 1;
+			node.data = findMostLeftNode(node.right).data;
+			node.right = deleteMostLeftNode(node.right);
 		}
+		update(node);
+		return makeBalanced(node);
 	}
 
 	/**
-	 * Returns the number of elements in the tree that are
-	 * greater than <code>lower</code> and less than <code>upper</code>
-	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 * Retrieves the smallest node in the subtree of given node
+	 * 
+	 * @param node The node whose subtree is to be searched
+	 * @return The smallest node in the subtree
+	 */
+	private Node<T> findMostLeftNode(Node<T> node){
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 * without any comparison, rebalancing the nodes on the way back up.
+	 * 
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private Node<T> deleteMostLeftNode(Node<T> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = deleteMostLeftNode(node.left);
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Recalculates the height, the subtree size and the summary of the given
+	 * node from its children. Must be called whenever a child of the node changes.
 	 *
-	 * @param lower the lower limit
-	 * @param upper the upper limit
-	 * @return the number of elements within the range
+	 * @param node The node to be updated
 	 */
-	public int numElementsInRange(T lower, T upper) {
-		return numElementsInRange(root, lower, upper);
+	private void update(Node<T> node) {
+		node.height = Integer.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+		if (augmented) {
+			summarize(node);
+		}
 	}
 
 	/**
-	 * Returns the number of elements int the subtree of a node that are
-	 * greater than <code>lower</code> and less than <code>upper</code>
-	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 * Recalculates the summary of the given node from its element and the
+	 * summaries of its children
 	 *
-	 * @param node  The node determining the subtree
-	 * @param lower The lower limit
-	 * @param upper The upper limit
-	 * @return The number of elements within the range in the subtree
+	 * @param node The node to be updated, with the node type of the monoid
 	 */
-	private int numElementsInRange(Node<T> node, T lower, T upper) {
-		if (node == null) {
-			return 0;
+	private void summarize(Node<T> node) {
+		if (longMonoid != null) {
+			long summary = longMonoid.of(node.data);
+			if (node.left != null) {
+				summary = longMonoid.combine(((LongSummaryNode) node.left).summary, summary);
+			}
+			if (node.right != null) {
+				summary = longMonoid.combine(summary, ((LongSummaryNode) node.right).summary);
+			}
+			((LongSummaryNode) node).summary = summary;
+		} else if (doubleMonoid != null) {
+			double summary = doubleMonoid.of(node.data);
+			if (node.left != null) {
+				summary = doubleMonoid.combine(((DoubleSummaryNode) node.left).summary, summary);
+			}
+			if (node.right != null) {
+				summary = doubleMonoid.combine(summary, ((DoubleSummaryNode) node.right).summary);
+			}
+			((DoubleSummaryNode) node).summary = summary;
+		} else {
+			Object summary = monoid.of(node.data);
+			if (node.left != null) {
+				summary = monoid.combine(((SummaryNode) node.left).summary, summary);
+			}
+			if (node.right != null) {
+				summary = monoid.combine(summary, ((SummaryNode) node.right).summary);
+			}
+			((SummaryNode) node).summary = summary;
 		}
-		if (node.data.compareTo(lower) <= 0 || node.data.compareTo(upper) >= 0) {
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 *
+	 * @param node The node whose height is to be calculated
+	 * @return The height of the node
+	 */
+	private int height(Node<T> node) {
+		if (node == null) {
 			return 0;
 		}
-		return numElementsInRange(node.left, lower, upper) + numElementsInRange(node.right, lower, upper) + 1;
+		return node.height;
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(root);
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 * This means, the left subtree of the node is traversed first.
+	 * Then, the node itself is visited.
+	 * Then, the the right subtree is traversed.
+	 * <p>
+	 * The data in each node is added to an ArrayList as the
+	 * node is processed. In other words, this ArrayList stores the order of visiting
+	 * of the nodes in the tree
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		ArrayList<T> list = new ArrayList<>();
+		inOrderTraversal(list, root);
+		return list;
+	}
+
+	/**
+	 * The recursive function to traverse tree in order.
+	 * 
+	 * @param list List of nodes traversed
+	 * @param node The next node to be traversed
+	 */
+	private void inOrderTraversal(ArrayList<T> list, Node<T> node) {
+		if (node == null) {
+			return;
+		}
+		inOrderTraversal(list, node.left);
+		list.add(node.data);
+		inOrderTraversal(list, node.right);
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 * As nodes are visited, "data" fields are added to an ArrayList.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		ArrayList<T> list = new ArrayList<>(size());
+		Iterator<T> iterator = levelOrderIterator();
+		while (iterator.hasNext()) {
+			list.add(iterator.next());
+		}
+		return list;
+	}
+
+	/**
+	 * Returns an iterator that visits the elements in ascending order.
+	 * Elements are visited lazily, the iterator keeps only the path to
+	 * the next element, which takes O(height) memory.
+	 *
+	 * @return An in order iterator over the elements
+	 */
+	public Iterator<T> iterator() {
+		return new TreeIterator(false, false, null, false, false, null, false);
+	}
+
+	/**
+	 * Returns an iterator that visits the elements in descending order.
+	 *
+	 * @return A reverse order iterator over the elements
+	 */
+	public Iterator<T> descendingIterator() {
+		return new TreeIterator(true, false, null, false, false, null, false);
+	}
+
+	/**
+	 * Returns a cursor that remembers where its last operation was, so that
+	 * operations on nearby elements do not start at the root.
+	 *
+	 * @return A new cursor at the root
+	 * @see Cursor
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Returns an iterator that visits the elements in a breadth first manner,
+	 * in the same order as bfTraverse. Elements are visited lazily.
+	 *
+	 * @return A level order iterator over the elements
+	 */
+	public Iterator<T> levelOrderIterator() {
+		return new LevelOrderIterator();
+	}
+
+	/**
+	 * Returns a spliterator over the elements in ascending order.
+	 * It splits along the subtrees of the tree, so a parallel stream
+	 * divides the work between the subtrees.
+	 *
+	 * @return A spliterator over the elements
+	 */
+	public Spliterator<T> spliterator() {
+		return new TreeSpliterator(false, null, root);
+	}
+
+	/**
+	 * Visits the elements in ascending or descending order. The stack holds
+	 * the nodes whose elements are still to be visited together with their
+	 * right (for descending order left) subtrees, the next element is on its top.
+	 * <p>
+	 * The iteration may start after a given element and may stop at a bound,
+	 * so views of a range visit only the O(log n + k) nodes they need.
+	 */
+	private class TreeIterator implements Iterator<T> {
+		private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		private final boolean descending;
+		private final boolean hasBound; // whether the iteration stops at bound
+		private final T bound;
+		private final boolean boundInclusive;
+		private T lastReturned;
+		private boolean canRemove;
+		private int expectedModCount = modCount;
+
+		/**
+		 * @param descending     Whether the elements are visited in descending order
+		 * @param hasStart       Whether the iteration starts at <code>start</code>
+		 *                       instead of the first element
+		 * @param start          The first element in the iteration order that may be visited
+		 * @param startInclusive Whether <code>start</code> itself may be visited
+		 * @param hasBound       Whether the iteration stops at <code>bound</code>
+		 * @param bound          The last element in the iteration order that may be visited
+		 * @param boundInclusive Whether <code>bound</code> itself may be visited
+		 */
+		TreeIterator(boolean descending, boolean hasStart, T start, boolean startInclusive,
+				boolean hasBound, T bound, boolean boundInclusive) {
+			this.descending = descending;
+			this.hasBound = hasBound;
+			this.bound = bound;
+			this.boundInclusive = boundInclusive;
+			seek(hasStart, start, startInclusive);
+		}
+
+		/**
+		 * Creates an ascending iterator over a subtree, used by the spliterator
+		 *
+		 * @param subtree The root of the subtree to be visited
+		 */
+		TreeIterator(Node<T> subtree) {
+			this.descending = false;
+			this.hasBound = false;
+			this.bound = null;
+			this.boundInclusive = false;
+			pushPath(subtree);
+		}
+
+		/**
+		 * Fills the stack with the path from the root to the first element
+		 * after (or at) <code>start</code> in the iteration order
+		 *
+		 * @param hasStart       Whether there is a start element
+		 * @param start          The start element
+		 * @param startInclusive Whether <code>start</code> itself is visited
+		 */
+		private void seek(boolean hasStart, T start, boolean startInclusive) {
+			stack.clear();
+			Node<T> node = root;
+			while (node != null) {
+				int comparison = hasStart ? node.data.compareTo(start) : (descending ? -1 : 1);
+				if (descending) {
+					comparison = -comparison;
+				}
+				if (comparison > 0 || (comparison == 0 && startInclusive)) {
+					stack.push(node);
+					node = descending ? node.right : node.left;
+				} else {
+					node = descending ? node.left : node.right;
+				}
+			}
+		}
+
+		/**
+		 * Pushes the node and all its left (for descending order right)
+		 * descendants to the stack
+		 *
+		 * @param node The node whose path is pushed
+		 */
+		private void pushPath(Node<T> node) {
+			while (node != null) {
+				stack.push(node);
+				node = descending ? node.right : node.left;
+			}
+		}
+
+		public boolean hasNext() {
+			if (stack.isEmpty()) {
+				return false;
+			}
+			if (!hasBound) {
+				return true;
+			}
+			int comparison = stack.peek().data.compareTo(bound);
+			if (descending) {
+				comparison = -comparison;
+			}
+			return comparison < 0 || (comparison == 0 && boundInclusive);
+		}
+
+		public T next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node<T> node = stack.pop();
+			pushPath(descending ? node.left : node.right);
+			lastReturned = node.data;
+			canRemove = true;
+			return lastReturned;
+		}
+
+		/**
+		 * Deletes the last returned element. Deletion may move elements
+		 * between nodes, so the stack is rebuilt from the root afterwards.
+		 */
+		public void remove() {
+			if (!canRemove) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			delete(lastReturned);
+			expectedModCount = modCount;
+			canRemove = false;
+			seek(true, lastReturned, false);
+		}
+	}
+
+	/**
+	 * A finger into the tree for streams of nearby elements, such as
+	 * timestamps or sequence numbers that arrive in nearly ascending order.
+	 * <p>
+	 * The cursor keeps the path from the root to the node of its last
+	 * operation, together with the range of elements that each subtree on
+	 * the path can hold. An operation climbs the path only until the range
+	 * contains its element and descends from there, so an element at
+	 * distance d in the order costs O(log d) comparisons amortized over a
+	 * stream instead of a full descent. Appending past the largest element
+	 * after a previous append takes two comparisons.
+	 * <p>
+	 * After an insert or a delete the heights and sizes on the path are
+	 * updated up to the root without any comparison, and the path is cut
+	 * at the highest rotated node. If the tree is changed by anything else
+	 * than the cursor, the next operation starts again from the root.
+	 * A cursor must not be shared by threads.
+	 */
+	public class Cursor {
+		private Node<T>[] path; // path[0] is the root, path[depth - 1] is the node of the last operation
+		private T[] lows, highs; // exclusive bounds of the elements under path[i], null if unbounded
+		private int depth;
+		private int expectedModCount = modCount;
+		private int lastComparison; // comparison of the last node of the path with the searched element
+		private int visited, comparisons; // counted for the metrics
+		private T last; // the element returned by the last seek or next
+		private boolean started; // whether seek or next has been called
+
+		@SuppressWarnings("unchecked")
+		private Cursor() {
+			path = (Node<T>[]) new AVLTree<?>.Node<?>[32];
+			lows = (T[]) new Comparable<?>[path.length];
+			highs = (T[]) new Comparable<?>[path.length];
+		}
+
+		/**
+		 * Appends a node to the path
+		 *
+		 * @param node The node
+		 * @param low  The exclusive lower bound of its subtree, or null
+		 * @param high The exclusive upper bound of its subtree, or null
+		 */
+		private void push(Node<T> node, T low, T high) {
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+				lows = Arrays.copyOf(lows, 2 * depth);
+				highs = Arrays.copyOf(highs, 2 * depth);
+			}
+			path[depth] = node;
+			lows[depth] = low;
+			highs[depth] = high;
+			depth++;
+		}
+
+		/**
+		 * Shortens the path to the deepest node whose subtree can contain
+		 * the element. The path starts again at the root if the tree was
+		 * changed by someone else.
+		 *
+		 * @param element The element of the next operation
+		 */
+		private void climb(T element) {
+			if (expectedModCount != modCount) {
+				expectedModCount = modCount;
+				depth = 0;
+			}
+			if (depth == 0) {
+				if (root != null) {
+					push(root, null, null);
+				}
+				return;
+			}
+			while (depth > 1) {
+				T low = lows[depth - 1];
+				T high = highs[depth - 1];
+				if (low != null) {
+					comparisons++;
+					if (low.compareTo(element) >= 0) {
+						depth--;
+						continue;
+					}
+				}
+				if (high != null) {
+					comparisons++;
+					if (high.compareTo(element) <= 0) {
+						depth--;
+						continue;
+					}
+				}
+				break;
+			}
+		}
+
+		/**
+		 * Searches the element below the end of the path, extending the path
+		 *
+		 * @param element The element to be searched
+		 * @return The node storing element, which ends the path, or null if the
+		 * path ends at the node under which element would be inserted
+		 */
+		private Node<T> descend(T element) {
+			if (depth == 0) {
+				return null;
+			}
+			Node<T> node = path[depth - 1];
+			while (true) {
+				visited++;
+				comparisons++;
+				lastComparison = node.data.compareTo(element);
+				if (lastComparison == 0) {
+					return node;
+				}
+				Node<T> child = lastComparison > 0 ? node.left : node.right;
+				if (child == null) {
+					return null;
+				}
+				if (lastComparison > 0) {
+					push(child, lows[depth - 1], node.data);
+				} else {
+					push(child, node.data, highs[depth - 1]);
+				}
+				node = child;
+			}
+		}
+
+		/**
+		 * Updates the nodes of the path from the given level up to the root
+		 * and rebalances them. The path is cut at the highest rotated node.
+		 * <p>
+		 * Once the height of a subtree stays the same, the nodes above it
+		 * keep their heights and balance, and only their sizes and summaries
+		 * change.
+		 *
+		 * @param level The deepest level whose subtree has changed
+		 * @param delta The change of the number of elements, 1 or -1
+		 */
+		private void rebalance(int level, int delta) {
+			int i = level;
+			for (; i >= 0; i--) {
+				Node<T> node = path[i];
+				int height = node.height;
+				update(node);
+				Node<T> balanced = makeBalanced(node);
+				if (balanced != node) {
+					if (i == 0) {
+						root = balanced;
+					} else {
+						Node<T> parent = path[i - 1];
+						if (parent.left == node) {
+							parent.left = balanced;
+						} else {
+							parent.right = balanced;
+						}
+					}
+					path[i] = balanced;
+					depth = i + 1;
+				}
+				if (balanced.height == height) {
+					break;
+				}
+			}
+			for (i--; i >= 0; i--) {
+				path[i].size += delta;
+				if (augmented) {
+					summarize(path[i]);
+				}
+			}
+		}
+
+		/**
+		 * Replaces the node at a level of the path with one of its subtrees
+		 *
+		 * @param level       The level of the removed node
+		 * @param replacement The subtree that takes its place, or null
+		 */
+		private void unlink(int level, Node<T> replacement) {
+			Node<T> node = path[level];
+			if (level == 0) {
+				root = replacement;
+			} else if (path[level - 1].left == node) {
+				path[level - 1].left = replacement;
+			} else {
+				path[level - 1].right = replacement;
+			}
+			depth = level;
+			rebalance(level - 1, -1);
+		}
+
+		/**
+		 * Returns true if the element is in the tree, starting the search
+		 * from the position of the cursor
+		 *
+		 * @param element Element to be searched
+		 * @return Whether tree contains the parameter
+		 */
+		public boolean contains(T element) {
+			visited = 0;
+			comparisons = 0;
+			climb(element);
+			boolean found = descend(element) != null;
+			if (metrics != null) {
+				metrics.recordSearch(visited, comparisons);
+			}
+			return found;
+		}
+
+		/**
+		 * Inserts the element, starting the search from the position of the cursor
+		 * <p>
+		 * If tree already contains the parameter,
+		 * no update is done on the tree
+		 *
+		 * @param element Element to be added
+		 */
+		public void insert(T element) {
+			putIfAbsent(element);
+		}
+
+		/**
+		 * Inserts the element unless the tree already contains an equal one,
+		 * starting the search from the position of the cursor
+		 *
+		 * @param element Element to be added
+		 * @return The equal element already in the tree, or null if the
+		 * element has been inserted
+		 */
+		public T putIfAbsent(T element) {
+			visited = 0;
+			comparisons = 0;
+			climb(element);
+			Node<T> found = descend(element);
+			if (found == null) {
+				Node<T> node = newNode(element);
+				if (depth == 0) {
+					root = node;
+					push(node, null, null);
+				} else {
+					int level = depth - 1;
+					Node<T> parent = path[level];
+					if (lastComparison > 0) {
+						parent.left = node;
+						push(node, lows[level], parent.data);
+					} else {
+						parent.right = node;
+						push(node, parent.data, highs[level]);
+					}
+					rebalance(level, 1);
+				}
+				modCount++;
+				expectedModCount = modCount;
+			}
+			if (metrics != null) {
+				metrics.recordInsert(visited, comparisons);
+			}
+			return found == null ? null : found.data;
+		}
+
+		/**
+		 * Deletes the element, starting the search from the position of the cursor
+		 * <p>
+		 * If tree does not contain the element in the parameter,
+		 * no update is done on the tree
+		 *
+		 * @param element Element to be deleted
+		 */
+		public void delete(T element) {
+			visited = 0;
+			comparisons = 0;
+			climb(element);
+			Node<T> node = descend(element);
+			if (node != null) {
+				int level = depth - 1;
+				if (node.left != null && node.right != null) {
+					// the smallest element of the right subtree takes the place of the element
+					Node<T> successor = node.right;
+					push(successor, node.data, highs[level]);
+					while (successor.left != null) {
+						successor = successor.left;
+						push(successor, node.data, path[depth - 1].data);
+					}
+					node.data = successor.data;
+					unlink(depth - 1, successor.right);
+					// the bounds below the node were made with the deleted element
+					depth = Math.min(depth, level + 1);
+				} else {
+					unlink(level, node.left != null ? node.left : node.right);
+				}
+				modCount++;
+				expectedModCount = modCount;
+			}
+			if (metrics != null) {
+				metrics.recordDelete(visited, comparisons);
+			}
+		}
+
+		/**
+		 * Moves the cursor to the smallest element that is greater than
+		 * or equal to the given one
+		 *
+		 * @param element The element to be searched
+		 * @return The element at the cursor, or null if there is no such element
+		 */
+		public T seek(T element) {
+			started = true;
+			last = ceiling(element, true);
+			return last;
+		}
+
+		/**
+		 * Moves the cursor to the element after the one returned by the last
+		 * seek or next, or to the smallest element if neither was called.
+		 * A scan with next costs O(1) amortized per element.
+		 *
+		 * @return The element at the cursor, or null at the end of the tree
+		 */
+		public T next() {
+			if (!started) {
+				started = true;
+				depth = 0;
+				expectedModCount = modCount;
+				if (root != null) {
+					push(root, null, null);
+					pushLeftmost();
+					last = path[depth - 1].data;
+				}
+				return last;
+			}
+			if (last != null) {
+				last = ceiling(last, false);
+			}
+			return last;
+		}
+
+		/**
+		 * Extends the path to the smallest element under its last node
+		 */
+		private void pushLeftmost() {
+			Node<T> node = path[depth - 1];
+			while (node.left != null) {
+				push(node.left, lows[depth - 1], node.data);
+				node = node.left;
+			}
+		}
+
+		/**
+		 * Moves the path to the smallest element greater than (or equal to)
+		 * the given one
+		 *
+		 * @param element   The element to be searched
+		 * @param inclusive Whether an element equal to the given one is returned
+		 * @return The element found, or null if there is none
+		 */
+		private T ceiling(T element, boolean inclusive) {
+			climb(element);
+			Node<T> node = descend(element);
+			if (node != null) {
+				if (inclusive) {
+					return node.data;
+				}
+				if (node.right != null) {
+					push(node.right, node.data, highs[depth - 1]);
+					pushLeftmost();
+					return path[depth - 1].data;
+				}
+			} else if (depth == 0) {
+				return null;
+			} else if (lastComparison > 0) {
+				return path[depth - 1].data;
+			}
+			// the first ancestor that is reached from its left subtree
+			int level = depth - 1;
+			while (level > 0 && path[level - 1].right == path[level]) {
+				level--;
+			}
+			if (level == 0) {
+				return null;
+			}
+			depth = level;
+			return path[level - 1].data;
+		}
+	}
+
+	/**
+	 * Visits the elements in a breadth first manner using a queue
+	 * of the nodes that are not visited yet.
+	 */
+	private class LevelOrderIterator implements Iterator<T> {
+		private final ArrayDeque<Node<T>> queue = new ArrayDeque<>();
+
+		LevelOrderIterator() {
+			if (root != null) {
+				queue.add(root);
+			}
+		}
+
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		public T next() {
+			Node<T> node = queue.poll();
+			if (node == null) {
+				throw new NoSuchElementException();
+			}
+			if (node.left != null) {
+				queue.add(node.left);
+			}
+			if (node.right != null) {
+				queue.add(node.right);
+			}
+			return node.data;
+		}
+	}
+
+	/**
+	 * Spliterator over an optional first element followed by all the
+	 * elements of a subtree. Splitting hands the first element and the left
+	 * subtree to a new spliterator, and keeps the root and the right subtree.
+	 * Since subtree sizes are known, the sizes of both halves are exact.
+	 */
+	private class TreeSpliterator implements Spliterator<T> {
+		private boolean hasFirst;
+		private T first;
+		private Node<T> subtree;
+		private TreeIterator iterator; // created when the traversal starts
+		private long remaining; // number of elements not visited yet
+
+		/**
+		 * @param hasFirst Whether there is an element before the subtree
+		 * @param first    The element before the subtree
+		 * @param subtree  The subtree after the first element
+		 */
+		TreeSpliterator(boolean hasFirst, T first, Node<T> subtree) {
+			this.hasFirst = hasFirst;
+			this.first = first;
+			this.subtree = subtree;
+			this.remaining = (hasFirst ? 1 : 0) + size(subtree);
+		}
+
+		public Spliterator<T> trySplit() {
+			if (iterator != null || subtree == null || (!hasFirst && subtree.left == null)) {
+				return null;
+			}
+			TreeSpliterator prefix = new TreeSpliterator(hasFirst, first, subtree.left);
+			hasFirst = true;
+			first = subtree.data;
+			subtree = subtree.right;
+			remaining -= prefix.remaining;
+			return prefix;
+		}
+
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (hasFirst) {
+				hasFirst = false;
+				remaining--;
+				action.accept(first);
+				return true;
+			}
+			if (iterator == null) {
+				iterator = new TreeIterator(subtree);
+				subtree = null;
+			}
+			if (!iterator.hasNext()) {
+				return false;
+			}
+			remaining--;
+			action.accept(iterator.next());
+			return true;
+		}
+
+		public void forEachRemaining(Consumer<? super T> action) {
+			while (tryAdvance(action)) {
+				// visits the rest of the elements one by one
+			}
+		}
+
+		public long estimateSize() {
+			return remaining;
+		}
+
+		public Comparator<? super T> getComparator() {
+			return null; // natural ordering
+		}
+
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+		}
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 * <p>
+	 * Of course, if one of the parameters is not in the list, they
+	 * cannot be cousins.
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		Node<T> node = root;
+		// descend while both elements are on the same side
+		while (node != null) {
+			int comparison1 = Integer.signum(node.data.compareTo(element1));
+			int comparison2 = Integer.signum(node.data.compareTo(element2));
+			if (comparison1 != comparison2 || comparison1 == 0) {
+				break;
+			}
+			node = comparison1 > 0 ? node.left : node.right;
+		}
+		if (node == null) {
+			return false;
+		}
+		// follow both paths below the split a level at a time, so that
+		// the walk stops as soon as one of them ends
+		Node<T> node1 = node, node2 = node;
+		int level = 0;
+		while (true) {
+			int comparison1 = node1.data.compareTo(element1);
+			int comparison2 = node2.data.compareTo(element2);
+			if (comparison1 == 0 || comparison2 == 0) {
+				// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+				return comparison1 == 0 && comparison2 == 0 && level >= 2;
+			}
+			node1 = comparison1 > 0 ? node1.left : node1.right;
+			node2 = comparison2 > 0 ? node2.left : node2.right;
+			if (node1 == null || node2 == null) {
+				return false;
+			}
+			level++;
+		}
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		return levelBelow(root, element);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		Node<T> parent = null;
+		Node<T> node = root;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return parent == null ? null : parent.data;
+			}
+			parent = node;
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		Node<T> node = root;
+		while (node != null) {
+			int comparison1 = Integer.signum(node.data.compareTo(element1));
+			int comparison2 = Integer.signum(node.data.compareTo(element2));
+			if (comparison1 != comparison2 || comparison1 == 0) {
+				break;
+			}
+			node = comparison1 > 0 ? node.left : node.right;
+		}
+		if (node == null || levelBelow(node, element1) < 0 || levelBelow(node, element2) < 0) {
+			return null;
+		}
+		return node.data;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @return The distance of the element to node, or -1 if it is not in the subtree
+	 */
+	private int levelBelow(Node<T> node, T element) {
+		int level = 0;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return level;
+			}
+			node = comparison > 0 ? node.left : node.right;
+			level++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Answers many areCousins queries with one walk over the tree. The
+	 * i-th answer is <code>areCousins(elements1.get(i), elements2.get(i))</code>.
+	 * <p>
+	 * All the query elements are sent down the tree together and are
+	 * partitioned at each node on their paths, like in quicksort with the
+	 * nodes as pivots. Each of those nodes is visited once for the whole
+	 * batch instead of once per query.
+	 *
+	 * @param elements1 the first elements of the queries
+	 * @param elements2 the second elements of the queries
+	 * @return whether the elements of each query are cousins
+	 * @throws IllegalArgumentException if the lists have different sizes
+	 */
+	public boolean[] areCousins(List<? extends T> elements1, List<? extends T> elements2) {
+		Batch batch = new Batch(elements1, elements2, false);
+		batch.locate(root, null, 0, 0, batch.slots.length, 0, 0);
+		boolean[] cousins = new boolean[batch.queries];
+		for (int i = 0; i < cousins.length; i++) {
+			int depth = batch.depths[i];
+			// a depth of at least one and different parents also rule out siblings and equal elements
+			cousins[i] = depth >= 1 && depth == batch.depths[batch.queries + i]
+					&& batch.parents[i] != batch.parents[batch.queries + i];
+		}
+		return cousins;
+	}
+
+	/**
+	 * Answers many lowestCommonAncestor queries with one walk over the tree.
+	 * The i-th answer is
+	 * <code>lowestCommonAncestor(elements1.get(i), elements2.get(i))</code>.
+	 * <p>
+	 * A query moves down the tree while both of its elements are on the
+	 * same side of a node, together with the other queries on that side,
+	 * and its answer is the node where the elements separate.
+	 *
+	 * @param elements1 the first elements of the queries
+	 * @param elements2 the second elements of the queries
+	 * @return the lowest common ancestor of each query, or null if one of
+	 * its elements is not in the tree
+	 * @throws IllegalArgumentException if the lists have different sizes
+	 */
+	public ArrayList<T> lowestCommonAncestors(List<? extends T> elements1, List<? extends T> elements2) {
+		Batch batch = new Batch(elements1, elements2, true);
+		batch.locate(root, null, 0, 0, batch.slots.length, 0, batch.order.length);
+		ArrayList<T> ancestors = new ArrayList<>(batch.queries);
+		for (int i = 0; i < batch.queries; i++) {
+			boolean found = batch.depths[i] >= 0 && batch.depths[batch.queries + i] >= 0;
+			ancestors.add(found ? batch.ancestors[i] : null);
+		}
+		return ancestors;
+	}
+
+	/**
+	 * The state of a batch of queries on pairs of elements.
+	 * <p>
+	 * The element slot i holds the first element of the i-th query and the
+	 * slot <code>queries + i</code> holds its second element.
+	 */
+	private class Batch {
+		private final int queries;
+		private final T[] elements; // query elements by slot
+		private final int[] slots; // the slots, partitioned by the nodes on their paths
+		private final int[] depths; // depth of each slot, -1 if its element is not in the tree
+		private final Object[] parents; // parent node of each slot, null for the root
+		private final byte[] sides; // side of the slot at the last node it reached
+		private final int[] order; // the queries, partitioned by the nodes on their paths
+		private final T[] ancestors; // lowest common ancestor of each query
+
+		@SuppressWarnings("unchecked")
+		private Batch(List<? extends T> elements1, List<? extends T> elements2, boolean routed) {
+			if (elements1.size() != elements2.size()) {
+				throw new IllegalArgumentException("Query lists have different sizes: "
+						+ elements1.size() + " and " + elements2.size());
+			}
+			queries = elements1.size();
+			elements = (T[]) new Comparable<?>[2 * queries];
+			int slot = 0;
+			for (T element : elements1) {
+				elements[slot++] = element;
+			}
+			for (T element : elements2) {
+				elements[slot++] = element;
+			}
+			slots = new int[elements.length];
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = i;
+			}
+			depths = new int[elements.length];
+			Arrays.fill(depths, -1);
+			parents = new Object[elements.length];
+			sides = new byte[elements.length];
+			order = new int[routed ? queries : 0];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			ancestors = (T[]) new Comparable<?>[order.length];
+		}
+
+		/**
+		 * Locates the slots and separates the queries under a node
+		 *
+		 * @param node      The root of the subtree
+		 * @param parent    The parent of node
+		 * @param depth     The depth of node
+		 * @param from      The first slot whose element can be in the subtree
+		 * @param to        The end of the slots whose elements can be in the subtree
+		 * @param queryFrom The first query whose elements can be in the subtree
+		 * @param queryTo   The end of the queries whose elements can be in the subtree
+		 */
+		private void locate(Node<T> node, Node<T> parent, int depth, int from, int to, int queryFrom, int queryTo) {
+			if (node == null || (from == to && queryFrom == queryTo)) {
+				return;
+			}
+			// smaller elements move to the front and greater ones to the back
+			int leftEnd = from, rightStart = to, i = from;
+			while (i < rightStart) {
+				int slot = slots[i];
+				int comparison = node.data.compareTo(elements[slot]);
+				if (comparison > 0) {
+					sides[slot] = -1;
+					slots[i++] = slots[leftEnd];
+					slots[leftEnd++] = slot;
+				} else if (comparison < 0) {
+					sides[slot] = 1;
+					slots[i] = slots[--rightStart];
+					slots[rightStart] = slot;
+				} else {
+					sides[slot] = 0;
+					depths[slot] = depth;
+					parents[slot] = parent;
+					i++;
+				}
+			}
+			// a query continues on a side if both of its elements went there,
+			// otherwise the node is its answer
+			int queryLeftEnd = queryFrom, queryRightStart = queryTo;
+			i = queryFrom;
+			while (i < queryRightStart) {
+				int query = order[i];
+				int side = sides[query];
+				if (side != 0 && side == sides[queries + query]) {
+					if (side < 0) {
+						order[i++] = order[queryLeftEnd];
+						order[queryLeftEnd++] = query;
+					} else {
+						order[i] = order[--queryRightStart];
+						order[queryRightStart] = query;
+					}
+				} else {
+					ancestors[query] = node.data;
+					i++;
+				}
+			}
+			locate(node.left, node, depth + 1, from, leftEnd, queryFrom, queryLeftEnd);
+			locate(node.right, node, depth + 1, rightStart, to, queryRightStart, queryTo);
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Combines the summaries of the elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive) in ascending order, in O(log n) time.
+	 * <p>
+	 * The search descends to the highest node within the range, then
+	 * combines the summaries of the subtrees that hang inside the range
+	 * on the paths to both bounds.
+	 *
+	 * @param monoid The monoid the tree was created with
+	 * @param lower  the lower limit
+	 * @param upper  the upper limit
+	 * @return the summary of the elements within the range
+	 * @throws IllegalArgumentException if the tree does not keep the summaries of the monoid
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> A rangeAggregate(Monoid<? super T, A> monoid, T lower, T upper) {
+		if (monoid != this.monoid) {
+			throw new IllegalArgumentException("The tree does not keep the summaries of " + monoid);
+		}
+		Node<T> top = rangeRoot(lower, upper);
+		if (top == null) {
+			return monoid.identity();
+		}
+		// the part of the left subtree above lower, collected from right to left
+		A left = monoid.identity();
+		for (Node<T> node = top.left; node != null;) {
+			if (node.data.compareTo(lower) > 0) {
+				A summary = monoid.of(node.data);
+				if (node.right != null) {
+					summary = monoid.combine(summary, (A) ((SummaryNode) node.right).summary);
+				}
+				left = monoid.combine(summary, left);
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		// the part of the right subtree below upper, collected from left to right
+		A right = monoid.identity();
+		for (Node<T> node = top.right; node != null;) {
+			if (node.data.compareTo(upper) < 0) {
+				A summary = monoid.of(node.data);
+				if (node.left != null) {
+					summary = monoid.combine((A) ((SummaryNode) node.left).summary, summary);
+				}
+				right = monoid.combine(right, summary);
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return monoid.combine(monoid.combine(left, monoid.of(top.data)), right);
+	}
+
+	/**
+	 * Combines the long summaries of the elements in the range,
+	 * see rangeAggregate(Monoid, T, T).
+	 *
+	 * @param monoid The monoid the tree was created with
+	 * @param lower  the lower limit
+	 * @param upper  the upper limit
+	 * @return the summary of the elements within the range
+	 * @throws IllegalArgumentException if the tree does not keep the summaries of the monoid
+	 */
+	public long rangeAggregate(Monoid.OfLong<? super T> monoid, T lower, T upper) {
+		if (monoid != longMonoid) {
+			throw new IllegalArgumentException("The tree does not keep the summaries of " + monoid);
+		}
+		Node<T> top = rangeRoot(lower, upper);
+		if (top == null) {
+			return monoid.identity();
+		}
+		long left = monoid.identity();
+		for (Node<T> node = top.left; node != null;) {
+			if (node.data.compareTo(lower) > 0) {
+				long summary = monoid.of(node.data);
+				if (node.right != null) {
+					summary = monoid.combine(summary, ((LongSummaryNode) node.right).summary);
+				}
+				left = monoid.combine(summary, left);
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		long right = monoid.identity();
+		for (Node<T> node = top.right; node != null;) {
+			if (node.data.compareTo(upper) < 0) {
+				long summary = monoid.of(node.data);
+				if (node.left != null) {
+					summary = monoid.combine(((LongSummaryNode) node.left).summary, summary);
+				}
+				right = monoid.combine(right, summary);
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return monoid.combine(monoid.combine(left, monoid.of(top.data)), right);
+	}
+
+	/**
+	 * Combines the double summaries of the elements in the range,
+	 * see rangeAggregate(Monoid, T, T).
+	 *
+	 * @param monoid The monoid the tree was created with
+	 * @param lower  the lower limit
+	 * @param upper  the upper limit
+	 * @return the summary of the elements within the range
+	 * @throws IllegalArgumentException if the tree does not keep the summaries of the monoid
+	 */
+	public double rangeAggregate(Monoid.OfDouble<? super T> monoid, T lower, T upper) {
+		if (monoid != doubleMonoid) {
+			throw new IllegalArgumentException("The tree does not keep the summaries of " + monoid);
+		}
+		Node<T> top = rangeRoot(lower, upper);
+		if (top == null) {
+			return monoid.identity();
+		}
+		double left = monoid.identity();
+		for (Node<T> node = top.left; node != null;) {
+			if (node.data.compareTo(lower) > 0) {
+				double summary = monoid.of(node.data);
+				if (node.right != null) {
+					summary = monoid.combine(summary, ((DoubleSummaryNode) node.right).summary);
+				}
+				left = monoid.combine(summary, left);
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		double right = monoid.identity();
+		for (Node<T> node = top.right; node != null;) {
+			if (node.data.compareTo(upper) < 0) {
+				double summary = monoid.of(node.data);
+				if (node.left != null) {
+					summary = monoid.combine(((DoubleSummaryNode) node.left).summary, summary);
+				}
+				right = monoid.combine(right, summary);
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return monoid.combine(monoid.combine(left, monoid.of(top.data)), right);
+	}
+
+	/**
+	 * Finds the highest node whose element is within a range. Every other
+	 * element of the range is in its subtree.
+	 *
+	 * @param lower the lower limit (not inclusive)
+	 * @param upper the upper limit (not inclusive)
+	 * @return The node, or null if the range has no elements
+	 */
+	private Node<T> rangeRoot(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return null;
+		}
+		Node<T> node = root;
+		while (node != null) {
+			if (node.data.compareTo(lower) <= 0) {
+				node = node.right;
+			} else if (node.data.compareTo(upper) >= 0) {
+				node = node.left;
+			} else {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 * in a single descent using the subtree sizes.
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(T element, boolean inclusive) {
+		int count = 0;
+		Node<T> node = root;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				count += size(node.left) + 1;
+				node = node.right;
+			} else if (comparison == 0) {
+				return count + size(node.left);
+			} else {
+				node = node.left;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		int count = 0;
+		Node<T> node = root;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return count + size(node.left);
+			} else if (comparison > 0) {
+				node = node.left;
+			} else {
+				count += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node<T> node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.data;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
 	}
 
 	/**
@@ -514,12 +2491,551 @@ public class AVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
 	 * @return balance factor of the node storing data
 	 */
 	public int balanceFactor(T data) {
-		ArrayList<Node<T>> array = new ArrayList<>();
-		searchElementAndParent(array, root, data);
-		if (array.size() == 0) {
+		Node<T> node = searchNode(data);
+		if (node == null) {
 			return 0;
 		}
-		return height(array.get(0).left) - height(array.get(0).right);
+		return height(node.left) - height(node.right);
+	}
+
+	/**
+	 * Adds the element to the tree, as <code>insert</code> does
+	 *
+	 * @param element Element to be added
+	 * @return true if the tree did not already contain the element
+	 */
+	public boolean add(T element) {
+		int size = size();
+		insert(element);
+		return size() != size;
+	}
+
+	/**
+	 * Returns true if the object in the parameter is in the tree
+	 *
+	 * @param object Object to be searched
+	 * @return Whether tree contains the parameter
+	 * @throws ClassCastException if the object cannot be compared with the elements
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean contains(Object object) {
+		return contains((T) object);
+	}
+
+	/**
+	 * Deletes the object in the parameter, as <code>delete</code> does
+	 *
+	 * @param object Object to be deleted
+	 * @return true if the tree contained the object
+	 * @throws ClassCastException if the object cannot be compared with the elements
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object object) {
+		int size = size();
+		delete((T) object);
+		return size() != size;
+	}
+
+	/**
+	 * Removes all the elements of the tree
+	 */
+	public void clear() {
+		root = null;
+		modCount++;
+	}
+
+	/**
+	 * @return null, since the elements are in their natural order
+	 */
+	public Comparator<? super T> comparator() {
+		return null;
+	}
+
+	/**
+	 * @return the smallest element of the tree
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public T first() {
+		return dataOf(firstNode());
+	}
+
+	/**
+	 * @return the largest element of the tree
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public T last() {
+		return dataOf(lastNode());
+	}
+
+	/**
+	 * @param element the element to be compared
+	 * @return the largest element less than <code>element</code>, or null if there is none
+	 */
+	public T lower(T element) {
+		return dataOrNull(lowerNode(element, false));
+	}
+
+	/**
+	 * @param element the element to be compared
+	 * @return the largest element less than or equal to <code>element</code>, or null if there is none
+	 */
+	public T floor(T element) {
+		return dataOrNull(lowerNode(element, true));
+	}
+
+	/**
+	 * @param element the element to be compared
+	 * @return the smallest element greater than or equal to <code>element</code>, or null if there is none
+	 */
+	public T ceiling(T element) {
+		return dataOrNull(higherNode(element, true));
+	}
+
+	/**
+	 * @param element the element to be compared
+	 * @return the smallest element greater than <code>element</code>, or null if there is none
+	 */
+	public T higher(T element) {
+		return dataOrNull(higherNode(element, false));
+	}
+
+	/**
+	 * Removes the smallest element of the tree
+	 *
+	 * @return the removed element, or null if the tree is empty
+	 */
+	public T pollFirst() {
+		T element = dataOrNull(firstNode());
+		if (element != null) {
+			delete(element);
+		}
+		return element;
+	}
+
+	/**
+	 * Removes the largest element of the tree
+	 *
+	 * @return the removed element, or null if the tree is empty
+	 */
+	public T pollLast() {
+		T element = dataOrNull(lastNode());
+		if (element != null) {
+			delete(element);
+		}
+		return element;
+	}
+
+	/**
+	 * @return a reverse order view of the tree
+	 */
+	public NavigableSet<T> descendingSet() {
+		return new SubSet(true, null, true, true, null, true, true);
+	}
+
+	/**
+	 * Returns a view of the elements between <code>fromElement</code> and
+	 * <code>toElement</code>. The view is backed by the tree and its iterator
+	 * visits only the nodes within the range.
+	 *
+	 * @param fromElement   the lower limit
+	 * @param fromInclusive whether the lower limit is in the view
+	 * @param toElement     the upper limit
+	 * @param toInclusive   whether the upper limit is in the view
+	 * @return a view of the elements within the range
+	 * @throws IllegalArgumentException if fromElement is greater than toElement
+	 */
+	public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+		return new SubSet(false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+	}
+
+	/**
+	 * @param toElement the upper limit
+	 * @param inclusive whether the upper limit is in the view
+	 * @return a view of the elements less than (or equal to) <code>toElement</code>
+	 */
+	public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+		return new SubSet(true, null, true, false, toElement, inclusive, false);
+	}
+
+	/**
+	 * @param fromElement the lower limit
+	 * @param inclusive   whether the lower limit is in the view
+	 * @return a view of the elements greater than (or equal to) <code>fromElement</code>
+	 */
+	public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+		return new SubSet(false, fromElement, inclusive, true, null, true, false);
+	}
+
+	public SortedSet<T> subSet(T fromElement, T toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+
+	public SortedSet<T> headSet(T toElement) {
+		return headSet(toElement, false);
+	}
+
+	public SortedSet<T> tailSet(T fromElement) {
+		return tailSet(fromElement, true);
+	}
+
+	/**
+	 * @return The node of the smallest element, or null if the tree is empty
+	 */
+	private Node<T> firstNode() {
+		return root == null ? null : findMostLeftNode(root);
+	}
+
+	/**
+	 * @return The node of the largest element, or null if the tree is empty
+	 */
+	private Node<T> lastNode() {
+		Node<T> node = root;
+		while (node != null && node.right != null) {
+			node = node.right;
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the node of the largest element less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The element to be compared
+	 * @param inclusive Whether a node equal to the element is accepted
+	 * @return The node found, or null if there is none
+	 */
+	private Node<T> lowerNode(T element, boolean inclusive) {
+		Node<T> node = root;
+		Node<T> found = null;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				found = node;
+				if (comparison == 0) {
+					break;
+				}
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the node of the smallest element greater than (or equal to) <code>element</code>
+	 *
+	 * @param element   The element to be compared
+	 * @param inclusive Whether a node equal to the element is accepted
+	 * @return The node found, or null if there is none
+	 */
+	private Node<T> higherNode(T element, boolean inclusive) {
+		Node<T> node = root;
+		Node<T> found = null;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison > 0 || (comparison == 0 && inclusive)) {
+				found = node;
+				if (comparison == 0) {
+					break;
+				}
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param node A node
+	 * @return The data of the node
+	 * @throws NoSuchElementException if the node is null
+	 */
+	private T dataOf(Node<T> node) {
+		if (node == null) {
+			throw new NoSuchElementException();
+		}
+		return node.data;
+	}
+
+	/**
+	 * @param node A node
+	 * @return The data of the node, or null if the node is null
+	 */
+	private T dataOrNull(Node<T> node) {
+		return node == null ? null : node.data;
+	}
+
+	/**
+	 * A view of the elements of the tree within a range, in ascending or
+	 * descending order. The view is backed by the tree: changes of the tree
+	 * are visible in the view and the other way around.
+	 * <p>
+	 * The bounds are always given in the ascending order of the tree, so
+	 * <code>low</code> is the smaller bound even for a descending view.
+	 * Size is counted with the subtree sizes in O(log n).
+	 */
+	private class SubSet extends AbstractSet<T> implements NavigableSet<T> {
+		private final boolean fromStart; // whether there is no lower bound
+		private final T low;
+		private final boolean lowInclusive;
+		private final boolean toEnd; // whether there is no upper bound
+		private final T high;
+		private final boolean highInclusive;
+		private final boolean descending;
+
+		/**
+		 * @param fromStart     Whether there is no lower bound
+		 * @param low           The lower bound
+		 * @param lowInclusive  Whether the lower bound is in the view
+		 * @param toEnd         Whether there is no upper bound
+		 * @param high          The upper bound
+		 * @param highInclusive Whether the upper bound is in the view
+		 * @param descending    Whether the view is in descending order
+		 */
+		SubSet(boolean fromStart, T low, boolean lowInclusive, boolean toEnd, T high, boolean highInclusive,
+				boolean descending) {
+			if (!fromStart && !toEnd && low.compareTo(high) > 0) {
+				throw new IllegalArgumentException("fromElement > toElement");
+			}
+			this.fromStart = fromStart;
+			this.low = low;
+			this.lowInclusive = lowInclusive;
+			this.toEnd = toEnd;
+			this.high = high;
+			this.highInclusive = highInclusive;
+			this.descending = descending;
+		}
+
+		private boolean tooLow(T element) {
+			if (fromStart) {
+				return false;
+			}
+			int comparison = element.compareTo(low);
+			return comparison < 0 || (comparison == 0 && !lowInclusive);
+		}
+
+		private boolean tooHigh(T element) {
+			if (toEnd) {
+				return false;
+			}
+			int comparison = element.compareTo(high);
+			return comparison > 0 || (comparison == 0 && !highInclusive);
+		}
+
+		private boolean inRange(T element) {
+			return !tooLow(element) && !tooHigh(element);
+		}
+
+		/**
+		 * @param element   An element
+		 * @param inclusive Whether the element is a bound that includes itself
+		 * @return Whether the element may be used as a bound of a view of this view
+		 */
+		private boolean inRange(T element, boolean inclusive) {
+			if (inclusive) {
+				return inRange(element);
+			}
+			// an exclusive bound may be equal to a bound of this view
+			return (fromStart || element.compareTo(low) >= 0) && (toEnd || element.compareTo(high) <= 0);
+		}
+
+		/**
+		 * @param node A node or null
+		 * @return The node if it is within the range, null otherwise
+		 */
+		private Node<T> inRangeOrNull(Node<T> node) {
+			return node == null || !inRange(node.data) ? null : node;
+		}
+
+		private Node<T> absLowest() {
+			return inRangeOrNull(fromStart ? firstNode() : higherNode(low, lowInclusive));
+		}
+
+		private Node<T> absHighest() {
+			return inRangeOrNull(toEnd ? lastNode() : lowerNode(high, highInclusive));
+		}
+
+		private Node<T> absCeiling(T element) {
+			return tooLow(element) ? absLowest() : inRangeOrNull(higherNode(element, true));
+		}
+
+		private Node<T> absHigher(T element) {
+			return tooLow(element) ? absLowest() : inRangeOrNull(higherNode(element, false));
+		}
+
+		private Node<T> absFloor(T element) {
+			return tooHigh(element) ? absHighest() : inRangeOrNull(lowerNode(element, true));
+		}
+
+		private Node<T> absLower(T element) {
+			return tooHigh(element) ? absHighest() : inRangeOrNull(lowerNode(element, false));
+		}
+
+		/**
+		 * @param element An element
+		 * @param inclusive Whether an element equal to <code>element</code> is counted
+		 * @return The number of elements of the tree below the element
+		 */
+		private int countBelow(T element, boolean inclusive) {
+			return countLessThan(element, inclusive);
+		}
+
+		public int size() {
+			int upper = toEnd ? AVLTree.this.size() : countBelow(high, highInclusive);
+			int lower = fromStart ? 0 : countBelow(low, !lowInclusive);
+			return Math.max(upper - lower, 0);
+		}
+
+		public boolean isEmpty() {
+			return absLowest() == null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean contains(Object object) {
+			return inRange((T) object) && AVLTree.this.contains(object);
+		}
+
+		public boolean add(T element) {
+			if (!inRange(element)) {
+				throw new IllegalArgumentException("element out of range");
+			}
+			return AVLTree.this.add(element);
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean remove(Object object) {
+			return inRange((T) object) && AVLTree.this.remove(object);
+		}
+
+		public Iterator<T> iterator() {
+			return descending ? reverseIterator() : forwardIterator();
+		}
+
+		public Iterator<T> descendingIterator() {
+			return descending ? forwardIterator() : reverseIterator();
+		}
+
+		/**
+		 * @return An iterator over the range in ascending order
+		 */
+		private Iterator<T> forwardIterator() {
+			return new TreeIterator(false, !fromStart, low, lowInclusive, !toEnd, high, highInclusive);
+		}
+
+		/**
+		 * @return An iterator over the range in descending order
+		 */
+		private Iterator<T> reverseIterator() {
+			return new TreeIterator(true, !toEnd, high, highInclusive, !fromStart, low, lowInclusive);
+		}
+
+		public Comparator<? super T> comparator() {
+			return descending ? Collections.reverseOrder() : null;
+		}
+
+		public T first() {
+			return dataOf(descending ? absHighest() : absLowest());
+		}
+
+		public T last() {
+			return dataOf(descending ? absLowest() : absHighest());
+		}
+
+		public T lower(T element) {
+			return dataOrNull(descending ? absHigher(element) : absLower(element));
+		}
+
+		public T floor(T element) {
+			return dataOrNull(descending ? absCeiling(element) : absFloor(element));
+		}
+
+		public T ceiling(T element) {
+			return dataOrNull(descending ? absFloor(element) : absCeiling(element));
+		}
+
+		public T higher(T element) {
+			return dataOrNull(descending ? absLower(element) : absHigher(element));
+		}
+
+		public T pollFirst() {
+			T element = dataOrNull(descending ? absHighest() : absLowest());
+			if (element != null) {
+				delete(element);
+			}
+			return element;
+		}
+
+		public T pollLast() {
+			T element = dataOrNull(descending ? absLowest() : absHighest());
+			if (element != null) {
+				delete(element);
+			}
+			return element;
+		}
+
+		public NavigableSet<T> descendingSet() {
+			return new SubSet(fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+		}
+
+		public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+			if (descending) {
+				return range(false, toElement, toInclusive, false, fromElement, fromInclusive);
+			}
+			return range(false, fromElement, fromInclusive, false, toElement, toInclusive);
+		}
+
+		public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+			if (descending) {
+				return range(false, toElement, inclusive, true, null, true);
+			}
+			return range(true, null, true, false, toElement, inclusive);
+		}
+
+		public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+			if (descending) {
+				return range(true, null, true, false, fromElement, inclusive);
+			}
+			return range(false, fromElement, inclusive, true, null, true);
+		}
+
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		public SortedSet<T> headSet(T toElement) {
+			return headSet(toElement, false);
+		}
+
+		public SortedSet<T> tailSet(T fromElement) {
+			return tailSet(fromElement, true);
+		}
+
+		/**
+		 * Creates a view of a range within this view, in the same order.
+		 * A missing bound is replaced by the bound of this view.
+		 *
+		 * @return The view of the range
+		 * @throws IllegalArgumentException if a bound is out of the range of this view
+		 */
+		private NavigableSet<T> range(boolean newFromStart, T newLow, boolean newLowInclusive, boolean newToEnd,
+				T newHigh, boolean newHighInclusive) {
+			if (newFromStart) {
+				newFromStart = fromStart;
+				newLow = low;
+				newLowInclusive = lowInclusive;
+			} else if (!inRange(newLow, newLowInclusive)) {
+				throw new IllegalArgumentException("fromElement out of range");
+			}
+			if (newToEnd) {
+				newToEnd = toEnd;
+				newHigh = high;
+				newHighInclusive = highInclusive;
+			} else if (!inRange(newHigh, newHighInclusive)) {
+				throw new IllegalArgumentException("toElement out of range");
+			}
+			return new SubSet(newFromStart, newLow, newLowInclusive, newToEnd, newHigh, newHighInclusive, descending);
+		}
 	}
 
 	// CHANGES END ABOVE THIS LINE	
@@ -0,0 +1,34 @@
+/**
+ * Picks the implementation of {@link AVLTreeInterface} that suits the
+ * expected number of elements.
+ * <p>
+ * Small trees fit in the cache and {@link AVLTree} is the fastest for them.
+ * Above {@link #LARGE_TREE_SIZE} elements a search in an AVLTree misses the
+ * cache at almost every level, and {@link BPlusAVLTree} visits a few wide
+ * nodes instead. The threshold comes from the contains benchmark of the
+ * JMH suite, <code>benchmark.OperationsBenchmark</code>, run with
+ * <code>-p implementation=AVLTree,BPlusAVLTree</code>.
+ */
+public final class AVLTreeFactory {
+
+	/**
+	 * Expected size from which a B+-tree is used
+	 */
+	public static final int LARGE_TREE_SIZE = 1 << 17;
+
+	private AVLTreeFactory() {
+	}
+
+	/**
+	 * Creates an empty tree for the expected number of elements
+	 *
+	 * @param expectedSize The number of elements the tree is expected to hold
+	 * @return An AVLTree for small trees, a BPlusAVLTree for large ones
+	 */
+	public static <T extends Comparable<T>> AVLTreeInterface<T> create(int expectedSize) {
+		if (expectedSize >= LARGE_TREE_SIZE) {
+			return new BPlusAVLTree<>();
+		}
+		return new AVLTree<>();
+	}
+}
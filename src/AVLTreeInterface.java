@@ -1,6 +1,7 @@
 import java.util.ArrayList;
+import java.util.Collection;
 
-public interface AVLTreeInterface<T> {
+public interface AVLTreeInterface<T extends Comparable<T>> {
 	
 	/**
 	 * @return true if the tree is empty
@@ -84,8 +85,39 @@ public interface AVLTreeInterface<T> {
 	 * @return true if elements in the parameter are cousins, false otherwise
 	 */
 	public boolean areCousins(T element1, T element2);
-	
-	
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element);
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * 			or is not in the tree
+	 */
+	public T parentOf(T element);
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * 			elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2);
+
+
 	/**
 	 * Returns the number of elements in the tree that are 
 	 * greater than <code>lower</code> and less than <code>upper</code>
@@ -110,5 +142,53 @@ public interface AVLTreeInterface<T> {
 	 */
 	public int balanceFactor(T data);
 	
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 * 
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element);
+	
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 * 
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element);
+	
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 * 
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index);
+	
+	/**
+	 * Inserts all the elements in the parameter to the tree
+	 * 
+	 * The batch is applied in ascending order, elements already
+	 * in the tree are skipped
+	 * 
+	 * @param elements Elements to be added
+	 */
+	public void insertAll(Collection<? extends T> elements);
+	
+	/**
+	 * Deletes all the elements in the parameter
+	 * 
+	 * The batch is applied in ascending order, elements not
+	 * in the tree are skipped
+	 * 
+	 * @param elements Elements to be deleted
+	 */
+	public void deleteAll(Collection<? extends T> elements);
+	
 	
 }
\ No newline at end of file
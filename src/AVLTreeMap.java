@@ -0,0 +1,1349 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * An ordered map on an AVL tree whose nodes store a key and a value.
+ * <p>
+ * It is balanced the same way as {@link AVLTree}. Every mutation, including
+ * <code>computeIfAbsent</code> and <code>merge</code>, is done in a single
+ * descent from the root. Range views are backed by the map and visit only
+ * the nodes within their range.
+ */
+public class AVLTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+	/**
+	 * Returned by an update to tell that the key should have no mapping afterwards
+	 */
+	private static final Object NO_MAPPING = new Object();
+
+	private Node<K, V> root;
+	private int modCount; // number of structural changes, checked by iterators
+
+	private V oldValue; // value of the key before the last modify call
+	private V newValue; // value of the key after the last modify call
+
+	/**
+	 * Basic storage units in a tree. Each Node object has a left and right
+	 * children fields.
+	 * <p>
+	 * If a node does not have a left and/or right child, its right and/or left
+	 * child is null.
+	 */
+	private static class Node<K, V> implements Map.Entry<K, V> {
+		private K key;
+		private V value;
+		private Node<K, V> left, right; // left and right subtrees
+		private int height = 1;
+		private int size = 1; // number of nodes in the subtree rooted here
+
+		public Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			return old;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+			return key.equals(entry.getKey()) && Objects.equals(value, entry.getValue());
+		}
+
+		public int hashCode() {
+			return key.hashCode() ^ Objects.hashCode(value);
+		}
+
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	/**
+	 * Decides the new value of a key during a descent
+	 */
+	private interface Update<K, V> {
+		/**
+		 * @param key      The key
+		 * @param present  Whether the key has a mapping
+		 * @param oldValue The current value of the key, null if there is no mapping
+		 * @return The new value of the key, or NO_MAPPING to remove the mapping
+		 */
+		Object apply(K key, boolean present, V oldValue);
+	}
+
+	/**
+	 * @return the number of mappings in the map
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Removes all the mappings of the map
+	 */
+	public void clear() {
+		root = null;
+		modCount++;
+	}
+
+	/**
+	 * @param key the key to be searched
+	 * @return true if the key has a mapping
+	 * @throws ClassCastException if the key cannot be compared with the keys of the map
+	 */
+	public boolean containsKey(Object key) {
+		return getNode(key) != null;
+	}
+
+	/**
+	 * @param key the key to be searched
+	 * @return the value of the key, or null if there is no mapping
+	 * @throws ClassCastException if the key cannot be compared with the keys of the map
+	 */
+	public V get(Object key) {
+		Node<K, V> node = getNode(key);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * Searches a key starting from the root
+	 *
+	 * @param key The key to be searched
+	 * @return The Node containing key or null if key couldn't found
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<K, V> getNode(Object key) {
+		K k = (K) Objects.requireNonNull(key);
+		Node<K, V> node = root;
+		while (node != null) {
+			int comparison = node.key.compareTo(k);
+			if (comparison == 0) {
+				return node;
+			}
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Maps the key to the value
+	 *
+	 * @return the previous value of the key, or null if there was no mapping
+	 */
+	public V put(K key, V value) {
+		return modify(key, (k, present, old) -> value);
+	}
+
+	/**
+	 * Removes the mapping of the key
+	 *
+	 * @return the previous value of the key, or null if there was no mapping
+	 * @throws ClassCastException if the key cannot be compared with the keys of the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		return modify((K) key, (k, present, old) -> NO_MAPPING);
+	}
+
+	/**
+	 * Maps the key to the value computed by the function if the key has no
+	 * value, in a single descent.
+	 *
+	 * @return the current (existing or computed) value of the key
+	 */
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(mappingFunction);
+		modify(key, (k, present, old) -> {
+			if (old != null) {
+				return old;
+			}
+			V value = mappingFunction.apply(k);
+			return value != null ? value : present ? null : NO_MAPPING;
+		});
+		return takeNewValue();
+	}
+
+	/**
+	 * Recomputes the value of a key that has a non null value, in a single
+	 * descent. The mapping is removed if the function returns null.
+	 *
+	 * @return the new value of the key, or null if there is none
+	 */
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(remappingFunction);
+		modify(key, (k, present, old) -> {
+			if (old == null) {
+				return present ? null : NO_MAPPING;
+			}
+			V value = remappingFunction.apply(k, old);
+			return value != null ? value : NO_MAPPING;
+		});
+		return takeNewValue();
+	}
+
+	/**
+	 * Computes the new value of a key from its current value, in a single
+	 * descent. The mapping is removed if the function returns null.
+	 *
+	 * @return the new value of the key, or null if there is none
+	 */
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(remappingFunction);
+		modify(key, (k, present, old) -> {
+			V value = remappingFunction.apply(k, old);
+			return value != null ? value : NO_MAPPING;
+		});
+		return takeNewValue();
+	}
+
+	/**
+	 * Maps the key to the value if it has no value, or to the result of
+	 * the function otherwise, in a single descent. The mapping is removed
+	 * if the function returns null.
+	 *
+	 * @return the new value of the key, or null if there is none
+	 */
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+		modify(key, (k, present, old) -> {
+			V merged = old == null ? value : remappingFunction.apply(old, value);
+			return merged != null ? merged : NO_MAPPING;
+		});
+		return takeNewValue();
+	}
+
+	/**
+	 * @return The value of the key after the last modify call
+	 */
+	private V takeNewValue() {
+		V value = newValue;
+		newValue = null;
+		return value;
+	}
+
+	/**
+	 * Updates the mapping of a key in a single descent from the root.
+	 *
+	 * @param key    The key to be updated
+	 * @param update Decides the new value of the key
+	 * @return The value of the key before the update, null if there was no mapping
+	 */
+	private V modify(K key, Update<K, V> update) {
+		Objects.requireNonNull(key);
+		newValue = null;
+		root = modify(root, key, update);
+		V old = oldValue;
+		oldValue = null;
+		return old;
+	}
+
+	/**
+	 * Updates the mapping of a key in the subtree of node, rebalancing the
+	 * nodes on the way back up. If only the value of an existing key is
+	 * replaced, the nodes on the way back up are left as they are.
+	 *
+	 * @param node   Parent node of the subtree
+	 * @param key    The key to be updated
+	 * @param update Decides the new value of the key
+	 * @return The node at that location after the update
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<K, V> modify(Node<K, V> node, K key, Update<K, V> update) {
+		if (node == null) {
+			Object value = update.apply(key, false, null);
+			oldValue = null;
+			if (value == NO_MAPPING) {
+				return null;
+			}
+			newValue = (V) value;
+			modCount++;
+			return new Node<>(key, (V) value);
+		}
+		int comparison = node.key.compareTo(key);
+		int expectedModCount = modCount;
+		if (comparison > 0) {
+			node.left = modify(node.left, key, update);
+		} else if (comparison < 0) {
+			node.right = modify(node.right, key, update);
+		} else {
+			Object value = update.apply(key, true, node.value);
+			oldValue = node.value;
+			if (value != NO_MAPPING) {
+				node.value = newValue = (V) value;
+				return node;
+			}
+			modCount++;
+			if (node.left == null) {
+				return node.right;
+			} else if (node.right == null) {
+				return node.left;
+			}
+			Node<K, V> mostLeft = findMostLeftNode(node.right);
+			node.key = mostLeft.key;
+			node.value = mostLeft.value;
+			node.right = deleteMostLeftNode(node.right);
+		}
+		if (modCount == expectedModCount) {
+			return node;
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Retrieves the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be searched
+	 * @return The smallest node in the subtree
+	 */
+	private static <K, V> Node<K, V> findMostLeftNode(Node<K, V> node) {
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private Node<K, V> deleteMostLeftNode(Node<K, V> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = deleteMostLeftNode(node.left);
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private Node<K, V> makeBalanced(Node<K, V> node) {
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			if (height(node.left.left) >= height(node.left.right)) {
+				return rightRotate(node);
+			} else {
+				return leftRightRotate(node);
+			}
+		} else if (balance < -1) {
+			if (height(node.right.right) >= height(node.right.left)) {
+				return leftRotate(node);
+			} else {
+				return rightLeftRotate(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private Node<K, V> rightRotate(Node<K, V> node) {
+		Node<K, V> leftNode = node.left;
+		node.left = leftNode.right;
+		leftNode.right = node;
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private Node<K, V> leftRotate(Node<K, V> node) {
+		Node<K, V> rightNode = node.right;
+		node.right = rightNode.left;
+		rightNode.left = node;
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Makes the necessary left-right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private Node<K, V> leftRightRotate(Node<K, V> node) {
+		node.left = leftRotate(node.left);
+		return rightRotate(node);
+	}
+
+	/**
+	 * Makes the necessary right-left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private Node<K, V> rightLeftRotate(Node<K, V> node) {
+		node.right = rightRotate(node.right);
+		return leftRotate(node);
+	}
+
+	/**
+	 * Recalculates the height and the subtree size of the given node
+	 * from its children.
+	 *
+	 * @param node The node to be updated
+	 */
+	private static void update(Node<?, ?> node) {
+		node.height = Integer.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	private static int height(Node<?, ?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static int size(Node<?, ?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * @return The node of the smallest key, or null if the map is empty
+	 */
+	private Node<K, V> firstNode() {
+		return root == null ? null : findMostLeftNode(root);
+	}
+
+	/**
+	 * @return The node of the largest key, or null if the map is empty
+	 */
+	private Node<K, V> lastNode() {
+		Node<K, V> node = root;
+		while (node != null && node.right != null) {
+			node = node.right;
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the node of the largest key less than (or equal to) <code>key</code>
+	 *
+	 * @param key       The key to be compared
+	 * @param inclusive Whether a node equal to the key is accepted
+	 * @return The node found, or null if there is none
+	 */
+	private Node<K, V> lowerNode(K key, boolean inclusive) {
+		Node<K, V> node = root;
+		Node<K, V> found = null;
+		while (node != null) {
+			int comparison = node.key.compareTo(key);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				found = node;
+				if (comparison == 0) {
+					break;
+				}
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the node of the smallest key greater than (or equal to) <code>key</code>
+	 *
+	 * @param key       The key to be compared
+	 * @param inclusive Whether a node equal to the key is accepted
+	 * @return The node found, or null if there is none
+	 */
+	private Node<K, V> higherNode(K key, boolean inclusive) {
+		Node<K, V> node = root;
+		Node<K, V> found = null;
+		while (node != null) {
+			int comparison = node.key.compareTo(key);
+			if (comparison > 0 || (comparison == 0 && inclusive)) {
+				found = node;
+				if (comparison == 0) {
+					break;
+				}
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Counts the keys less than (or equal to) <code>key</code> using the subtree sizes
+	 *
+	 * @param key       The limit
+	 * @param inclusive Whether a key equal to the limit is counted
+	 * @return The number of keys below the limit
+	 */
+	private int countLessThan(K key, boolean inclusive) {
+		int count = 0;
+		Node<K, V> node = root;
+		while (node != null) {
+			int comparison = node.key.compareTo(key);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				count += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param node A node or null
+	 * @return An immutable copy of the mapping of the node, or null
+	 */
+	private static <K, V> Map.Entry<K, V> exportEntry(Node<K, V> node) {
+		return node == null ? null : new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+	}
+
+	/**
+	 * @param node A node or null
+	 * @return The key of the node, or null
+	 */
+	private static <K> K keyOrNull(Node<K, ?> node) {
+		return node == null ? null : node.key;
+	}
+
+	/**
+	 * @param node A node or null
+	 * @return The key of the node
+	 * @throws NoSuchElementException if the node is null
+	 */
+	private static <K> K keyOf(Node<K, ?> node) {
+		if (node == null) {
+			throw new NoSuchElementException();
+		}
+		return node.key;
+	}
+
+	/**
+	 * Removes the mapping of the node
+	 *
+	 * @param node A node or null
+	 * @return An immutable copy of the removed mapping, or null
+	 */
+	private Map.Entry<K, V> pollNode(Node<K, V> node) {
+		Map.Entry<K, V> entry = exportEntry(node);
+		if (node != null) {
+			remove(node.key);
+		}
+		return entry;
+	}
+
+	/**
+	 * @return null, as the keys are kept in their natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return null;
+	}
+
+	/**
+	 * @return the smallest key
+	 * @throws NoSuchElementException if the map is empty
+	 */
+	public K firstKey() {
+		return keyOf(firstNode());
+	}
+
+	/**
+	 * @return the largest key
+	 * @throws NoSuchElementException if the map is empty
+	 */
+	public K lastKey() {
+		return keyOf(lastNode());
+	}
+
+	/**
+	 * @return the mapping of the smallest key, or null if the map is empty
+	 */
+	public Map.Entry<K, V> firstEntry() {
+		return exportEntry(firstNode());
+	}
+
+	/**
+	 * @return the mapping of the largest key, or null if the map is empty
+	 */
+	public Map.Entry<K, V> lastEntry() {
+		return exportEntry(lastNode());
+	}
+
+	/**
+	 * Removes the mapping of the smallest key
+	 *
+	 * @return the removed mapping, or null if the map is empty
+	 */
+	public Map.Entry<K, V> pollFirstEntry() {
+		return pollNode(firstNode());
+	}
+
+	/**
+	 * Removes the mapping of the largest key
+	 *
+	 * @return the removed mapping, or null if the map is empty
+	 */
+	public Map.Entry<K, V> pollLastEntry() {
+		return pollNode(lastNode());
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the mapping of the largest key less than <code>key</code>, or null if there is none
+	 */
+	public Map.Entry<K, V> lowerEntry(K key) {
+		return exportEntry(lowerNode(key, false));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the largest key less than <code>key</code>, or null if there is none
+	 */
+	public K lowerKey(K key) {
+		return keyOrNull(lowerNode(key, false));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the mapping of the largest key less than or equal to <code>key</code>, or null if there is none
+	 */
+	public Map.Entry<K, V> floorEntry(K key) {
+		return exportEntry(lowerNode(key, true));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the largest key less than or equal to <code>key</code>, or null if there is none
+	 */
+	public K floorKey(K key) {
+		return keyOrNull(lowerNode(key, true));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the mapping of the smallest key greater than or equal to <code>key</code>, or null if there is none
+	 */
+	public Map.Entry<K, V> ceilingEntry(K key) {
+		return exportEntry(higherNode(key, true));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the smallest key greater than or equal to <code>key</code>, or null if there is none
+	 */
+	public K ceilingKey(K key) {
+		return keyOrNull(higherNode(key, true));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the mapping of the smallest key greater than <code>key</code>, or null if there is none
+	 */
+	public Map.Entry<K, V> higherEntry(K key) {
+		return exportEntry(higherNode(key, false));
+	}
+
+	/**
+	 * @param key the key to be compared
+	 * @return the smallest key greater than <code>key</code>, or null if there is none
+	 */
+	public K higherKey(K key) {
+		return keyOrNull(higherNode(key, false));
+	}
+
+	/**
+	 * @return a view of the mappings in ascending key order
+	 */
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new SubMap(true, null, true, true, null, true, false).entrySet();
+	}
+
+	/**
+	 * @return a view of the keys in ascending order
+	 */
+	public Set<K> keySet() {
+		return navigableKeySet();
+	}
+
+	/**
+	 * @return a view of the keys in ascending order
+	 */
+	public NavigableSet<K> navigableKeySet() {
+		return new KeySet<>(this);
+	}
+
+	/**
+	 * @return a view of the keys in descending order
+	 */
+	public NavigableSet<K> descendingKeySet() {
+		return descendingMap().navigableKeySet();
+	}
+
+	/**
+	 * @return a view of the map in descending key order
+	 */
+	public NavigableMap<K, V> descendingMap() {
+		return new SubMap(true, null, true, true, null, true, true);
+	}
+
+	/**
+	 * @param fromKey       the lower limit
+	 * @param fromInclusive whether the lower limit is in the view
+	 * @param toKey         the upper limit
+	 * @param toInclusive   whether the upper limit is in the view
+	 * @return a view of the mappings whose keys are within the limits
+	 */
+	public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+		return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+	}
+
+	/**
+	 * @param toKey     the upper limit
+	 * @param inclusive whether the upper limit is in the view
+	 * @return a view of the mappings whose keys are less than (or equal to) <code>toKey</code>
+	 */
+	public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+		return new SubMap(true, null, true, false, toKey, inclusive, false);
+	}
+
+	/**
+	 * @param fromKey   the lower limit
+	 * @param inclusive whether the lower limit is in the view
+	 * @return a view of the mappings whose keys are greater than (or equal to) <code>fromKey</code>
+	 */
+	public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		return new SubMap(false, fromKey, inclusive, true, null, true, false);
+	}
+
+	/**
+	 * Same as <code>subMap(fromKey, true, toKey, false)</code>
+	 */
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	/**
+	 * Same as <code>headMap(toKey, false)</code>
+	 */
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	/**
+	 * Same as <code>tailMap(fromKey, true)</code>
+	 */
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+
+	/**
+	 * Visits the nodes in ascending or descending order, starting after a
+	 * key and stopping at a bound. The stack holds the nodes still to be
+	 * visited together with their right (for descending order left) subtrees.
+	 */
+	private class NodeIterator implements Iterator<Map.Entry<K, V>> {
+		private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+		private final boolean descending;
+		private final boolean hasBound; // whether the iteration stops at bound
+		private final K bound;
+		private final boolean boundInclusive;
+		private Node<K, V> lastReturned;
+		private int expectedModCount = modCount;
+
+		/**
+		 * @param descending     Whether the keys are visited in descending order
+		 * @param hasStart       Whether the iteration starts at <code>start</code>
+		 * @param start          The first key in the iteration order that may be visited
+		 * @param startInclusive Whether <code>start</code> itself may be visited
+		 * @param hasBound       Whether the iteration stops at <code>bound</code>
+		 * @param bound          The last key in the iteration order that may be visited
+		 * @param boundInclusive Whether <code>bound</code> itself may be visited
+		 */
+		NodeIterator(boolean descending, boolean hasStart, K start, boolean startInclusive,
+				boolean hasBound, K bound, boolean boundInclusive) {
+			this.descending = descending;
+			this.hasBound = hasBound;
+			this.bound = bound;
+			this.boundInclusive = boundInclusive;
+			seek(hasStart, start, startInclusive);
+		}
+
+		/**
+		 * Fills the stack with the path from the root to the first key
+		 * after (or at) <code>start</code> in the iteration order
+		 */
+		private void seek(boolean hasStart, K start, boolean startInclusive) {
+			stack.clear();
+			Node<K, V> node = root;
+			while (node != null) {
+				int comparison = hasStart ? node.key.compareTo(start) : (descending ? -1 : 1);
+				if (descending) {
+					comparison = -comparison;
+				}
+				if (comparison > 0 || (comparison == 0 && startInclusive)) {
+					stack.push(node);
+					node = descending ? node.right : node.left;
+				} else {
+					node = descending ? node.left : node.right;
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			if (stack.isEmpty()) {
+				return false;
+			}
+			if (!hasBound) {
+				return true;
+			}
+			int comparison = stack.peek().key.compareTo(bound);
+			if (descending) {
+				comparison = -comparison;
+			}
+			return comparison < 0 || (comparison == 0 && boundInclusive);
+		}
+
+		public Map.Entry<K, V> next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Node<K, V> node = stack.pop();
+			Node<K, V> child = descending ? node.left : node.right;
+			while (child != null) {
+				stack.push(child);
+				child = descending ? child.right : child.left;
+			}
+			lastReturned = node;
+			return node;
+		}
+
+		/**
+		 * Removes the last returned mapping. Removal may move mappings
+		 * between nodes, so the stack is rebuilt from the root afterwards.
+		 */
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			K key = lastReturned.key;
+			AVLTreeMap.this.remove(key);
+			expectedModCount = modCount;
+			lastReturned = null;
+			seek(true, key, false);
+		}
+	}
+
+	/**
+	 * A view of the mappings of the map within a key range, in ascending or
+	 * descending order. The view is backed by the map.
+	 * <p>
+	 * The bounds are always given in the ascending order of the keys, so
+	 * <code>low</code> is the smaller bound even for a descending view.
+	 */
+	private class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+		private final boolean fromStart; // whether there is no lower bound
+		private final K low;
+		private final boolean lowInclusive;
+		private final boolean toEnd; // whether there is no upper bound
+		private final K high;
+		private final boolean highInclusive;
+		private final boolean descending;
+
+		SubMap(boolean fromStart, K low, boolean lowInclusive, boolean toEnd, K high, boolean highInclusive,
+				boolean descending) {
+			if (!fromStart && !toEnd && low.compareTo(high) > 0) {
+				throw new IllegalArgumentException("fromKey > toKey");
+			}
+			this.fromStart = fromStart;
+			this.low = low;
+			this.lowInclusive = lowInclusive;
+			this.toEnd = toEnd;
+			this.high = high;
+			this.highInclusive = highInclusive;
+			this.descending = descending;
+		}
+
+		private boolean tooLow(K key) {
+			if (fromStart) {
+				return false;
+			}
+			int comparison = key.compareTo(low);
+			return comparison < 0 || (comparison == 0 && !lowInclusive);
+		}
+
+		private boolean tooHigh(K key) {
+			if (toEnd) {
+				return false;
+			}
+			int comparison = key.compareTo(high);
+			return comparison > 0 || (comparison == 0 && !highInclusive);
+		}
+
+		private boolean inRange(K key) {
+			return !tooLow(key) && !tooHigh(key);
+		}
+
+		/**
+		 * @return Whether the key may be used as a bound of a view of this view
+		 */
+		private boolean inRange(K key, boolean inclusive) {
+			if (inclusive) {
+				return inRange(key);
+			}
+			// an exclusive bound may be equal to a bound of this view
+			return (fromStart || key.compareTo(low) >= 0) && (toEnd || key.compareTo(high) <= 0);
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean inRangeObject(Object key) {
+			return inRange((K) Objects.requireNonNull(key));
+		}
+
+		private Node<K, V> inRangeOrNull(Node<K, V> node) {
+			return node == null || !inRange(node.key) ? null : node;
+		}
+
+		private Node<K, V> absLowest() {
+			return inRangeOrNull(fromStart ? firstNode() : higherNode(low, lowInclusive));
+		}
+
+		private Node<K, V> absHighest() {
+			return inRangeOrNull(toEnd ? lastNode() : lowerNode(high, highInclusive));
+		}
+
+		private Node<K, V> absCeiling(K key) {
+			return tooLow(key) ? absLowest() : inRangeOrNull(higherNode(key, true));
+		}
+
+		private Node<K, V> absHigher(K key) {
+			return tooLow(key) ? absLowest() : inRangeOrNull(higherNode(key, false));
+		}
+
+		private Node<K, V> absFloor(K key) {
+			return tooHigh(key) ? absHighest() : inRangeOrNull(lowerNode(key, true));
+		}
+
+		private Node<K, V> absLower(K key) {
+			return tooHigh(key) ? absHighest() : inRangeOrNull(lowerNode(key, false));
+		}
+
+		public int size() {
+			int upper = toEnd ? AVLTreeMap.this.size() : countLessThan(high, highInclusive);
+			int lower = fromStart ? 0 : countLessThan(low, !lowInclusive);
+			return Math.max(upper - lower, 0);
+		}
+
+		public boolean isEmpty() {
+			return absLowest() == null;
+		}
+
+		public boolean containsKey(Object key) {
+			return inRangeObject(key) && AVLTreeMap.this.containsKey(key);
+		}
+
+		public V get(Object key) {
+			return inRangeObject(key) ? AVLTreeMap.this.get(key) : null;
+		}
+
+		public V put(K key, V value) {
+			if (!inRange(key)) {
+				throw new IllegalArgumentException("key out of range");
+			}
+			return AVLTreeMap.this.put(key, value);
+		}
+
+		public V remove(Object key) {
+			return inRangeObject(key) ? AVLTreeMap.this.remove(key) : null;
+		}
+
+		/**
+		 * @param reverse Whether the iteration is against the order of the view
+		 * @return An iterator over the nodes of the view
+		 */
+		private Iterator<Map.Entry<K, V>> nodeIterator(boolean reverse) {
+			if (descending != reverse) {
+				return new NodeIterator(true, !toEnd, high, highInclusive, !fromStart, low, lowInclusive);
+			}
+			return new NodeIterator(false, !fromStart, low, lowInclusive, !toEnd, high, highInclusive);
+		}
+
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return nodeIterator(false);
+				}
+
+				public int size() {
+					return SubMap.this.size();
+				}
+
+				public boolean isEmpty() {
+					return SubMap.this.isEmpty();
+				}
+
+				public boolean contains(Object object) {
+					if (!(object instanceof Map.Entry)) {
+						return false;
+					}
+					Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+					Object key = entry.getKey();
+					if (key == null || !inRangeObject(key)) {
+						return false;
+					}
+					Node<K, V> node = getNode(key);
+					return node != null && Objects.equals(node.value, entry.getValue());
+				}
+
+				public boolean remove(Object object) {
+					if (!contains(object)) {
+						return false;
+					}
+					AVLTreeMap.this.remove(((Map.Entry<?, ?>) object).getKey());
+					return true;
+				}
+			};
+		}
+
+		public Set<K> keySet() {
+			return navigableKeySet();
+		}
+
+		public NavigableSet<K> navigableKeySet() {
+			return new KeySet<>(this);
+		}
+
+		public NavigableSet<K> descendingKeySet() {
+			return descendingMap().navigableKeySet();
+		}
+
+		public Comparator<? super K> comparator() {
+			return descending ? Collections.reverseOrder() : null;
+		}
+
+		private Node<K, V> first() {
+			return descending ? absHighest() : absLowest();
+		}
+
+		private Node<K, V> last() {
+			return descending ? absLowest() : absHighest();
+		}
+
+		public K firstKey() {
+			return keyOf(first());
+		}
+
+		public K lastKey() {
+			return keyOf(last());
+		}
+
+		public Map.Entry<K, V> firstEntry() {
+			return exportEntry(first());
+		}
+
+		public Map.Entry<K, V> lastEntry() {
+			return exportEntry(last());
+		}
+
+		public Map.Entry<K, V> pollFirstEntry() {
+			return pollNode(first());
+		}
+
+		public Map.Entry<K, V> pollLastEntry() {
+			return pollNode(last());
+		}
+
+		private Node<K, V> lower(K key) {
+			return descending ? absHigher(key) : absLower(key);
+		}
+
+		private Node<K, V> floor(K key) {
+			return descending ? absCeiling(key) : absFloor(key);
+		}
+
+		private Node<K, V> ceiling(K key) {
+			return descending ? absFloor(key) : absCeiling(key);
+		}
+
+		private Node<K, V> higher(K key) {
+			return descending ? absLower(key) : absHigher(key);
+		}
+
+		public Map.Entry<K, V> lowerEntry(K key) {
+			return exportEntry(lower(key));
+		}
+
+		public K lowerKey(K key) {
+			return keyOrNull(lower(key));
+		}
+
+		public Map.Entry<K, V> floorEntry(K key) {
+			return exportEntry(floor(key));
+		}
+
+		public K floorKey(K key) {
+			return keyOrNull(floor(key));
+		}
+
+		public Map.Entry<K, V> ceilingEntry(K key) {
+			return exportEntry(ceiling(key));
+		}
+
+		public K ceilingKey(K key) {
+			return keyOrNull(ceiling(key));
+		}
+
+		public Map.Entry<K, V> higherEntry(K key) {
+			return exportEntry(higher(key));
+		}
+
+		public K higherKey(K key) {
+			return keyOrNull(higher(key));
+		}
+
+		public NavigableMap<K, V> descendingMap() {
+			return new SubMap(fromStart, low, lowInclusive, toEnd, high, highInclusive, !descending);
+		}
+
+		public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+			if (descending) {
+				return range(false, toKey, toInclusive, false, fromKey, fromInclusive);
+			}
+			return range(false, fromKey, fromInclusive, false, toKey, toInclusive);
+		}
+
+		public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+			if (descending) {
+				return range(false, toKey, inclusive, true, null, true);
+			}
+			return range(true, null, true, false, toKey, inclusive);
+		}
+
+		public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+			if (descending) {
+				return range(true, null, true, false, fromKey, inclusive);
+			}
+			return range(false, fromKey, inclusive, true, null, true);
+		}
+
+		public SortedMap<K, V> subMap(K fromKey, K toKey) {
+			return subMap(fromKey, true, toKey, false);
+		}
+
+		public SortedMap<K, V> headMap(K toKey) {
+			return headMap(toKey, false);
+		}
+
+		public SortedMap<K, V> tailMap(K fromKey) {
+			return tailMap(fromKey, true);
+		}
+
+		/**
+		 * Creates a view of a range within this view, in the same order.
+		 * A missing bound is replaced by the bound of this view.
+		 *
+		 * @return The view of the range
+		 * @throws IllegalArgumentException if a bound is out of the range of this view
+		 */
+		private NavigableMap<K, V> range(boolean newFromStart, K newLow, boolean newLowInclusive, boolean newToEnd,
+				K newHigh, boolean newHighInclusive) {
+			if (newFromStart) {
+				newFromStart = fromStart;
+				newLow = low;
+				newLowInclusive = lowInclusive;
+			} else if (!inRange(newLow, newLowInclusive)) {
+				throw new IllegalArgumentException("fromKey out of range");
+			}
+			if (newToEnd) {
+				newToEnd = toEnd;
+				newHigh = high;
+				newHighInclusive = highInclusive;
+			} else if (!inRange(newHigh, newHighInclusive)) {
+				throw new IllegalArgumentException("toKey out of range");
+			}
+			return new SubMap(newFromStart, newLow, newLowInclusive, newToEnd, newHigh, newHighInclusive, descending);
+		}
+	}
+
+	/**
+	 * The keys of a navigable map as a navigable set backed by the map
+	 */
+	private static class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+		private final NavigableMap<E, ?> map;
+
+		KeySet(NavigableMap<E, ?> map) {
+			this.map = map;
+		}
+
+		/**
+		 * @param entries An iterator over entries
+		 * @return An iterator over the keys of the entries
+		 */
+		private static <E> Iterator<E> keys(Iterator<? extends Map.Entry<E, ?>> entries) {
+			return new Iterator<E>() {
+				public boolean hasNext() {
+					return entries.hasNext();
+				}
+
+				public E next() {
+					return entries.next().getKey();
+				}
+
+				public void remove() {
+					entries.remove();
+				}
+			};
+		}
+
+		private static <E> E keyOrNull(Map.Entry<E, ?> entry) {
+			return entry == null ? null : entry.getKey();
+		}
+
+		public Iterator<E> iterator() {
+			return keys(map.entrySet().iterator());
+		}
+
+		public Iterator<E> descendingIterator() {
+			return keys(map.descendingMap().entrySet().iterator());
+		}
+
+		public int size() {
+			return map.size();
+		}
+
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+
+		public boolean contains(Object object) {
+			return map.containsKey(object);
+		}
+
+		public boolean remove(Object object) {
+			if (!map.containsKey(object)) {
+				return false;
+			}
+			map.remove(object);
+			return true;
+		}
+
+		public void clear() {
+			map.clear();
+		}
+
+		public Comparator<? super E> comparator() {
+			return map.comparator();
+		}
+
+		public E first() {
+			return map.firstKey();
+		}
+
+		public E last() {
+			return map.lastKey();
+		}
+
+		public E lower(E element) {
+			return map.lowerKey(element);
+		}
+
+		public E floor(E element) {
+			return map.floorKey(element);
+		}
+
+		public E ceiling(E element) {
+			return map.ceilingKey(element);
+		}
+
+		public E higher(E element) {
+			return map.higherKey(element);
+		}
+
+		public E pollFirst() {
+			return keyOrNull(map.pollFirstEntry());
+		}
+
+		public E pollLast() {
+			return keyOrNull(map.pollLastEntry());
+		}
+
+		public NavigableSet<E> descendingSet() {
+			return new KeySet<>(map.descendingMap());
+		}
+
+		public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+			return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+		}
+
+		public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+			return new KeySet<>(map.headMap(toElement, inclusive));
+		}
+
+		public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+			return new KeySet<>(map.tailMap(fromElement, inclusive));
+		}
+
+		public SortedSet<E> subSet(E fromElement, E toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		public SortedSet<E> headSet(E toElement) {
+			return headSet(toElement, false);
+		}
+
+		public SortedSet<E> tailSet(E fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+}
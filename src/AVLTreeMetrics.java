@@ -0,0 +1,179 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of an instrumented {@link AVLTree}: rotations by type, compareTo
+ * calls and a histogram of the number of nodes visited by searches, inserts
+ * and deletes.
+ * <p>
+ * A tree counts only after {@link AVLTree#enableMetrics()}. The counters may
+ * be updated and read by many threads, and {@link #snapshot()} copies them
+ * into an {@link AVLTreeStats}. They can also be published as an MBean with
+ * {@link #register(String)}.
+ */
+public class AVLTreeMetrics implements AVLTreeMetricsMBean {
+
+	/**
+	 * Number of entries of the depth histogram
+	 */
+	public static final int HISTOGRAM_SIZE = 64;
+
+	private final LongAdder leftRotations = new LongAdder();
+	private final LongAdder rightRotations = new LongAdder();
+	private final LongAdder leftRightRotations = new LongAdder();
+	private final LongAdder rightLeftRotations = new LongAdder();
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder inserts = new LongAdder();
+	private final LongAdder deletes = new LongAdder();
+	private final LongAdder comparisons = new LongAdder();
+	private final AtomicLongArray depths = new AtomicLongArray(HISTOGRAM_SIZE);
+
+	/**
+	 * Counts a search that visited <code>visited</code> nodes, with one
+	 * comparison per visited node
+	 */
+	void recordSearch(int visited) {
+		searches.increment();
+		record(visited, visited);
+	}
+
+	/**
+	 * Counts a search that visited <code>visited</code> nodes and made
+	 * <code>comparisons</code> comparisons
+	 */
+	void recordSearch(int visited, int comparisons) {
+		searches.increment();
+		record(visited, comparisons);
+	}
+
+	/**
+	 * Counts an insert that visited <code>visited</code> nodes
+	 */
+	void recordInsert(int visited, int comparisons) {
+		inserts.increment();
+		record(visited, comparisons);
+	}
+
+	/**
+	 * Counts a delete that visited <code>visited</code> nodes
+	 */
+	void recordDelete(int visited, int comparisons) {
+		deletes.increment();
+		record(visited, comparisons);
+	}
+
+	private void record(int visited, int comparisons) {
+		this.comparisons.add(comparisons);
+		depths.incrementAndGet(Math.min(visited, HISTOGRAM_SIZE - 1));
+	}
+
+	void leftRotation() {
+		leftRotations.increment();
+	}
+
+	void rightRotation() {
+		rightRotations.increment();
+	}
+
+	void leftRightRotation() {
+		leftRightRotations.increment();
+	}
+
+	void rightLeftRotation() {
+		rightLeftRotations.increment();
+	}
+
+	/**
+	 * Copies the counters. Counters updated during the copy may be
+	 * copied before or after the update.
+	 *
+	 * @return the current values of the counters
+	 */
+	public AVLTreeStats snapshot() {
+		long[] histogram = new long[HISTOGRAM_SIZE];
+		for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+			histogram[i] = depths.get(i);
+		}
+		return new AVLTreeStats(leftRotations.sum(), rightRotations.sum(), leftRightRotations.sum(),
+				rightLeftRotations.sum(), searches.sum(), inserts.sum(), deletes.sum(), comparisons.sum(), histogram);
+	}
+
+	/**
+	 * Sets all the counters to zero
+	 */
+	public void reset() {
+		leftRotations.reset();
+		rightRotations.reset();
+		leftRightRotations.reset();
+		rightLeftRotations.reset();
+		searches.reset();
+		inserts.reset();
+		deletes.reset();
+		comparisons.reset();
+		for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+			depths.set(i, 0);
+		}
+	}
+
+	/**
+	 * Registers the metrics in the platform MBean server as
+	 * <code>AVLTree:type=Metrics,name=&lt;name&gt;</code>
+	 *
+	 * @param name The name that tells the tree apart from other trees
+	 * @return The name of the registered MBean
+	 * @throws JMException if the name is not valid or is already registered
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("AVLTree:type=Metrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	public long getLeftRotations() {
+		return leftRotations.sum();
+	}
+
+	public long getRightRotations() {
+		return rightRotations.sum();
+	}
+
+	public long getLeftRightRotations() {
+		return leftRightRotations.sum();
+	}
+
+	public long getRightLeftRotations() {
+		return rightLeftRotations.sum();
+	}
+
+	public long getSearches() {
+		return searches.sum();
+	}
+
+	public long getInserts() {
+		return inserts.sum();
+	}
+
+	public long getDeletes() {
+		return deletes.sum();
+	}
+
+	public long getComparisons() {
+		return comparisons.sum();
+	}
+
+	public double getComparisonsPerOperation() {
+		return snapshot().comparisonsPerOperation();
+	}
+
+	public double getAverageDepth() {
+		return snapshot().averageDepth();
+	}
+
+	public long[] getDepthHistogram() {
+		return snapshot().depthHistogram();
+	}
+}
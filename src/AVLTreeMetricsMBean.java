@@ -0,0 +1,67 @@
+/**
+ * The management interface of {@link AVLTreeMetrics}, which makes the
+ * counters of an instrumented tree readable over JMX.
+ */
+public interface AVLTreeMetricsMBean {
+
+	/**
+	 * @return the number of single left rotations
+	 */
+	public long getLeftRotations();
+
+	/**
+	 * @return the number of single right rotations
+	 */
+	public long getRightRotations();
+
+	/**
+	 * @return the number of double left-right rotations
+	 */
+	public long getLeftRightRotations();
+
+	/**
+	 * @return the number of double right-left rotations
+	 */
+	public long getRightLeftRotations();
+
+	/**
+	 * @return the number of searches done by contains and balanceFactor
+	 */
+	public long getSearches();
+
+	/**
+	 * @return the number of insert calls
+	 */
+	public long getInserts();
+
+	/**
+	 * @return the number of delete calls
+	 */
+	public long getDeletes();
+
+	/**
+	 * @return the number of compareTo calls made by the counted operations
+	 */
+	public long getComparisons();
+
+	/**
+	 * @return the average number of compareTo calls per counted operation
+	 */
+	public double getComparisonsPerOperation();
+
+	/**
+	 * @return the average number of nodes visited per counted operation
+	 */
+	public double getAverageDepth();
+
+	/**
+	 * @return the number of operations for each number of visited nodes,
+	 *         the last entry also counts all the deeper operations
+	 */
+	public long[] getDepthHistogram();
+
+	/**
+	 * Sets all the counters to zero
+	 */
+	public void reset();
+}
@@ -0,0 +1,164 @@
+import java.util.Arrays;
+
+/**
+ * The values of the counters of an instrumented {@link AVLTree} at some
+ * moment, taken by {@link AVLTreeMetrics#snapshot()}.
+ */
+public final class AVLTreeStats {
+
+	private final long leftRotations, rightRotations;
+	private final long leftRightRotations, rightLeftRotations;
+	private final long searches, inserts, deletes;
+	private final long comparisons;
+	private final long[] depthHistogram; // operations per number of visited nodes
+
+	AVLTreeStats(long leftRotations, long rightRotations, long leftRightRotations, long rightLeftRotations,
+			long searches, long inserts, long deletes, long comparisons, long[] depthHistogram) {
+		this.leftRotations = leftRotations;
+		this.rightRotations = rightRotations;
+		this.leftRightRotations = leftRightRotations;
+		this.rightLeftRotations = rightLeftRotations;
+		this.searches = searches;
+		this.inserts = inserts;
+		this.deletes = deletes;
+		this.comparisons = comparisons;
+		this.depthHistogram = depthHistogram;
+	}
+
+	/**
+	 * @return the number of single left rotations
+	 */
+	public long leftRotations() {
+		return leftRotations;
+	}
+
+	/**
+	 * @return the number of single right rotations
+	 */
+	public long rightRotations() {
+		return rightRotations;
+	}
+
+	/**
+	 * @return the number of double left-right rotations
+	 */
+	public long leftRightRotations() {
+		return leftRightRotations;
+	}
+
+	/**
+	 * @return the number of double right-left rotations
+	 */
+	public long rightLeftRotations() {
+		return rightLeftRotations;
+	}
+
+	/**
+	 * @return the number of rotations of all types, a double rotation counted once
+	 */
+	public long rotations() {
+		return leftRotations + rightRotations + leftRightRotations + rightLeftRotations;
+	}
+
+	/**
+	 * @return the number of searches done by contains and balanceFactor
+	 */
+	public long searches() {
+		return searches;
+	}
+
+	/**
+	 * @return the number of insert calls
+	 */
+	public long inserts() {
+		return inserts;
+	}
+
+	/**
+	 * @return the number of delete calls
+	 */
+	public long deletes() {
+		return deletes;
+	}
+
+	/**
+	 * @return the number of searches, inserts and deletes
+	 */
+	public long operations() {
+		return searches + inserts + deletes;
+	}
+
+	/**
+	 * @return the number of compareTo calls made by the counted operations
+	 */
+	public long comparisons() {
+		return comparisons;
+	}
+
+	/**
+	 * @return the average number of compareTo calls per operation, 0 if there is none
+	 */
+	public double comparisonsPerOperation() {
+		long operations = operations();
+		return operations == 0 ? 0 : (double) comparisons / operations;
+	}
+
+	/**
+	 * @return the number of operations for each number of visited nodes,
+	 *         the last entry also counts all the deeper operations
+	 */
+	public long[] depthHistogram() {
+		return depthHistogram.clone();
+	}
+
+	/**
+	 * @return the average number of nodes visited per operation, 0 if there is none
+	 */
+	public double averageDepth() {
+		long count = 0, sum = 0;
+		for (int depth = 0; depth < depthHistogram.length; depth++) {
+			count += depthHistogram[depth];
+			sum += depth * depthHistogram[depth];
+		}
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * @param percentile A number between 0 and 100
+	 * @return the smallest depth that is not exceeded by the given
+	 *         percentage of the operations, 0 if there is no operation
+	 */
+	public int depthPercentile(double percentile) {
+		long count = 0;
+		for (long operations : depthHistogram) {
+			count += operations;
+		}
+		long limit = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int depth = 0; depth < depthHistogram.length; depth++) {
+			seen += depthHistogram[depth];
+			if (seen >= limit && seen > 0) {
+				return depth;
+			}
+		}
+		return 0;
+	}
+
+	public String toString() {
+		return "AVLTreeStats[rotations: left=" + leftRotations + ", right=" + rightRotations + ", leftRight="
+				+ leftRightRotations + ", rightLeft=" + rightLeftRotations + "; searches=" + searches + ", inserts="
+				+ inserts + ", deletes=" + deletes + ", comparisons=" + comparisons + ", averageDepth="
+				+ String.format("%.2f", averageDepth()) + ", p99Depth=" + depthPercentile(99) + ", histogram="
+				+ Arrays.toString(Arrays.copyOf(depthHistogram, lastNonZero() + 1)) + "]";
+	}
+
+	private int lastNonZero() {
+		int last = -1;
+		for (int depth = 0; depth < depthHistogram.length; depth++) {
+			if (depthHistogram[depth] != 0) {
+				last = depth;
+			}
+		}
+		return last;
+	}
+}
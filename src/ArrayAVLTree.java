@@ -0,0 +1,623 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An AVL tree whose nodes are stored in parallel arrays instead of
+ * separate node objects.
+ * <p>
+ * A node is an index into the arrays: its key is <code>keys[node]</code>,
+ * its children are <code>left[node]</code> and <code>right[node]</code>.
+ * Index 0 is a sentinel that stands for an empty subtree, its height and
+ * size are always 0. Slots of deleted nodes are chained into a free list
+ * through the <code>left</code> array and reused by later inserts.
+ */
+public class ArrayAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+
+	private static final int NIL = 0;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private Object[] keys;
+	private int[] left, right; // left and right subtrees
+	private int[] height;
+	private int[] size; // number of nodes in the subtree rooted at each node
+
+	private int root = NIL;
+	private int freeHead = NIL; // first slot of the free list
+	private int used = 1; // slots below this index have been used at least once
+
+	public ArrayAVLTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity The number of elements the tree can hold before growing
+	 */
+	public ArrayAVLTree(int capacity) {
+		int length = Math.max(capacity, 1) + 1;
+		keys = new Object[length];
+		left = new int[length];
+		right = new int[length];
+		height = new int[length];
+		size = new int[length];
+	}
+
+	/**
+	 * @param node Index of a node
+	 * @return The key stored in the node
+	 */
+	@SuppressWarnings("unchecked")
+	private T key(int node) {
+		return (T) keys[node];
+	}
+
+	/**
+	 * Takes a slot from the free list, or a new one at the end of the arrays
+	 *
+	 * @param element The key of the new node
+	 * @return Index of the new node
+	 */
+	private int newNode(T element) {
+		int node;
+		if (freeHead != NIL) {
+			node = freeHead;
+			freeHead = left[node];
+		} else {
+			if (used == keys.length) {
+				grow();
+			}
+			node = used++;
+		}
+		keys[node] = element;
+		left[node] = NIL;
+		right[node] = NIL;
+		height[node] = 1;
+		size[node] = 1;
+		return node;
+	}
+
+	/**
+	 * Puts the slot of a deleted node to the free list
+	 *
+	 * @param node Index of the deleted node
+	 */
+	private void freeNode(int node) {
+		keys[node] = null;
+		left[node] = freeHead;
+		freeHead = node;
+	}
+
+	/**
+	 * Enlarges all the arrays by half of their length
+	 */
+	private void grow() {
+		int length = keys.length + (keys.length >> 1) + 1;
+		keys = Arrays.copyOf(keys, length);
+		left = Arrays.copyOf(left, length);
+		right = Arrays.copyOf(right, length);
+		height = Arrays.copyOf(height, length);
+		size = Arrays.copyOf(size, length);
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return size[root];
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		return searchNode(element) != NIL;
+	}
+
+	/**
+	 * Searches an element starting from the root
+	 *
+	 * @param element The element to be searched
+	 * @return Index of the node containing element or NIL if element couldn't found
+	 */
+	private int searchNode(T element) {
+		int node = root;
+		while (node != NIL) {
+			int comparison = key(node).compareTo(element);
+			if (comparison == 0) {
+				return node;
+			}
+			node = comparison > 0 ? left[node] : right[node];
+		}
+		return NIL;
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(T element) {
+		root = insert(root, element);
+	}
+
+	/**
+	 * Inserts the element in the parameter to the subtree of node
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be added
+	 * @return The node at that location after insertion
+	 */
+	private int insert(int node, T element) {
+		if (node == NIL) {
+			return newNode(element);
+		}
+		int comparison = key(node).compareTo(element);
+		if (comparison == 0) {
+			return node;
+		} else if (comparison > 0) {
+			// the arrays may grow during the recursive call, so the child is
+			// stored only after the call returns
+			int child = insert(left[node], element);
+			left[node] = child;
+		} else {
+			int child = insert(right[node], element);
+			right[node] = child;
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree
+	 * <p>
+	 * The batch is inserted in ascending order, so consecutive insertions
+	 * share most of their path and find it in the cache.
+	 *
+	 * @param elements Elements to be added
+	 */
+	@SuppressWarnings("unchecked")
+	public void insertAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			insert((T) element);
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		root = delete(root, element);
+	}
+
+	/**
+	 * Deletes all the elements in the parameter
+	 * <p>
+	 * The batch is deleted in ascending order, so consecutive deletions
+	 * share most of their path and find it in the cache.
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	@SuppressWarnings("unchecked")
+	public void deleteAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			delete((T) element);
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter from the subtree of node
+	 * in a single descent, rebalancing the nodes on the way back up.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be deleted
+	 * @return The node at that location after deletion
+	 */
+	private int delete(int node, T element) {
+		if (node == NIL) {
+			return NIL;
+		}
+		int comparison = key(node).compareTo(element);
+		if (comparison > 0) {
+			int child = delete(left[node], element);
+			left[node] = child;
+		} else if (comparison < 0) {
+			int child = delete(right[node], element);
+			right[node] = child;
+		} else if (left[node] == NIL || right[node] == NIL) {
+			int child = left[node] == NIL ? right[node] : left[node];
+			freeNode(node);
+			return child;
+		} else {
+			int mostLeft = right[node];
+			while (left[mostLeft] != NIL) {
+				mostLeft = left[mostLeft];
+			}
+			keys[node] = keys[mostLeft];
+			int child = deleteMostLeftNode(right[node]);
+			right[node] = child;
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private int deleteMostLeftNode(int node) {
+		if (left[node] == NIL) {
+			int child = right[node];
+			freeNode(node);
+			return child;
+		}
+		int child = deleteMostLeftNode(left[node]);
+		left[node] = child;
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private int makeBalanced(int node) {
+		int balance = height[left[node]] - height[right[node]];
+		if (balance > 1) {
+			if (height[left[left[node]]] < height[right[left[node]]]) {
+				left[node] = leftRotate(left[node]);
+			}
+			return rightRotate(node);
+		} else if (balance < -1) {
+			if (height[right[right[node]]] < height[left[right[node]]]) {
+				right[node] = rightRotate(right[node]);
+			}
+			return leftRotate(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private int rightRotate(int node) {
+		int leftNode = left[node];
+		left[node] = right[leftNode];
+		right[leftNode] = node;
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private int leftRotate(int node) {
+		int rightNode = right[node];
+		right[node] = left[rightNode];
+		left[rightNode] = node;
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Recalculates the height and the subtree size of the given node
+	 * from its children.
+	 *
+	 * @param node The node to be updated
+	 */
+	private void update(int node) {
+		height[node] = Integer.max(height[left[node]], height[right[node]]) + 1;
+		size[node] = size[left[node]] + size[right[node]] + 1;
+	}
+
+	/**
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height[root];
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		ArrayList<T> list = new ArrayList<>(size());
+		inOrderTraversal(list, root);
+		return list;
+	}
+
+	/**
+	 * The recursive function to traverse tree in order.
+	 *
+	 * @param list List of nodes traversed
+	 * @param node The next node to be traversed
+	 */
+	private void inOrderTraversal(ArrayList<T> list, int node) {
+		if (node == NIL) {
+			return;
+		}
+		inOrderTraversal(list, left[node]);
+		list.add(key(node));
+		inOrderTraversal(list, right[node]);
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		ArrayList<T> list = new ArrayList<>(size());
+		int[] queue = new int[size()];
+		int head = 0, tail = 0;
+		if (root != NIL) {
+			queue[tail++] = root;
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			list.add(key(node));
+			if (left[node] != NIL) {
+				queue[tail++] = left[node];
+			}
+			if (right[node] != NIL) {
+				queue[tail++] = right[node];
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		int node = root;
+		while (node != NIL) {
+			int comparison1 = key(node).compareTo(element1);
+			int comparison2 = key(node).compareTo(element2);
+			if (comparison1 == 0 || comparison2 == 0 || (comparison1 > 0) != (comparison2 > 0)) {
+				break;
+			}
+			node = comparison1 > 0 ? left[node] : right[node];
+		}
+		if (node == NIL) {
+			return false;
+		}
+		int level1 = levelBelow(node, element1);
+		int level2 = levelBelow(node, element2);
+		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+		return level1 >= 2 && level1 == level2;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @return The distance of the element to node, or -1 if it is not in the subtree
+	 */
+	private int levelBelow(int node, T element) {
+		int level = 0;
+		while (node != NIL) {
+			int comparison = key(node).compareTo(element);
+			if (comparison == 0) {
+				return level;
+			}
+			node = comparison > 0 ? left[node] : right[node];
+			level++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		return levelBelow(root, element);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		int parent = NIL;
+		int node = root;
+		while (node != NIL) {
+			int comparison = key(node).compareTo(element);
+			if (comparison == 0) {
+				return parent == NIL ? null : key(parent);
+			}
+			parent = node;
+			node = comparison > 0 ? left[node] : right[node];
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		int node = root;
+		while (node != NIL) {
+			int comparison1 = key(node).compareTo(element1);
+			int comparison2 = key(node).compareTo(element2);
+			if (comparison1 == 0 || comparison2 == 0 || (comparison1 > 0) != (comparison2 > 0)) {
+				break;
+			}
+			node = comparison1 > 0 ? left[node] : right[node];
+		}
+		if (node == NIL || levelBelow(node, element1) < 0 || levelBelow(node, element2) < 0) {
+			return null;
+		}
+		return key(node);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(T element, boolean inclusive) {
+		int count = 0;
+		int node = root;
+		while (node != NIL) {
+			int comparison = key(node).compareTo(element);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				count += size[left[node]] + 1;
+				node = right[node];
+			} else if (comparison == 0) {
+				return count + size[left[node]];
+			} else {
+				node = left[node];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		int count = 0;
+		int node = root;
+		while (node != NIL) {
+			int comparison = key(node).compareTo(element);
+			if (comparison == 0) {
+				return count + size[left[node]];
+			} else if (comparison > 0) {
+				node = left[node];
+			} else {
+				count += size[left[node]] + 1;
+				node = right[node];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		int node = root;
+		while (true) {
+			int leftSize = size[left[node]];
+			if (index < leftSize) {
+				node = left[node];
+			} else if (index == leftSize) {
+				return key(node);
+			} else {
+				index -= leftSize + 1;
+				node = right[node];
+			}
+		}
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 * BalanceFactor: height(leftSubtree) - height(rightSubtree)
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data, 0 if there is no such node
+	 */
+	public int balanceFactor(T data) {
+		int node = searchNode(data);
+		if (node == NIL) {
+			return 0;
+		}
+		return height[left[node]] - height[right[node]];
+	}
+}
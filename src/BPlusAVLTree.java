@@ -0,0 +1,758 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A sorted set with the operations of an AVL tree that is stored in a
+ * B+-tree with wide nodes.
+ * <p>
+ * A leaf holds up to 64 elements in ascending order and an inner node up to
+ * 64 children, so a search visits about log_64(n) nodes instead of the
+ * 1.44 log_2(n) nodes of an AVL tree, and each node is a few contiguous
+ * arrays instead of a chain of separate objects. Leaves are linked in
+ * ascending order for traversals. Inner nodes keep the number of elements
+ * under each child for rank, select and range counts.
+ * <p>
+ * The B+-tree has no AVL shape of its own. The shape queries
+ * (<code>height</code>, <code>balanceFactor</code>, <code>bfTraverse</code>,
+ * <code>areCousins</code>, <code>depthOf</code>, <code>parentOf</code> and
+ * <code>lowestCommonAncestor</code>) answer for the logical AVL tree of
+ * the same elements that {@link AVLTree#fromSorted} builds: the middle
+ * element of the sorted order is the root and both halves are built the
+ * same way. That tree is perfectly balanced, so it is a valid AVL tree, and
+ * its shape follows from the ranks of the elements without any extra storage.
+ */
+public class BPlusAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+
+	private static final int CAPACITY = 64; // most elements in a leaf and children in an inner node
+	private static final int MIN_FILL = CAPACITY / 2; // fewest elements or children outside the root
+
+	/**
+	 * A leaf or an inner node of the B+-tree. The arrays have room for one
+	 * more entry than the capacity, so that a node can overflow before it
+	 * is split.
+	 */
+	private static final class Node {
+		// leaf: the elements, inner: keys[i] is the smallest element that can be under children[i + 1]
+		private final Object[] keys = new Object[CAPACITY + 1];
+		private final Node[] children; // null in leaves
+		private final int[] sizes; // number of elements under each child, null in leaves
+		private int count; // number of elements in a leaf, number of children in an inner node
+		private Node next; // the next leaf in ascending order
+
+		private Node(boolean leaf) {
+			children = leaf ? null : new Node[CAPACITY + 1];
+			sizes = leaf ? null : new int[CAPACITY + 1];
+		}
+
+		private boolean isLeaf() {
+			return children == null;
+		}
+	}
+
+	private Node root = new Node(true);
+	private int size;
+
+	private boolean changed; // set by the recursive insert and delete if the tree changed
+	private Object splitKey; // the separator of the node returned by the last split
+
+	/**
+	 * @param node  A node
+	 * @param index Position of a key in the node
+	 * @return The key at the position
+	 */
+	@SuppressWarnings("unchecked")
+	private T key(Node node, int index) {
+		return (T) node.keys[index];
+	}
+
+	/**
+	 * @param node    An inner node
+	 * @param element The searched element
+	 * @return The position of the child that can contain the element
+	 */
+	private int childIndex(Node node, T element) {
+		// the number of separators not greater than element
+		int low = 0, high = node.count - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (key(node, middle).compareTo(element) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param leaf      A leaf
+	 * @param element   The searched element
+	 * @param inclusive Whether elements equal to <code>element</code> are skipped
+	 * @return The number of elements in the leaf that are less than (or equal to) element
+	 */
+	private int position(Node leaf, T element, boolean inclusive) {
+		int low = 0, high = leaf.count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int comparison = key(leaf, middle).compareTo(element);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param node A node
+	 * @return The number of elements under the node
+	 */
+	private static int total(Node node) {
+		if (node.isLeaf()) {
+			return node.count;
+		}
+		int total = 0;
+		for (int i = 0; i < node.count; i++) {
+			total += node.sizes[i];
+		}
+		return total;
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of elements in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		Node node = root;
+		while (!node.isLeaf()) {
+			node = node.children[childIndex(node, element)];
+		}
+		int index = position(node, element, false);
+		return index < node.count && key(node, index).compareTo(element) == 0;
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(T element) {
+		changed = false;
+		Node sibling = insert(root, element);
+		if (sibling != null) {
+			Node newRoot = new Node(false);
+			newRoot.children[0] = root;
+			newRoot.children[1] = sibling;
+			newRoot.sizes[0] = total(root);
+			newRoot.sizes[1] = total(sibling);
+			newRoot.keys[0] = splitKey;
+			newRoot.count = 2;
+			root = newRoot;
+		}
+		if (changed) {
+			size++;
+		}
+	}
+
+	/**
+	 * Inserts the element under the node
+	 *
+	 * @param node    The node under which the element is inserted
+	 * @param element Element to be added
+	 * @return The new right sibling of the node if the node was split, null otherwise
+	 */
+	private Node insert(Node node, T element) {
+		if (node.isLeaf()) {
+			int index = position(node, element, false);
+			if (index < node.count && key(node, index).compareTo(element) == 0) {
+				return null;
+			}
+			System.arraycopy(node.keys, index, node.keys, index + 1, node.count - index);
+			node.keys[index] = element;
+			node.count++;
+			changed = true;
+			return node.count > CAPACITY ? splitLeaf(node) : null;
+		}
+		int index = childIndex(node, element);
+		Node sibling = insert(node.children[index], element);
+		if (!changed) {
+			return null;
+		}
+		node.sizes[index]++;
+		if (sibling == null) {
+			return null;
+		}
+		System.arraycopy(node.children, index + 1, node.children, index + 2, node.count - index - 1);
+		System.arraycopy(node.sizes, index + 1, node.sizes, index + 2, node.count - index - 1);
+		System.arraycopy(node.keys, index, node.keys, index + 1, node.count - index - 1);
+		node.children[index + 1] = sibling;
+		node.sizes[index + 1] = total(sibling);
+		node.sizes[index] -= node.sizes[index + 1];
+		node.keys[index] = splitKey;
+		node.count++;
+		return node.count > CAPACITY ? splitInner(node) : null;
+	}
+
+	/**
+	 * Moves the upper half of an overflowing leaf to a new leaf
+	 *
+	 * @param node The leaf
+	 * @return The new leaf, its first element is left in splitKey
+	 */
+	private Node splitLeaf(Node node) {
+		int half = node.count / 2;
+		Node sibling = new Node(true);
+		sibling.count = node.count - half;
+		System.arraycopy(node.keys, half, sibling.keys, 0, sibling.count);
+		Arrays.fill(node.keys, half, node.count, null);
+		node.count = half;
+		sibling.next = node.next;
+		node.next = sibling;
+		splitKey = sibling.keys[0];
+		return sibling;
+	}
+
+	/**
+	 * Moves the upper half of the children of an overflowing inner node
+	 * to a new node
+	 *
+	 * @param node The inner node
+	 * @return The new node, the separator between the two nodes is left in splitKey
+	 */
+	private Node splitInner(Node node) {
+		int half = node.count / 2;
+		Node sibling = new Node(false);
+		sibling.count = node.count - half;
+		System.arraycopy(node.children, half, sibling.children, 0, sibling.count);
+		System.arraycopy(node.sizes, half, sibling.sizes, 0, sibling.count);
+		System.arraycopy(node.keys, half, sibling.keys, 0, sibling.count - 1);
+		splitKey = node.keys[half - 1];
+		Arrays.fill(node.children, half, node.count, null);
+		Arrays.fill(node.keys, half - 1, node.count - 1, null);
+		node.count = half;
+		return sibling;
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree
+	 * <p>
+	 * The batch is inserted in ascending order, so consecutive insertions
+	 * share most of their path and find it in the cache.
+	 *
+	 * @param elements Elements to be added
+	 */
+	@SuppressWarnings("unchecked")
+	public void insertAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			insert((T) element);
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		changed = false;
+		delete(root, element);
+		if (changed) {
+			size--;
+			if (!root.isLeaf() && root.count == 1) {
+				root = root.children[0];
+			}
+		}
+	}
+
+	/**
+	 * Deletes the element under the node. A child that becomes less than
+	 * half full takes entries from a sibling or is merged with it.
+	 *
+	 * @param node    The node under which the element is deleted
+	 * @param element Element to be deleted
+	 */
+	private void delete(Node node, T element) {
+		if (node.isLeaf()) {
+			int index = position(node, element, false);
+			if (index == node.count || key(node, index).compareTo(element) != 0) {
+				return;
+			}
+			System.arraycopy(node.keys, index + 1, node.keys, index, node.count - index - 1);
+			node.keys[--node.count] = null;
+			changed = true;
+			return;
+		}
+		int index = childIndex(node, element);
+		Node child = node.children[index];
+		delete(child, element);
+		if (!changed) {
+			return;
+		}
+		node.sizes[index]--;
+		if (child.count >= MIN_FILL) {
+			return;
+		}
+		if (index > 0 && node.children[index - 1].count > MIN_FILL) {
+			moveFromLeft(node, index);
+		} else if (index + 1 < node.count && node.children[index + 1].count > MIN_FILL) {
+			moveFromRight(node, index);
+		} else if (index > 0) {
+			merge(node, index - 1);
+		} else {
+			merge(node, index);
+		}
+	}
+
+	/**
+	 * Moves the last entry of the left sibling of a child to the child
+	 *
+	 * @param parent The parent of the child
+	 * @param index  The position of the child in the parent
+	 */
+	private void moveFromLeft(Node parent, int index) {
+		Node left = parent.children[index - 1];
+		Node child = parent.children[index];
+		System.arraycopy(child.keys, 0, child.keys, 1, child.isLeaf() ? child.count : child.count - 1);
+		int moved;
+		if (child.isLeaf()) {
+			child.keys[0] = left.keys[left.count - 1];
+			left.keys[left.count - 1] = null;
+			parent.keys[index - 1] = child.keys[0];
+			moved = 1;
+		} else {
+			System.arraycopy(child.children, 0, child.children, 1, child.count);
+			System.arraycopy(child.sizes, 0, child.sizes, 1, child.count);
+			child.children[0] = left.children[left.count - 1];
+			child.sizes[0] = left.sizes[left.count - 1];
+			child.keys[0] = parent.keys[index - 1];
+			parent.keys[index - 1] = left.keys[left.count - 2];
+			left.children[left.count - 1] = null;
+			left.keys[left.count - 2] = null;
+			moved = child.sizes[0];
+		}
+		left.count--;
+		child.count++;
+		parent.sizes[index - 1] -= moved;
+		parent.sizes[index] += moved;
+	}
+
+	/**
+	 * Moves the first entry of the right sibling of a child to the child
+	 *
+	 * @param parent The parent of the child
+	 * @param index  The position of the child in the parent
+	 */
+	private void moveFromRight(Node parent, int index) {
+		Node child = parent.children[index];
+		Node right = parent.children[index + 1];
+		int moved;
+		if (child.isLeaf()) {
+			child.keys[child.count] = right.keys[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+			right.keys[right.count - 1] = null;
+			parent.keys[index] = right.keys[0];
+			moved = 1;
+		} else {
+			child.children[child.count] = right.children[0];
+			child.sizes[child.count] = right.sizes[0];
+			child.keys[child.count - 1] = parent.keys[index];
+			parent.keys[index] = right.keys[0];
+			moved = right.sizes[0];
+			System.arraycopy(right.children, 1, right.children, 0, right.count - 1);
+			System.arraycopy(right.sizes, 1, right.sizes, 0, right.count - 1);
+			System.arraycopy(right.keys, 1, right.keys, 0, right.count - 2);
+			right.children[right.count - 1] = null;
+			right.keys[right.count - 2] = null;
+		}
+		child.count++;
+		right.count--;
+		parent.sizes[index] += moved;
+		parent.sizes[index + 1] -= moved;
+	}
+
+	/**
+	 * Merges two neighbour children of a node into the left one
+	 *
+	 * @param parent The parent of the children
+	 * @param index  The position of the left child in the parent
+	 */
+	private void merge(Node parent, int index) {
+		Node left = parent.children[index];
+		Node right = parent.children[index + 1];
+		if (left.isLeaf()) {
+			System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+			left.next = right.next;
+		} else {
+			left.keys[left.count - 1] = parent.keys[index];
+			System.arraycopy(right.keys, 0, left.keys, left.count, right.count - 1);
+			System.arraycopy(right.children, 0, left.children, left.count, right.count);
+			System.arraycopy(right.sizes, 0, left.sizes, left.count, right.count);
+		}
+		left.count += right.count;
+		parent.sizes[index] += parent.sizes[index + 1];
+		System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.count - index - 2);
+		System.arraycopy(parent.sizes, index + 2, parent.sizes, index + 1, parent.count - index - 2);
+		System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.count - index - 2);
+		parent.count--;
+		parent.children[parent.count] = null;
+		parent.keys[parent.count - 1] = null;
+	}
+
+	/**
+	 * Deletes all the elements in the parameter
+	 * <p>
+	 * The batch is deleted in ascending order, so consecutive deletions
+	 * share most of their path and find it in the cache.
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	@SuppressWarnings("unchecked")
+	public void deleteAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			delete((T) element);
+		}
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 * <p>
+	 * This is the height of the logical AVL tree, which is the
+	 * number of bits of <code>size()</code>.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(size);
+	}
+
+	/**
+	 * @param size The number of elements in a subtree of the logical tree
+	 * @return The height of the subtree
+	 */
+	private static int height(int size) {
+		return Integer.SIZE - Integer.numberOfLeadingZeros(size);
+	}
+
+	/**
+	 * Traverses the tree "in order" by following the links between the leaves.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<T> inOrderTraversal() {
+		ArrayList<T> list = new ArrayList<>(size);
+		Node leaf = root;
+		while (!leaf.isLeaf()) {
+			leaf = leaf.children[0];
+		}
+		for (; leaf != null; leaf = leaf.next) {
+			for (int i = 0; i < leaf.count; i++) {
+				list.add((T) leaf.keys[i]);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Visits all the nodes of the logical tree in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		ArrayList<T> sorted = inOrderTraversal();
+		ArrayList<T> list = new ArrayList<>(size);
+		// each subtree is the range [from, to) of the sorted elements
+		int[] queue = new int[2 * size];
+		int head = 0, tail = 0;
+		if (size > 0) {
+			queue[tail++] = 0;
+			queue[tail++] = size;
+		}
+		while (head < tail) {
+			int from = queue[head++];
+			int to = queue[head++];
+			int middle = (from + to) >>> 1;
+			list.add(sorted.get(middle));
+			if (from < middle) {
+				queue[tail++] = from;
+				queue[tail++] = middle;
+			}
+			if (middle + 1 < to) {
+				queue[tail++] = middle + 1;
+				queue[tail++] = to;
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Follows the logical tree from the root down to an element
+	 *
+	 * @param index The rank of the element
+	 * @return The rank of the parent of the element, or -1 for the root
+	 */
+	private int parentIndex(int index) {
+		int from = 0, to = size, parent = -1;
+		while (true) {
+			int middle = (from + to) >>> 1;
+			if (index == middle) {
+				return parent;
+			}
+			parent = middle;
+			if (index < middle) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+		}
+	}
+
+	/**
+	 * @param index The rank of an element
+	 * @return The depth of the element in the logical tree
+	 */
+	private int depthOfIndex(int index) {
+		int from = 0, to = size, depth = 0;
+		while (true) {
+			int middle = (from + to) >>> 1;
+			if (index == middle) {
+				return depth;
+			}
+			if (index < middle) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+			depth++;
+		}
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		int index1 = rank(element1);
+		int index2 = rank(element2);
+		if (index1 < 0 || index2 < 0) {
+			return false;
+		}
+		int depth = depthOfIndex(index1);
+		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+		return depth >= 2 && depth == depthOfIndex(index2) && parentIndex(index1) != parentIndex(index2);
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root of the logical tree. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		int index = rank(element);
+		return index < 0 ? -1 : depthOfIndex(index);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code> in the logical tree
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		int index = rank(element);
+		if (index < 0) {
+			return null;
+		}
+		int parent = parentIndex(index);
+		return parent < 0 ? null : select(parent);
+	}
+
+	/**
+	 * Returns the element stored in the deepest node of the logical tree
+	 * that has both elements in its subtree. A node is an ancestor of
+	 * itself, so if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		int index1 = rank(element1);
+		int index2 = rank(element2);
+		if (index1 < 0 || index2 < 0) {
+			return null;
+		}
+		int low = Math.min(index1, index2), high = Math.max(index1, index2);
+		int from = 0, to = size;
+		while (true) {
+			int middle = (from + to) >>> 1;
+			if (high < middle) {
+				to = middle;
+			} else if (low > middle) {
+				from = middle + 1;
+			} else {
+				return select(middle);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter in the logical tree
+	 * BalanceFactor: height(leftSubtree) - height(rightSubtree)
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data
+	 */
+	public int balanceFactor(T data) {
+		int index = rank(data);
+		if (index < 0) {
+			return 0;
+		}
+		int from = 0, to = size;
+		while (true) {
+			int middle = (from + to) >>> 1;
+			if (index == middle) {
+				return height(middle - from) - height(to - middle - 1);
+			}
+			if (index < middle) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(T element, boolean inclusive) {
+		int count = 0;
+		Node node = root;
+		while (!node.isLeaf()) {
+			int index = childIndex(node, element);
+			for (int i = 0; i < index; i++) {
+				count += node.sizes[i];
+			}
+			node = node.children[index];
+		}
+		return count + position(node, element, inclusive);
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		int count = 0;
+		Node node = root;
+		while (!node.isLeaf()) {
+			int index = childIndex(node, element);
+			for (int i = 0; i < index; i++) {
+				count += node.sizes[i];
+			}
+			node = node.children[index];
+		}
+		int index = position(node, element, false);
+		if (index == node.count || key(node, index).compareTo(element) != 0) {
+			return -1;
+		}
+		return count + index;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		Node node = root;
+		while (!node.isLeaf()) {
+			int child = 0;
+			while (index >= node.sizes[child]) {
+				index -= node.sizes[child];
+				child++;
+			}
+			node = node.children[child];
+		}
+		return key(node, index);
+	}
+}
@@ -0,0 +1,652 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+
+/**
+ * An AVL tree with a maximum size and an expiry time for each element, to
+ * be used as an ordered cache.
+ * <p>
+ * The tree stores an entry for each element, ordered by the elements. The
+ * entries are also linked from the oldest insertion to the newest one and,
+ * if they expire, kept in a binary heap ordered by the expiry time. Every
+ * call removes the expired elements at the top of the heap first, so expired
+ * elements are never seen and each one is removed once in O(log n) time,
+ * without any scan.
+ * <p>
+ * When an insert makes the tree larger than its capacity, the eviction
+ * policy chooses the elements to be removed.
+ * <p>
+ * All changes must go through this class, which is why the tree is not
+ * exposed. The class is not thread safe.
+ */
+public class BoundedAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+
+	/**
+	 * Chooses the element to be removed when the tree is over its capacity
+	 */
+	public interface EvictionPolicy<T extends Comparable<T>> {
+
+		/**
+		 * @param tree A tree that is over its capacity
+		 * @return An element of the tree
+		 */
+		public T victim(BoundedAVLTree<T> tree);
+
+		/**
+		 * @return The policy that removes the element inserted first
+		 */
+		public static <T extends Comparable<T>> EvictionPolicy<T> oldest() {
+			return BoundedAVLTree::oldest;
+		}
+
+		/**
+		 * @return The policy that removes the smallest element
+		 */
+		public static <T extends Comparable<T>> EvictionPolicy<T> smallest() {
+			return tree -> tree.select(0);
+		}
+
+		/**
+		 * @return The policy that removes the largest element
+		 */
+		public static <T extends Comparable<T>> EvictionPolicy<T> largest() {
+			return tree -> tree.select(tree.size() - 1);
+		}
+	}
+
+	/**
+	 * An element and its bookkeeping, ordered by the element
+	 */
+	private static class Entry<T extends Comparable<T>> implements Comparable<Entry<T>> {
+		private T element;
+		private int heapIndex = -1; // position in the heap, -1 if the element does not expire
+		private Entry<T> older, newer; // neighbours in the order of insertion
+
+		Entry(T element) {
+			this.element = element;
+		}
+
+		public int compareTo(Entry<T> other) {
+			return element.compareTo(other.element);
+		}
+	}
+
+	private final AVLTree<Entry<T>> tree = new AVLTree<>();
+	private final AVLTree<Entry<T>>.Cursor cursor = tree.cursor(); // inserts near the previous insertion
+	private Entry<T> probe = new Entry<>(null); // searches the tree for an element
+	private final int capacity;
+	private final EvictionPolicy<T> policy;
+	private final long ttlNanos;
+	private final LongSupplier clock;
+
+	@SuppressWarnings("unchecked")
+	private Entry<T>[] heap = (Entry<T>[]) new Entry<?>[16]; // heap[0] expires first
+	private long[] deadlines = new long[16]; // deadlines[i] is the value of the clock when heap[i] expires
+	private int heapSize;
+	private Entry<T> oldest, newest; // ends of the list in the order of insertion
+
+	private long evictions, expirations;
+
+	/**
+	 * Creates an empty tree whose elements do not expire
+	 *
+	 * @param capacity The maximum number of elements
+	 * @param policy   Chooses the elements removed above the capacity
+	 */
+	public BoundedAVLTree(int capacity, EvictionPolicy<T> policy) {
+		this(capacity, policy, 0);
+	}
+
+	/**
+	 * Creates an empty tree
+	 *
+	 * @param capacity The maximum number of elements
+	 * @param policy   Chooses the elements removed above the capacity
+	 * @param ttlNanos Time to live of the elements given to insert, 0 if they do not expire
+	 */
+	public BoundedAVLTree(int capacity, EvictionPolicy<T> policy, long ttlNanos) {
+		this(capacity, policy, ttlNanos, System::nanoTime);
+	}
+
+	/**
+	 * Creates an empty tree with its own clock
+	 *
+	 * @param capacity The maximum number of elements
+	 * @param policy   Chooses the elements removed above the capacity
+	 * @param ttlNanos Time to live of the elements given to insert, 0 if they do not expire
+	 * @param clock    The current time in nanoseconds, as System.nanoTime
+	 * @throws IllegalArgumentException if the capacity is not positive or ttlNanos is negative
+	 */
+	public BoundedAVLTree(int capacity, EvictionPolicy<T> policy, long ttlNanos, LongSupplier clock) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		if (ttlNanos < 0) {
+			throw new IllegalArgumentException("Time to live must not be negative: " + ttlNanos);
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		this.ttlNanos = ttlNanos;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The maximum number of elements
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return The number of elements removed by the eviction policy so far
+	 */
+	public long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return The number of elements removed because they expired so far
+	 */
+	public long expirations() {
+		return expirations;
+	}
+
+	/**
+	 * Removes the elements whose expiry time has passed. Each of them is
+	 * at the top of the heap when it is removed.
+	 */
+	private void expire() {
+		if (heapSize == 0) {
+			return;
+		}
+		long now = clock.getAsLong();
+		while (heapSize > 0 && deadlines[0] - now <= 0) {
+			remove(heap[0]);
+			expirations++;
+		}
+	}
+
+	/**
+	 * @param element An element
+	 * @return The shared probe entry, set to the element
+	 */
+	private Entry<T> probe(T element) {
+		probe.element = element;
+		return probe;
+	}
+
+	/**
+	 * @param entry An entry or null
+	 * @return The element of the entry, or null
+	 */
+	private T elementOf(Entry<T> entry) {
+		return entry == null ? null : entry.element;
+	}
+
+	/**
+	 * @param entries Entries
+	 * @return The elements of the entries in the same order
+	 */
+	private ArrayList<T> elementsOf(ArrayList<Entry<T>> entries) {
+		ArrayList<T> elements = new ArrayList<>(entries.size());
+		for (Entry<T> entry : entries) {
+			elements.add(entry.element);
+		}
+		return elements;
+	}
+
+	/**
+	 * Removes the entry from the tree, the insertion order and the heap
+	 *
+	 * @param entry An entry in the tree
+	 */
+	private void remove(Entry<T> entry) {
+		tree.delete(entry);
+		unlink(entry);
+		if (entry.heapIndex >= 0) {
+			removeFromHeap(entry);
+		}
+	}
+
+	/**
+	 * @return The element inserted first among the elements of the tree
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public T oldest() {
+		expire();
+		if (oldest == null) {
+			throw new NoSuchElementException();
+		}
+		return oldest.element;
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		expire();
+		return tree.isEmpty();
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		expire();
+		return tree.size();
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree and has not expired
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		expire();
+		return tree.contains(probe(element));
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree with the
+	 * time to live of the tree
+	 * <p>
+	 * If tree already contains the parameter, the element becomes the
+	 * newest one and its expiry time starts again
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(T element) {
+		insert(element, ttlNanos);
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree with its own
+	 * time to live. The elements chosen by the eviction policy are
+	 * removed while the tree is over its capacity.
+	 * <p>
+	 * If tree already contains the parameter, the element becomes the
+	 * newest one and gets the new expiry time
+	 *
+	 * @param element  Element to be added
+	 * @param ttlNanos Time to live of the element, 0 if it does not expire
+	 * @throws IllegalArgumentException if ttlNanos is negative
+	 * @throws IllegalStateException    if the policy chooses an element that is not in the tree
+	 */
+	public void insert(T element, long ttlNanos) {
+		if (ttlNanos < 0) {
+			throw new IllegalArgumentException("Time to live must not be negative: " + ttlNanos);
+		}
+		expire();
+		// the element is found or inserted in one descent, a new entry is made only for a new element
+		Entry<T> entry = cursor.putIfAbsent(probe(element));
+		if (entry == null) {
+			// the probe has been inserted, so it becomes the entry of the element
+			entry = probe;
+			probe = new Entry<>(null);
+		} else {
+			unlink(entry);
+		}
+		link(entry);
+		if (ttlNanos == 0) {
+			if (entry.heapIndex >= 0) {
+				removeFromHeap(entry);
+			}
+		} else {
+			long deadline = clock.getAsLong() + ttlNanos;
+			if (entry.heapIndex < 0) {
+				addToHeap(entry, deadline);
+			} else {
+				int index = entry.heapIndex;
+				boolean later = deadline - deadlines[index] > 0;
+				deadlines[index] = deadline;
+				if (later) {
+					siftDown(index);
+				} else {
+					siftUp(index);
+				}
+			}
+		}
+		while (tree.size() > capacity) {
+			T victim = policy.victim(this);
+			Entry<T> evicted;
+			if (victim == entry.element) {
+				evicted = entry;
+			} else if (victim == oldest.element) {
+				evicted = oldest;
+			} else {
+				evicted = tree.ceiling(probe(victim));
+				if (evicted == null || evicted.element.compareTo(victim) != 0) {
+					throw new IllegalStateException("The eviction policy chose an element that is not in the tree: " + victim);
+				}
+			}
+			remove(evicted);
+			evictions++;
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		expire();
+		Entry<T> entry = tree.ceiling(probe(element));
+		if (entry != null && entry.element.compareTo(element) == 0) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree in ascending
+	 * order, each with the time to live of the tree
+	 *
+	 * @param elements Elements to be added
+	 */
+	@SuppressWarnings("unchecked")
+	public void insertAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			insert((T) element);
+		}
+	}
+
+	/**
+	 * Deletes all the elements in the parameter in ascending order
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	@SuppressWarnings("unchecked")
+	public void deleteAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		for (Object element : batch) {
+			delete((T) element);
+		}
+	}
+
+	/**
+	 * Appends the entry to the newest end of the insertion order
+	 *
+	 * @param entry An entry that is not in the list
+	 */
+	private void link(Entry<T> entry) {
+		entry.older = newest;
+		entry.newer = null;
+		if (newest == null) {
+			oldest = entry;
+		} else {
+			newest.newer = entry;
+		}
+		newest = entry;
+	}
+
+	/**
+	 * Removes the entry from the insertion order
+	 *
+	 * @param entry An entry in the list
+	 */
+	private void unlink(Entry<T> entry) {
+		if (entry.older == null) {
+			oldest = entry.newer;
+		} else {
+			entry.older.newer = entry.newer;
+		}
+		if (entry.newer == null) {
+			newest = entry.older;
+		} else {
+			entry.newer.older = entry.older;
+		}
+		entry.older = entry.newer = null;
+	}
+
+	/**
+	 * Adds the entry to the heap
+	 *
+	 * @param entry    An entry that is not in the heap
+	 * @param deadline The value of the clock when the element expires
+	 */
+	private void addToHeap(Entry<T> entry, long deadline) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, 2 * heapSize);
+			deadlines = Arrays.copyOf(deadlines, 2 * heapSize);
+		}
+		heap[heapSize] = entry;
+		deadlines[heapSize] = deadline;
+		entry.heapIndex = heapSize++;
+		siftUp(entry.heapIndex);
+	}
+
+	/**
+	 * Removes the entry from the heap, the last entry takes its place
+	 *
+	 * @param entry An entry in the heap
+	 */
+	private void removeFromHeap(Entry<T> entry) {
+		int index = entry.heapIndex;
+		Entry<T> last = heap[--heapSize];
+		heap[heapSize] = null;
+		entry.heapIndex = -1;
+		if (last != entry) {
+			heap[index] = last;
+			deadlines[index] = deadlines[heapSize];
+			last.heapIndex = index;
+			siftDown(index);
+			siftUp(last.heapIndex);
+		}
+	}
+
+	/**
+	 * Moves the entry at the index towards the top until its parent expires before it
+	 *
+	 * @param index A position of the heap
+	 */
+	private void siftUp(int index) {
+		Entry<T> entry = heap[index];
+		long deadline = deadlines[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (deadlines[parent] - deadline <= 0) {
+				break;
+			}
+			move(parent, index);
+			index = parent;
+		}
+		heap[index] = entry;
+		deadlines[index] = deadline;
+		entry.heapIndex = index;
+	}
+
+	/**
+	 * Moves the entry at the index towards the leaves until its children expire after it
+	 *
+	 * @param index A position of the heap
+	 */
+	private void siftDown(int index) {
+		Entry<T> entry = heap[index];
+		long deadline = deadlines[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && deadlines[child + 1] - deadlines[child] < 0) {
+				child++;
+			}
+			if (deadline - deadlines[child] <= 0) {
+				break;
+			}
+			move(child, index);
+			index = child;
+		}
+		heap[index] = entry;
+		deadlines[index] = deadline;
+		entry.heapIndex = index;
+	}
+
+	/**
+	 * Copies an entry of the heap to another position
+	 *
+	 * @param from The position of the entry
+	 * @param to   Its new position
+	 */
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		deadlines[to] = deadlines[from];
+		heap[to].heapIndex = to;
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		expire();
+		return tree.height();
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		expire();
+		return elementsOf(tree.inOrderTraversal());
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		expire();
+		return elementsOf(tree.bfTraverse());
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		expire();
+		return tree.areCousins(new Entry<>(element1), new Entry<>(element2));
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		expire();
+		return tree.depthOf(probe(element));
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		expire();
+		return elementOf(tree.parentOf(probe(element)));
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		expire();
+		return elementOf(tree.lowestCommonAncestor(new Entry<>(element1), new Entry<>(element2)));
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		expire();
+		return tree.numElementsInRange(new Entry<>(lower), new Entry<>(upper));
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data
+	 */
+	public int balanceFactor(T data) {
+		expire();
+		return tree.balanceFactor(probe(data));
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		expire();
+		return tree.countLessThan(probe(element));
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		expire();
+		return tree.rank(probe(element));
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		expire();
+		return tree.select(index).element;
+	}
+}
@@ -0,0 +1,1419 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A thread safe AVL tree that can be shared by many threads.
+ * <p>
+ * Every node has its own lock. A writer descends from the root with
+ * hand-over-hand locking and releases the nodes above the deepest node whose
+ * height cannot change, so writers in disjoint subtrees run in parallel and
+ * the locks near the root are held only for a few steps. The insertion and
+ * the deletion, including the rotations, are done in that single pass.
+ * <p>
+ * A writer marks every node it changes with an odd version while changing
+ * it. <code>contains</code> and the other searches for one or two elements
+ * take no lock, they validate the version of every node they pass on the way
+ * down and restart if a writer changed it.
+ * <p>
+ * The methods that read a larger part of the tree, the traversals and the
+ * order statistics, are first run optimistically. They check every few steps
+ * that no writer has started since they did, and if none has, they have read
+ * a consistent copy of the tree. After a few failed attempts they walk over
+ * the elements in order without a lock, validating the nodes like the
+ * searches, so they never keep writers out. Like the iterators of
+ * ConcurrentSkipListMap, such a walk is not a copy of the tree at one moment,
+ * it returns the elements that stay in the tree during the walk and maybe
+ * some of the ones that are added or deleted meanwhile. Only
+ * <code>bfTraverse</code>, whose order depends on the shape of the tree, keeps
+ * writers out after its attempts. A batch keeps writers out, and the readers
+ * of larger parts see either none or all of it.
+ * <p>
+ * The nodes don't store subtree sizes, since every writer would have to
+ * change the root, so <code>countLessThan</code>, <code>rank</code>,
+ * <code>select</code> and <code>numElementsInRange</code> walk over the
+ * elements they count.
+ */
+public class ConcurrentAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+
+	/**
+	 * Node of the tree. The fields are changed only by the writer holding
+	 * the lock of the node, between two increments of the version.
+	 */
+	private static final class Node<T> {
+		volatile T data;
+		volatile Node<T> left;
+		volatile Node<T> right;
+		volatile int height;
+		/** Odd while a writer is changing the node */
+		volatile long version;
+		/** 1 while a writer holds the node */
+		volatile int locked;
+
+		Node(T data) {
+			this.data = data;
+			height = 1;
+		}
+	}
+
+	/**
+	 * Thrown by a guard when a writer may have changed the tree during an
+	 * optimistic read
+	 */
+	private static final class Interference extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Interference() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * A read of a larger part of the tree
+	 */
+	private interface Reader<T, R> {
+		/**
+		 * @param root  The root of the tree
+		 * @param guard Must be called at every node visited
+		 * @return The result of the read
+		 */
+		R read(Node<T> root, Guard guard);
+	}
+
+	/**
+	 * Stops an optimistic read when a writer has started after it
+	 */
+	private static final class Guard {
+		private final ConcurrentAVLTree<?> tree;
+		private final long stamp;
+		private int steps;
+
+		/**
+		 * @param tree  The tree being read
+		 * @param stamp The number of writers started before the read,
+		 *              or -1 if writers are kept out
+		 */
+		Guard(ConcurrentAVLTree<?> tree, long stamp) {
+			this.tree = tree;
+			this.stamp = stamp;
+		}
+
+		/**
+		 * Counts a visited node and validates the read every few nodes,
+		 * so that a torn read cannot run for long
+		 *
+		 * @throws Interference if a writer has started
+		 */
+		void step() {
+			if (stamp >= 0 && (++steps & (VALIDATION_INTERVAL - 1)) == 0 && !validate()) {
+				throw INTERFERENCE;
+			}
+		}
+
+		/**
+		 * @return true if no writer has started since the read began
+		 */
+		boolean validate() {
+			return stamp < 0 || tree.started() == stamp;
+		}
+	}
+
+	private static final Interference INTERFERENCE = new Interference();
+	private static final VarHandle LOCKED;
+	/** Number of optimistic attempts of a read before its fallback */
+	private static final int OPTIMISTIC_READS = 3;
+	/** Number of nodes an optimistic read visits between two validations */
+	private static final int VALIDATION_INTERVAL = 128;
+	/** Number of busy waits before a waiting thread yields the processor */
+	private static final int SPINS = 64;
+	/** Writers count themselves in one of these, chosen by their thread id */
+	private static final int STRIPES = Math.min(64,
+			Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors()) * 2 - 1));
+	/** Distance between two stripes in the counter array, a stripe fills a cache line */
+	private static final int PADDING = 16;
+
+	static {
+		try {
+			LOCKED = MethodHandles.lookup().findVarHandle(Node.class, "locked", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** The root of the tree is the right child of the holder */
+	private final Node<T> holder = new Node<>(null);
+	private final LongAdder count = new LongAdder();
+	/** Number of started and finished writers of every stripe */
+	private final AtomicLongArray writers = new AtomicLongArray(STRIPES * PADDING);
+	/** Number of readers and batches that keep writers out */
+	private final AtomicInteger closers = new AtomicInteger();
+	/** Shared by the readers that keep writers out, owned by a batch */
+	private final StampedLock gate = new StampedLock();
+	/** Writers wait here while they are kept out */
+	private final Object opened = new Object();
+	/** The locked path of every writer, kept between its calls */
+	private final ThreadLocal<Node<T>[]> paths = ThreadLocal.withInitial(ConcurrentAVLTree::newPath);
+
+	/**
+	 * Creates an empty tree
+	 */
+	public ConcurrentAVLTree() {
+	}
+
+	/**
+	 * Creates a tree storing the elements of the given tree. The given tree
+	 * is not changed and not shared.
+	 *
+	 * @param tree The tree whose elements are copied
+	 */
+	public ConcurrentAVLTree(AVLTree<T> tree) {
+		ArrayList<T> elements = tree.inOrderTraversal();
+		holder.right = build(elements, 0, elements.size());
+		count.add(elements.size());
+	}
+
+	/**
+	 * Builds a perfectly balanced subtree
+	 *
+	 * @param elements Sorted elements
+	 * @param from     Index of the first element of the subtree
+	 * @param to       Index after the last element of the subtree
+	 * @return The root of the subtree
+	 */
+	private static <T> Node<T> build(List<T> elements, int from, int to) {
+		if (from == to) {
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		Node<T> node = new Node<>(elements.get(middle));
+		node.left = build(elements, from, middle);
+		node.right = build(elements, middle + 1, to);
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		return node;
+	}
+
+	/**
+	 * @param node A node or null
+	 * @return The height of the node, 0 for null
+	 */
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	/**
+	 * Waits while the processor is needed by another thread
+	 *
+	 * @param spins The number of waits so far
+	 */
+	private static void pause(int spins) {
+		if (spins < SPINS) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Acquires the lock of the node
+	 *
+	 * @param node The node to be locked
+	 */
+	private static void lock(Node<?> node) {
+		for (int spins = 0; node.locked != 0 || !LOCKED.compareAndSet(node, 0, 1); spins++) {
+			pause(spins);
+		}
+	}
+
+	/**
+	 * Releases the locks of path[from] to path[to - 1]
+	 */
+	private static void unlock(Node<?>[] path, int from, int to) {
+		for (int i = from; i < to; i++) {
+			path[i].locked = 0;
+		}
+	}
+
+	/**
+	 * Marks the start of a change of the node, the lock of the node must be held
+	 *
+	 * @param node The node to be changed
+	 */
+	private static void beginChange(Node<?> node) {
+		node.version = node.version + 1;
+	}
+
+	/**
+	 * Marks the end of a change of the node
+	 *
+	 * @param node The changed node
+	 */
+	private static void endChange(Node<?> node) {
+		node.version = node.version + 1;
+	}
+
+	/**
+	 * Waits until no writer is changing the node
+	 *
+	 * @param node The node to be read
+	 * @return The version of the node
+	 */
+	private static long stableVersion(Node<?> node) {
+		long version;
+		for (int spins = 0; ((version = node.version) & 1) != 0; spins++) {
+			pause(spins);
+		}
+		return version;
+	}
+
+	/**
+	 * @return A new array for the locked path of a writer
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] newPath() {
+		return (Node<T>[]) new Node<?>[64];
+	}
+
+	/**
+	 * Unlocks the held part of the path and clears it, so that the path of
+	 * the thread does not keep removed nodes alive
+	 *
+	 * @param path  The locked path of the writer
+	 * @param top   Index of the highest locked node
+	 * @param depth Length of the path
+	 */
+	private void finish(Node<T>[] path, int top, int depth) {
+		unlock(path, top, depth);
+		Arrays.fill(path, 0, depth, null);
+	}
+
+	/**
+	 * @return The stripe of the current thread
+	 */
+	private static int stripe() {
+		return (int) Thread.currentThread().getId() & (STRIPES - 1);
+	}
+
+	/**
+	 * Counts the current thread as a running writer, waits first if
+	 * writers are kept out
+	 *
+	 * @return The stripe the writer is counted in
+	 */
+	private int enter() {
+		int index = stripe() * PADDING;
+		while (true) {
+			writers.getAndIncrement(index);
+			if (closers.get() == 0) {
+				return index;
+			}
+			writers.getAndIncrement(index + 1);
+			awaitOpen();
+		}
+	}
+
+	/**
+	 * Counts a batch as a running writer. Writers are kept out by the batch,
+	 * so it does not wait.
+	 *
+	 * @return The stripe the batch is counted in
+	 */
+	private int begin() {
+		int index = stripe() * PADDING;
+		writers.getAndIncrement(index);
+		return index;
+	}
+
+	/**
+	 * Counts the writer that entered in the stripe as finished
+	 *
+	 * @param index The value returned by <code>enter</code>
+	 */
+	private void exit(int index) {
+		writers.getAndIncrement(index + 1);
+	}
+
+	/**
+	 * Waits until writers are let in again
+	 */
+	private void awaitOpen() {
+		boolean interrupted = false;
+		synchronized (opened) {
+			while (closers.get() != 0) {
+				try {
+					opened.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Keeps new writers out and waits until the running ones finish
+	 *
+	 * @param exclusive true to keep out the other closers as well
+	 * @return The stamp to be passed to <code>open</code>
+	 */
+	private long close(boolean exclusive) {
+		long stamp = exclusive ? gate.writeLock() : gate.readLock();
+		closers.incrementAndGet();
+		for (int index = 0; index < writers.length(); index += PADDING) {
+			// the finished ones are read first, so a writer entering meanwhile cannot hide a running one
+			for (int spins = 0; writers.get(index + 1) != writers.get(index); spins++) {
+				pause(spins);
+			}
+		}
+		return stamp;
+	}
+
+	/**
+	 * Lets writers in again
+	 *
+	 * @param stamp The value returned by <code>close</code>
+	 */
+	private void open(long stamp) {
+		if (closers.decrementAndGet() == 0) {
+			synchronized (opened) {
+				opened.notifyAll();
+			}
+		}
+		gate.unlock(stamp);
+	}
+
+	/**
+	 * @return The number of writers started so far, or -1 if a writer is running
+	 */
+	private long quiescent() {
+		long started = 0;
+		for (int index = 0; index < writers.length(); index += PADDING) {
+			long finished = writers.get(index + 1);
+			long entered = writers.get(index);
+			if (finished != entered) {
+				return -1;
+			}
+			started += entered;
+		}
+		return started;
+	}
+
+	/**
+	 * @return The number of writers started so far
+	 */
+	private long started() {
+		long started = 0;
+		for (int index = 0; index < writers.length(); index += PADDING) {
+			started += writers.get(index);
+		}
+		return started;
+	}
+
+	/**
+	 * Runs the reader optimistically, a few times if writers interfere with
+	 * it, and then runs the fallback
+	 *
+	 * @param reader   The read operation
+	 * @param fallback Runs the read if every optimistic attempt failed
+	 * @return The result of the read operation
+	 */
+	private <R> R read(Reader<T, R> reader, Supplier<R> fallback) {
+		for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+			long stamp = quiescent();
+			if (stamp < 0) {
+				// let the running writers finish
+				Thread.yield();
+				continue;
+			}
+			Guard guard = new Guard(this, stamp);
+			try {
+				R result = reader.read(holder.right, guard);
+				if (guard.validate()) {
+					return result;
+				}
+			} catch (Interference e) {
+				// a writer has started, try again
+			}
+		}
+		return fallback.get();
+	}
+
+	/**
+	 * Runs the reader while writers are kept out
+	 *
+	 * @param reader The read operation
+	 * @return The result of the read operation
+	 */
+	private <R> R readClosed(Reader<T, R> reader) {
+		long stamp = close(false);
+		try {
+			return reader.read(holder.right, new Guard(this, -1));
+		} finally {
+			open(stamp);
+		}
+	}
+
+	/**
+	 * Runs a walk while no batch is running. Other writers are not kept out.
+	 *
+	 * @param lower  The walk starts after this element, or at the smallest
+	 *               element if it is null
+	 * @param walker The read operation
+	 * @return The result of the read operation
+	 */
+	private <R> R walk(T lower, Function<Walk, R> walker) {
+		long stamp = gate.readLock();
+		try {
+			return walker.apply(new Walk(lower));
+		} finally {
+			gate.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Visits the elements in ascending order without a lock. Every node is
+	 * validated with its version as in <code>locate</code>, and when a writer
+	 * has changed a node the walk still needs, the walk searches the element
+	 * after the last one again from the root. The elements are returned in
+	 * ascending order, each was in the tree at some moment of the walk, and
+	 * the ones that were in the tree during the whole walk are all returned.
+	 */
+	private final class Walk {
+		private Node<T>[] nodes = newPath();
+		private long[] versions = new long[nodes.length];
+		private int size;
+		private T last;
+
+		/**
+		 * @param lower The walk starts after this element, or at the smallest
+		 *              element if it is null
+		 */
+		Walk(T lower) {
+			last = lower;
+			seek();
+		}
+
+		/**
+		 * @return The next element, or null at the end of the tree
+		 */
+		T next() {
+			while (size > 0) {
+				size--;
+				Node<T> node = nodes[size];
+				long version = versions[size];
+				T data = node.data;
+				Node<T> right = node.right;
+				if (node.version != version) {
+					seek();
+					continue;
+				}
+				last = data;
+				if (!descend(node, version, right)) {
+					seek();
+				}
+				return data;
+			}
+			return null;
+		}
+
+		/**
+		 * Fills the stack with the nodes greater than the last element on the
+		 * search path of the last element
+		 */
+		private void seek() {
+			retry: while (true) {
+				size = 0;
+				Node<T> parent = holder;
+				long parentVersion = stableVersion(holder);
+				Node<T> node = holder.right;
+				while (node != null) {
+					long version = stableVersion(node);
+					if (parent.version != parentVersion) {
+						continue retry;
+					}
+					Node<T> next;
+					if (last == null || node.data.compareTo(last) > 0) {
+						push(node, version);
+						next = node.left;
+					} else {
+						next = node.right;
+					}
+					parent = node;
+					parentVersion = version;
+					node = next;
+				}
+				if (parent.version == parentVersion) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Pushes the leftmost path of a subtree
+		 *
+		 * @param parent        The parent of the subtree
+		 * @param parentVersion The version of the parent when the subtree was read
+		 * @param node          The root of the subtree
+		 * @return false if a writer changed one of the nodes
+		 */
+		private boolean descend(Node<T> parent, long parentVersion, Node<T> node) {
+			while (node != null) {
+				long version = stableVersion(node);
+				if (parent.version != parentVersion) {
+					return false;
+				}
+				push(node, version);
+				parent = node;
+				parentVersion = version;
+				node = node.left;
+			}
+			return parent.version == parentVersion;
+		}
+
+		/**
+		 * @param node    A node whose data has not been returned yet
+		 * @param version The version of the node when it was read
+		 */
+		private void push(Node<T> node, long version) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				versions = Arrays.copyOf(versions, size * 2);
+			}
+			nodes[size] = node;
+			versions[size++] = version;
+		}
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return holder.right == null;
+	}
+
+	/**
+	 * The count is exact when no writer is running.
+	 *
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return count.intValue();
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		retry: while (true) {
+			Node<T> parent = holder;
+			long parentVersion = stableVersion(holder);
+			Node<T> node = holder.right;
+			while (node != null) {
+				long version = stableVersion(node);
+				// the node was the child of the parent when its version was read
+				if (parent.version != parentVersion) {
+					continue retry;
+				}
+				int comparison = element.compareTo(node.data);
+				if (comparison == 0) {
+					if (node.version != version) {
+						continue retry;
+					}
+					return true;
+				}
+				parent = node;
+				parentVersion = version;
+				node = comparison < 0 ? node.left : node.right;
+			}
+			if (parent.version == parentVersion) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * A consistent view of the node storing an element
+	 */
+	private static final class Position<T> {
+		final T parent;
+		final int depth;
+		final int balance;
+
+		Position(T parent, int depth, int balance) {
+			this.parent = parent;
+			this.depth = depth;
+			this.balance = balance;
+		}
+	}
+
+	/**
+	 * Searches the element as <code>contains</code> does
+	 *
+	 * @param element Element to be searched
+	 * @return The position of the element, or null if it is not in the tree
+	 */
+	private Position<T> locate(T element) {
+		while (true) {
+			Position<T> position = locate(holder, stableVersion(holder), null, holder.right, 0, element);
+			if (position != null) {
+				return position.depth < 0 ? null : position;
+			}
+		}
+	}
+
+	/**
+	 * Searches the element from a node, validating every node on the way
+	 * down with its version
+	 *
+	 * @param parent        The parent of the node
+	 * @param parentVersion The version of the parent when the node was read
+	 * @param parentData    The element in the parent
+	 * @param node          The node the search starts at
+	 * @param depth         The depth of the node
+	 * @param element       Element to be searched
+	 * @return The position of the element, a position with depth -1 if it is
+	 *         not there, or null if a writer interfered
+	 */
+	private static <T extends Comparable<T>> Position<T> locate(Node<T> parent, long parentVersion, T parentData,
+			Node<T> node, int depth, T element) {
+		while (node != null) {
+			long version = stableVersion(node);
+			// the node was the child of the parent when its version was read
+			if (parent.version != parentVersion) {
+				return null;
+			}
+			T data = node.data;
+			int comparison = element.compareTo(data);
+			if (comparison == 0) {
+				Position<T> position = new Position<>(parentData, depth, height(node.left) - height(node.right));
+				return node.version == version ? position : null;
+			}
+			parent = node;
+			parentVersion = version;
+			parentData = data;
+			node = comparison < 0 ? node.left : node.right;
+			depth++;
+		}
+		return parent.version == parentVersion ? new Position<>(null, -1, 0) : null;
+	}
+
+	/**
+	 * The node where the search paths of two elements part
+	 */
+	private static final class Fork<T> {
+		/** The element in the node, null if both paths end before they part */
+		final T data;
+		final int depth;
+		/** The positions of the elements, null for an element not in the tree */
+		final Position<T> first;
+		final Position<T> second;
+
+		Fork(T data, int depth, Position<T> first, Position<T> second) {
+			this.data = data;
+			this.depth = depth;
+			this.first = first;
+			this.second = second;
+		}
+	}
+
+	/**
+	 * Follows the common search path of the elements to the node where they
+	 * part and searches both elements from there, validating every node as
+	 * <code>locate</code> does. The node is validated again at the end, so
+	 * both elements were found while it was the place where the paths part.
+	 *
+	 * @param element1 The first element
+	 * @param element2 The second element
+	 * @return The node where the paths part and the positions of the elements
+	 */
+	private Fork<T> fork(T element1, T element2) {
+		retry: while (true) {
+			Node<T> parent = holder;
+			long parentVersion = stableVersion(holder);
+			T parentData = null;
+			Node<T> node = holder.right;
+			int depth = 0;
+			while (node != null) {
+				long version = stableVersion(node);
+				if (parent.version != parentVersion) {
+					continue retry;
+				}
+				T data = node.data;
+				int comparison1 = Integer.signum(data.compareTo(element1));
+				int comparison2 = Integer.signum(data.compareTo(element2));
+				if (comparison1 != comparison2 || comparison1 == 0) {
+					Position<T> first = locate(parent, parentVersion, parentData, node, depth, element1);
+					Position<T> second = locate(parent, parentVersion, parentData, node, depth, element2);
+					if (first == null || second == null || node.version != version) {
+						continue retry;
+					}
+					return new Fork<>(data, depth, first.depth < 0 ? null : first, second.depth < 0 ? null : second);
+				}
+				parent = node;
+				parentVersion = version;
+				parentData = data;
+				node = comparison1 > 0 ? node.left : node.right;
+				depth++;
+			}
+			if (parent.version == parentVersion) {
+				return new Fork<>(null, depth, null, null);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(T element) {
+		int index = enter();
+		try {
+			put(element);
+		} finally {
+			exit(index);
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		int index = enter();
+		try {
+			remove(element);
+		} finally {
+			exit(index);
+		}
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree in ascending order
+	 * <p>
+	 * Other writers are kept out during the batch and it counts as one running
+	 * writer, so the readers of larger parts of the tree see either none or all
+	 * of it.
+	 *
+	 * @param elements Elements to be added
+	 */
+	@SuppressWarnings("unchecked")
+	public void insertAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		long stamp = close(true);
+		int index = begin();
+		try {
+			for (Object element : batch) {
+				put((T) element);
+			}
+		} finally {
+			exit(index);
+			open(stamp);
+		}
+	}
+
+	/**
+	 * Deletes all the elements in the parameter in ascending order
+	 * <p>
+	 * Other writers are kept out during the batch and it counts as one running
+	 * writer, so the readers of larger parts of the tree see either none or all
+	 * of it.
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	@SuppressWarnings("unchecked")
+	public void deleteAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		Arrays.sort(batch);
+		long stamp = close(true);
+		int index = begin();
+		try {
+			for (Object element : batch) {
+				remove((T) element);
+			}
+		} finally {
+			exit(index);
+			open(stamp);
+		}
+	}
+
+	/**
+	 * Inserts the element with hand-over-hand locking. The nodes above the
+	 * parent of the deepest node leaning to one side are released, since the
+	 * insertion either balances that node or rotates it back to its height.
+	 *
+	 * @param element Element to be added
+	 * @return true if the element was not in the tree
+	 */
+	private boolean put(T element) {
+		Node<T>[] path = paths.get();
+		lock(holder);
+		path[0] = holder;
+		int top = 0;
+		int depth = 1;
+		// the root hangs on the right of the holder
+		int comparison = 1;
+		Node<T> node = holder.right;
+		while (node != null) {
+			lock(node);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+				paths.set(path);
+			}
+			path[depth++] = node;
+			comparison = element.compareTo(node.data);
+			if (comparison == 0) {
+				finish(path, top, depth);
+				return false;
+			}
+			if (height(node.left) != height(node.right)) {
+				unlock(path, top, depth - 2);
+				top = depth - 2;
+			}
+			node = comparison < 0 ? node.left : node.right;
+		}
+		Node<T> parent = path[depth - 1];
+		Node<T> leaf = new Node<>(element);
+		beginChange(parent);
+		if (comparison < 0) {
+			parent.left = leaf;
+		} else {
+			parent.right = leaf;
+		}
+		endChange(parent);
+		count.increment();
+		rebalance(path, top, depth - 1);
+		finish(path, top, depth);
+		return true;
+	}
+
+	/**
+	 * Deletes the element with hand-over-hand locking. The nodes above a
+	 * balanced node are released, since its height does not change when one
+	 * of its subtrees gets shorter. A node with two children is replaced by
+	 * its successor, so every node between them is kept locked.
+	 *
+	 * @param element Element to be deleted
+	 * @return true if the element was in the tree
+	 */
+	private boolean remove(T element) {
+		Node<T>[] path = paths.get();
+		lock(holder);
+		path[0] = holder;
+		int top = 0;
+		int depth = 1;
+		int target = -1;
+		Node<T> node = holder.right;
+		while (true) {
+			if (node == null) {
+				finish(path, top, depth);
+				return false;
+			}
+			lock(node);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+				paths.set(path);
+			}
+			path[depth++] = node;
+			Node<T> next;
+			if (target >= 0) {
+				// walking down to the successor
+				next = node.left;
+			} else {
+				int comparison = element.compareTo(node.data);
+				if (comparison == 0) {
+					target = depth - 1;
+					next = node.left == null ? null : node.right;
+				} else {
+					next = comparison < 0 ? node.left : node.right;
+				}
+			}
+			if (next == null && target >= 0) {
+				break;
+			}
+			if (next != null && (target < 0 || target == depth - 1) && height(node.left) == height(node.right)) {
+				unlock(path, top, depth - 1);
+				top = depth - 1;
+			}
+			node = next;
+		}
+		int last = depth - 1;
+		Node<T> removed = path[last];
+		Node<T> parent = path[last - 1];
+		Node<T> child = removed.left != null ? removed.left : removed.right;
+		// the successor leaves the subtrees of the nodes between it and the target
+		int first = Math.min(target, last - 1);
+		for (int i = first; i <= last; i++) {
+			beginChange(path[i]);
+		}
+		if (target != last) {
+			path[target].data = removed.data;
+		}
+		if (parent.left == removed) {
+			parent.left = child;
+		} else {
+			parent.right = child;
+		}
+		for (int i = first; i <= last; i++) {
+			endChange(path[i]);
+		}
+		count.decrement();
+		rebalance(path, top, last - 1);
+		finish(path, top, depth);
+		return true;
+	}
+
+	/**
+	 * Fixes the heights and the balance from path[from] up to the child of
+	 * path[top], stopping at the first subtree whose height did not change
+	 *
+	 * @param path The locked path of the writer
+	 * @param top  Index of the highest locked node
+	 * @param from Index of the lowest node whose subtree has changed
+	 */
+	private void rebalance(Node<T>[] path, int top, int from) {
+		for (int i = from; i > top; i--) {
+			Node<T> node = path[i];
+			int height = node.height;
+			if (balance(path, i).height == height) {
+				return;
+			}
+		}
+		if (top > 0) {
+			// the height of a child changed, so the balance factor did
+			beginChange(path[top]);
+			endChange(path[top]);
+		}
+	}
+
+	/**
+	 * Balances path[i] and replaces it in its parent path[i - 1]
+	 *
+	 * @param path The locked path of the writer
+	 * @param i    Index of the node to be balanced
+	 * @return The new root of the subtree
+	 */
+	private Node<T> balance(Node<T>[] path, int i) {
+		Node<T> node = path[i];
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			Node<T> child = node.left;
+			if (height(child.left) >= height(child.right)) {
+				return rotate(path, i, child, null);
+			}
+			return rotate(path, i, child, child.right);
+		} else if (balance < -1) {
+			Node<T> child = node.right;
+			if (height(child.right) >= height(child.left)) {
+				return rotate(path, i, child, null);
+			}
+			return rotate(path, i, child, child.left);
+		}
+		beginChange(node);
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		endChange(node);
+		return node;
+	}
+
+	/**
+	 * Rotates the taller child of path[i] above it, or the inner grandchild
+	 * above both of them. The nodes that are not on the locked path are
+	 * locked for the rotation.
+	 *
+	 * @param path       The locked path of the writer
+	 * @param i          Index of the unbalanced node
+	 * @param child      The taller child
+	 * @param grandchild The inner child of the taller child for a double rotation, or null
+	 * @return The new root of the subtree
+	 */
+	private Node<T> rotate(Node<T>[] path, int i, Node<T> child, Node<T> grandchild) {
+		Node<T> parent = path[i - 1];
+		Node<T> node = path[i];
+		boolean childLocked = i + 1 < path.length && path[i + 1] == child;
+		if (!childLocked) {
+			lock(child);
+		}
+		boolean grandchildLocked = grandchild == null || childLocked && i + 2 < path.length && path[i + 2] == grandchild;
+		if (!grandchildLocked) {
+			lock(grandchild);
+		}
+		Node<T> top = grandchild == null ? child : grandchild;
+		beginChange(parent);
+		beginChange(node);
+		beginChange(child);
+		if (grandchild != null) {
+			beginChange(grandchild);
+		}
+		boolean right = node.left == child;
+		if (grandchild == null) {
+			if (right) {
+				node.left = child.right;
+				child.right = node;
+			} else {
+				node.right = child.left;
+				child.left = node;
+			}
+		} else if (right) {
+			child.right = grandchild.left;
+			node.left = grandchild.right;
+			grandchild.left = child;
+			grandchild.right = node;
+		} else {
+			child.left = grandchild.right;
+			node.right = grandchild.left;
+			grandchild.right = child;
+			grandchild.left = node;
+		}
+		node.height = Math.max(height(node.left), height(node.right)) + 1;
+		if (grandchild != null) {
+			child.height = Math.max(height(child.left), height(child.right)) + 1;
+		}
+		top.height = Math.max(height(top.left), height(top.right)) + 1;
+		if (parent.left == node) {
+			parent.left = top;
+		} else {
+			parent.right = top;
+		}
+		if (grandchild != null) {
+			endChange(grandchild);
+		}
+		endChange(child);
+		endChange(node);
+		endChange(parent);
+		if (!grandchildLocked) {
+			grandchild.locked = 0;
+		}
+		if (!childLocked) {
+			child.locked = 0;
+		}
+		return top;
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		while (true) {
+			long holderVersion = stableVersion(holder);
+			Node<T> root = holder.right;
+			if (root == null) {
+				if (holder.version == holderVersion) {
+					return 0;
+				}
+				continue;
+			}
+			long version = stableVersion(root);
+			int height = root.height;
+			if (holder.version == holderVersion && root.version == version) {
+				return height;
+			}
+		}
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 * The returned list is a consistent copy of the tree at some moment,
+	 * unless writers kept interfering, then the elements are walked over
+	 * without a lock.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		return read((root, guard) -> {
+			ArrayList<T> list = new ArrayList<>();
+			ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+			Node<T> node = root;
+			while (node != null || !stack.isEmpty()) {
+				while (node != null) {
+					guard.step();
+					stack.push(node);
+					node = node.left;
+				}
+				node = stack.pop();
+				list.add(node.data);
+				node = node.right;
+			}
+			return list;
+		}, () -> walk(null, walk -> {
+			ArrayList<T> list = new ArrayList<>();
+			for (T element = walk.next(); element != null; element = walk.next()) {
+				list.add(element);
+			}
+			return list;
+		}));
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 * The returned list is a consistent copy of the tree at some moment.
+	 * The order depends on the shape of the tree, which only a consistent
+	 * copy has, so writers are kept out if they kept interfering with it.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		Reader<T, ArrayList<T>> reader = (root, guard) -> {
+			ArrayList<T> list = new ArrayList<>();
+			ArrayDeque<Node<T>> queue = new ArrayDeque<>();
+			if (root != null) {
+				queue.add(root);
+			}
+			while (!queue.isEmpty()) {
+				guard.step();
+				Node<T> node = queue.poll();
+				list.add(node.data);
+				Node<T> left = node.left, right = node.right;
+				if (left != null) {
+					queue.add(left);
+				}
+				if (right != null) {
+					queue.add(right);
+				}
+			}
+			return list;
+		};
+		return read(reader, () -> readClosed(reader));
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		Fork<T> fork = fork(element1, element2);
+		// under a common parent both elements would be one level below the fork
+		return fork.first != null && fork.second != null && fork.first.depth == fork.second.depth
+				&& fork.first.depth - fork.depth >= 2;
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		Position<T> position = locate(element);
+		return position == null ? -1 : position.depth;
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		Position<T> position = locate(element);
+		return position == null ? null : position.parent;
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		Fork<T> fork = fork(element1, element2);
+		return fork.first != null && fork.second != null ? fork.data : null;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @param guard   The guard of the read
+	 * @return true if the element is in the subtree of the node
+	 */
+	private static <T extends Comparable<T>> boolean containedBelow(Node<T> node, T element, Guard guard) {
+		while (node != null) {
+			guard.step();
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return true;
+			}
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		return read((root, guard) -> countBetween(root, lower, upper, guard),
+				() -> walk(lower, walk -> countBefore(walk, upper)));
+	}
+
+	/**
+	 * Counts the elements between the bounds by walking over them in order
+	 *
+	 * @param root  The root of the tree
+	 * @param lower The lower limit (not inclusive), or null for no limit
+	 * @param upper The upper limit (not inclusive)
+	 * @param guard The guard of the read
+	 * @return The number of elements within the range
+	 */
+	private static <T extends Comparable<T>> int countBetween(Node<T> root, T lower, T upper, Guard guard) {
+		int count = 0;
+		ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		Node<T> node = root;
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				guard.step();
+				if (lower == null || node.data.compareTo(lower) > 0) {
+					stack.push(node);
+					node = node.left;
+				} else {
+					node = node.right;
+				}
+			}
+			if (stack.isEmpty()) {
+				// no element left above the lower limit
+				break;
+			}
+			node = stack.pop();
+			if (node.data.compareTo(upper) >= 0) {
+				break;
+			}
+			count++;
+			node = node.right;
+		}
+		return count;
+	}
+
+	/**
+	 * @param walk  A walk starting after the lower limit
+	 * @param upper The upper limit (not inclusive)
+	 * @return The number of elements the walk returns below the upper limit
+	 */
+	private int countBefore(Walk walk, T upper) {
+		int count = 0;
+		for (T element = walk.next(); element != null && element.compareTo(upper) < 0; element = walk.next()) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data
+	 */
+	public int balanceFactor(T data) {
+		Position<T> position = locate(data);
+		return position == null ? 0 : position.balance;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return read((root, guard) -> countBetween(root, null, element, guard),
+				() -> walk(null, walk -> countBefore(walk, element)));
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		return read((root, guard) -> containedBelow(root, element, guard) ? countBetween(root, null, element, guard) : -1,
+				() -> contains(element) ? walk(null, walk -> countBefore(walk, element)) : -1);
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		int[] size = new int[1];
+		T element = read((root, guard) -> {
+			int position = 0;
+			ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+			Node<T> node = root;
+			while (node != null || !stack.isEmpty()) {
+				while (node != null) {
+					guard.step();
+					stack.push(node);
+					node = node.left;
+				}
+				node = stack.pop();
+				if (position++ == index) {
+					return node.data;
+				}
+				node = node.right;
+			}
+			size[0] = position;
+			return null;
+		}, () -> walk(null, walk -> {
+			int position = 0;
+			for (T next = walk.next(); next != null; next = walk.next()) {
+				if (position++ == index) {
+					return next;
+				}
+			}
+			size[0] = position;
+			return null;
+		}));
+		if (element == null) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size[0]);
+		}
+		return element;
+	}
+}
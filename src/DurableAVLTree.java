@@ -0,0 +1,749 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An AVL tree whose changes survive a crash of the process.
+ * <p>
+ * Every insert and delete is applied to an in memory {@link AVLTree} and
+ * appended to a write-ahead log. A change call returns only after its log
+ * record is forced to the disk. The records of all the threads that wait
+ * at the same time are written together and share a single force (group
+ * commit), and an optional commit window makes a group wait for more
+ * records. A change is visible to readers as soon as it is applied, which
+ * may be before it is durable.
+ * <p>
+ * The log is split into numbered segment files. When a segment grows
+ * beyond a limit, a new one is started and a background thread replays the
+ * finished segments on top of the last checkpoint and writes a new
+ * checkpoint with {@link AVLTree#writeSnapshot}. The checkpoint is built
+ * from the files only, so the tree itself is never copied or locked for it.
+ * On startup the last checkpoint is read and the segments after it are
+ * replayed.
+ * <p>
+ * The directory contains:
+ * <ul>
+ * <li><code>checkpoint</code>: the number of the first segment not in the
+ * checkpoint followed by a snapshot of the tree</li>
+ * <li><code>wal-&lt;n&gt;.log</code>: log segments, each record being its
+ * length, its CRC32, the operation and the encoded element</li>
+ * </ul>
+ */
+public class DurableAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T>, Closeable {
+
+	/**
+	 * Default size of a log segment after which a checkpoint is started
+	 */
+	public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+	private static final String CHECKPOINT = "checkpoint";
+	private static final String CHECKPOINT_TEMP = "checkpoint.tmp";
+	private static final String LOG_PREFIX = "wal-";
+	private static final String LOG_SUFFIX = ".log";
+	private static final int RECORD_HEADER = 8; // length and checksum of a record
+	private static final byte INSERT = 1;
+	private static final byte DELETE = 2;
+
+	private final Path directory;
+	private final KeyCodec<T> codec;
+	private final long commitWindowNanos;
+	private final long checkpointBytes;
+	private final ConcurrentAVLTree<T> tree;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition pending = lock.newCondition(); // records to commit or a checkpoint request
+	private final Condition durable = lock.newCondition(); // a group has been committed
+	private final CRC32 checksum = new CRC32();
+	private ByteBuffer records = ByteBuffer.allocate(1 << 16); // appended records not written yet
+	private long appendedSequence; // number of appended changes
+	private long durableSequence; // number of changes forced to the disk
+	private boolean checkpointRequested;
+	private boolean closed;
+	private IOException failure; // stops all the changes once the log cannot be written
+
+	// owned by the committer thread after the constructor
+	private FileChannel log;
+	private long generation; // number of the current log segment
+	private long logBytes; // size of the current log segment
+	private Future<?> checkpoint; // the last started checkpoint
+
+	private final Thread committer;
+	private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "DurableAVLTree checkpointer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Opens the tree in the directory with a commit window of zero and the
+	 * default checkpoint size
+	 *
+	 * @see #DurableAVLTree(Path, KeyCodec, long, long)
+	 */
+	public DurableAVLTree(Path directory, KeyCodec<T> codec) throws IOException {
+		this(directory, codec, 0, DEFAULT_CHECKPOINT_BYTES);
+	}
+
+	/**
+	 * Opens the tree in the directory, creating the directory if it does
+	 * not exist. The last checkpoint is read and the log after it is
+	 * replayed, and a record cut by a crash at the end of a segment is
+	 * dropped.
+	 *
+	 * @param directory         The directory of the checkpoint and the log
+	 * @param codec             Writes and reads the elements
+	 * @param commitWindowNanos How long a group waits for more records before it is forced
+	 * @param checkpointBytes   Size of a log segment after which a checkpoint is started
+	 * @throws IOException if the files cannot be read or written
+	 */
+	public DurableAVLTree(Path directory, KeyCodec<T> codec, long commitWindowNanos, long checkpointBytes)
+			throws IOException {
+		this.directory = directory;
+		this.codec = codec;
+		this.commitWindowNanos = commitWindowNanos;
+		this.checkpointBytes = checkpointBytes;
+		Files.createDirectories(directory);
+		Files.deleteIfExists(directory.resolve(CHECKPOINT_TEMP));
+		long[] first = new long[1];
+		AVLTree<T> state = readCheckpoint(first);
+		generation = first[0];
+		for (long segment : segments()) {
+			if (segment < first[0]) {
+				// already in the checkpoint, left over by a crash during a checkpoint
+				Files.delete(segment(segment));
+			} else {
+				replay(segment, state, true);
+				generation = segment + 1;
+			}
+		}
+		tree = new ConcurrentAVLTree<>(state);
+		log = FileChannel.open(segment(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		committer = new Thread(this::commit, "DurableAVLTree committer");
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	/**
+	 * @param generation The number of a log segment
+	 * @return The file of the segment
+	 */
+	private Path segment(long generation) {
+		return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+	}
+
+	/**
+	 * @return The numbers of the log segments in the directory in ascending order
+	 */
+	private List<Long> segments() throws IOException {
+		List<Long> segments = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.add(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())));
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/**
+	 * Reads the last checkpoint
+	 *
+	 * @param first Receives the number of the first segment not in the checkpoint
+	 * @return The tree in the checkpoint, or an empty tree if there is no checkpoint
+	 */
+	private AVLTree<T> readCheckpoint(long[] first) throws IOException {
+		Path file = directory.resolve(CHECKPOINT);
+		if (!Files.exists(file)) {
+			first[0] = 0;
+			return new AVLTree<>();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new IOException("Truncated checkpoint");
+				}
+			}
+			first[0] = header.getLong(0);
+			return AVLTree.readSnapshot(channel, codec);
+		}
+	}
+
+	/**
+	 * Applies the records of a log segment to the tree. Reading stops at the
+	 * first record that is incomplete or has a wrong checksum.
+	 *
+	 * @param generation The number of the segment
+	 * @param state      The tree the records are applied to
+	 * @param truncate   Whether the segment is cut after its last valid record
+	 */
+	private void replay(long generation, AVLTree<T> state, boolean truncate) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment(generation), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Log segment is too large: " + segment(generation));
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			CRC32 crc = new CRC32();
+			int valid = 0;
+			while (buffer.remaining() >= RECORD_HEADER) {
+				int length = buffer.getInt();
+				int expected = buffer.getInt();
+				if (length < 1 || length > buffer.remaining()) {
+					break;
+				}
+				ByteBuffer record = buffer.slice();
+				record.limit(length);
+				crc.reset();
+				crc.update(record.duplicate());
+				if ((int) crc.getValue() != expected) {
+					break;
+				}
+				byte operation = record.get();
+				T element = codec.decode(record);
+				if (operation == INSERT) {
+					state.insert(element);
+				} else if (operation == DELETE) {
+					state.delete(element);
+				} else {
+					break;
+				}
+				buffer.position(buffer.position() + length);
+				valid = buffer.position();
+			}
+			if (truncate && valid < size) {
+				channel.truncate(valid);
+				channel.force(true);
+			}
+		}
+	}
+
+	/**
+	 * Appends a record to the records waiting for the committer.
+	 * Called while holding the lock.
+	 *
+	 * @param operation INSERT or DELETE
+	 * @param element   The changed element
+	 */
+	private void append(byte operation, T element) {
+		int length = 1 + codec.encodedSize(element);
+		if (records.remaining() < RECORD_HEADER + length) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * records.capacity(), records.position() + RECORD_HEADER + length));
+			records.flip();
+			larger.put(records);
+			records = larger;
+		}
+		int start = records.position();
+		records.putInt(length);
+		records.putInt(0);
+		records.put(operation);
+		codec.encode(element, records);
+		checksum.reset();
+		checksum.update(records.array(), records.arrayOffset() + start + RECORD_HEADER, length);
+		records.putInt(start + Integer.BYTES, (int) checksum.getValue());
+	}
+
+	/**
+	 * Logs and applies a batch of changes and waits until they are durable
+	 *
+	 * @param operation INSERT or DELETE
+	 * @param elements  The changed elements
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	private void change(byte operation, Collection<? extends T> elements) {
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("The tree is closed");
+			}
+			checkFailure();
+			for (T element : elements) {
+				append(operation, element);
+			}
+			// the tree is changed in the order of the log
+			if (operation == INSERT) {
+				tree.insertAll(elements);
+			} else {
+				tree.deleteAll(elements);
+			}
+			long sequence = ++appendedSequence;
+			pending.signal();
+			while (durableSequence < sequence && failure == null) {
+				durable.awaitUninterruptibly();
+			}
+			checkFailure();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @throws UncheckedIOException if the log could not be written
+	 */
+	private void checkFailure() {
+		if (failure != null) {
+			throw new UncheckedIOException("The log cannot be written", failure);
+		}
+	}
+
+	/**
+	 * The loop of the committer thread. It waits for records, lets the
+	 * commit window pass, writes and forces all the waiting records and
+	 * wakes up their writers. Afterwards it starts a checkpoint if the
+	 * segment is large enough or one was requested.
+	 */
+	private void commit() {
+		ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+		while (true) {
+			lock.lock();
+			try {
+				while (appendedSequence == durableSequence && !checkpointRequested && !closed) {
+					pending.awaitUninterruptibly();
+				}
+				if (appendedSequence == durableSequence && !checkpointRequested) {
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (commitWindowNanos > 0) {
+				LockSupport.parkNanos(commitWindowNanos);
+			}
+			long sequence;
+			lock.lock();
+			try {
+				ByteBuffer full = records;
+				records = writing;
+				writing = full;
+				sequence = appendedSequence;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				writing.flip();
+				if (writing.hasRemaining()) {
+					logBytes += writing.remaining();
+					while (writing.hasRemaining()) {
+						log.write(writing);
+					}
+					log.force(false);
+				}
+				writing.clear();
+				boolean start;
+				lock.lock();
+				try {
+					durableSequence = sequence;
+					durable.signalAll();
+					start = checkpointRequested || (logBytes >= checkpointBytes && (checkpoint == null || checkpoint.isDone()));
+				} finally {
+					lock.unlock();
+				}
+				if (start) {
+					startCheckpoint();
+				}
+			} catch (IOException e) {
+				lock.lock();
+				try {
+					failure = e;
+					checkpointRequested = false;
+					durable.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts a new log segment and a checkpoint of the finished segments.
+	 * Called by the committer thread.
+	 */
+	private void startCheckpoint() throws IOException {
+		log.close();
+		generation++;
+		log = FileChannel.open(segment(generation), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		logBytes = 0;
+		long first = generation;
+		Future<?> started = checkpointer.submit(() -> {
+			writeCheckpoint(first);
+			return null;
+		});
+		lock.lock();
+		try {
+			checkpoint = started;
+			checkpointRequested = false;
+			durable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Replays the segments before <code>first</code> on the last checkpoint,
+	 * replaces the checkpoint with the result and deletes those segments.
+	 * Called by the checkpointer thread.
+	 *
+	 * @param first The number of the first segment not in the new checkpoint
+	 */
+	private void writeCheckpoint(long first) throws IOException {
+		long[] start = new long[1];
+		AVLTree<T> state = readCheckpoint(start);
+		for (long segment : segments()) {
+			if (segment >= start[0] && segment < first) {
+				replay(segment, state, false);
+			}
+		}
+		Path temp = directory.resolve(CHECKPOINT_TEMP);
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+			header.putLong(0, first);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			state.writeSnapshot(channel, codec);
+			channel.force(true);
+		}
+		Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		for (long segment : segments()) {
+			if (segment < first) {
+				Files.delete(segment(segment));
+			}
+		}
+	}
+
+	/**
+	 * Writes a checkpoint of all the changes made so far and waits for it.
+	 * The log segments in the checkpoint are deleted afterwards.
+	 *
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public void checkpoint() throws IOException {
+		Future<?> started;
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("The tree is closed");
+			}
+			checkpointRequested = true;
+			pending.signal();
+			while (checkpointRequested && failure == null) {
+				durable.awaitUninterruptibly();
+			}
+			if (failure != null) {
+				throw new IOException("The log cannot be written", failure);
+			}
+			started = checkpoint;
+		} finally {
+			lock.unlock();
+		}
+		await(started);
+	}
+
+	/**
+	 * Waits for a checkpoint
+	 *
+	 * @param started The checkpoint, or null
+	 * @throws IOException if the checkpoint failed
+	 */
+	private static void await(Future<?> started) throws IOException {
+		if (started == null) {
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					started.get();
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException("Checkpoint failed", e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Commits the waiting changes, waits for a running checkpoint and closes
+	 * the log. The tree cannot be changed afterwards.
+	 *
+	 * @throws IOException if the log could not be written or the checkpoint failed
+	 */
+	public void close() throws IOException {
+		Future<?> started;
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+		boolean interrupted = false;
+		while (committer.isAlive()) {
+			try {
+				committer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		started = checkpoint;
+		try {
+			await(started);
+		} finally {
+			checkpointer.shutdown();
+			log.close();
+		}
+		if (failure != null) {
+			throw new IOException("The log cannot be written", failure);
+		}
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return tree.isEmpty();
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return tree.size();
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		return tree.contains(element);
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree and waits
+	 * until the change is durable
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public void insert(T element) {
+		change(INSERT, Collections.singletonList(element));
+	}
+
+	/**
+	 * Deletes the element in the parameter and waits
+	 * until the change is durable
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public void delete(T element) {
+		change(DELETE, Collections.singletonList(element));
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree and waits
+	 * until the changes are durable. The batch is committed in one group.
+	 *
+	 * @param elements Elements to be added
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public void insertAll(Collection<? extends T> elements) {
+		change(INSERT, elements);
+	}
+
+	/**
+	 * Deletes all the elements in the parameter and waits until the
+	 * changes are durable. The batch is committed in one group.
+	 *
+	 * @param elements Elements to be deleted
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public void deleteAll(Collection<? extends T> elements) {
+		change(DELETE, elements);
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return tree.height();
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		return tree.inOrderTraversal();
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		return tree.bfTraverse();
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		return tree.areCousins(element1, element2);
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		return tree.depthOf(element);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		return tree.parentOf(element);
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		return tree.lowestCommonAncestor(element1, element2);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		return tree.numElementsInRange(lower, upper);
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data
+	 */
+	public int balanceFactor(T data) {
+		return tree.balanceFactor(data);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return tree.countLessThan(element);
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		return tree.rank(element);
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		return tree.select(index);
+	}
+}
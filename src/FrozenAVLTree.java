@@ -0,0 +1,223 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable sorted set made by {@link AVLTree#freeze()} for tables that
+ * are only read after they are loaded.
+ * <p>
+ * The elements are stored in one array in the breadth first order of a
+ * complete binary search tree (the Eytzinger layout): the children of
+ * position k are at 2k and 2k + 1, and position 0 is not used. The top
+ * levels of every search share the first few cache lines of the array, and
+ * the search needs no pointers at all. The descent has no data dependent
+ * branch: the next position is computed from the sign of the comparison,
+ * and the result is read from the trailing bits of the final position.
+ * <p>
+ * The rank of each position is kept in a second array for rank and
+ * range counts.
+ */
+public class FrozenAVLTree<T extends Comparable<T>> implements Iterable<T> {
+
+	private final Object[] keys; // keys[k] has the children keys[2k] and keys[2k + 1], keys[0] is unused
+	private final int[] ranks; // ranks[k] is the position of keys[k] in ascending order
+	private final int size;
+
+	/**
+	 * @param sorted The distinct elements in ascending order
+	 */
+	FrozenAVLTree(Object[] sorted) {
+		size = sorted.length;
+		keys = new Object[size + 1];
+		ranks = new int[size + 1];
+		// the positions of the complete tree visited in order receive the elements in order
+		int k = first(size);
+		for (int i = 0; i < size; i++) {
+			keys[k] = sorted[i];
+			ranks[k] = i;
+			k = next(k, size);
+		}
+	}
+
+	/**
+	 * @param size Number of elements
+	 * @return The position of the smallest element, or 0 if there is none
+	 */
+	static int first(int size) {
+		if (size == 0) {
+			return 0;
+		}
+		int k = 1;
+		while (2 * k <= size) {
+			k = 2 * k;
+		}
+		return k;
+	}
+
+	/**
+	 * @param k    A position of the layout
+	 * @param size Number of elements
+	 * @return The position of the next element in ascending order, or 0 if k is the last one
+	 */
+	static int next(int k, int size) {
+		if (2 * k + 1 <= size) {
+			// the leftmost position of the right subtree
+			k = 2 * k + 1;
+			while (2 * k <= size) {
+				k = 2 * k;
+			}
+			return k;
+		}
+		// up to the first ancestor whose left subtree contains k
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * @param k A position of the layout
+	 * @return The key at the position
+	 */
+	@SuppressWarnings("unchecked")
+	private T key(int k) {
+		return (T) keys[k];
+	}
+
+	/**
+	 * Finds the first element not less than (or greater than) the given one
+	 *
+	 * @param element   The searched element
+	 * @param inclusive Whether elements equal to <code>element</code> are skipped
+	 * @return The position of the element found, or 0 if there is none
+	 */
+	private int lowerBound(T element, boolean inclusive) {
+		int k = 1;
+		if (inclusive) {
+			while (k <= size) {
+				k = 2 * k + (key(k).compareTo(element) <= 0 ? 1 : 0);
+			}
+		} else {
+			while (k <= size) {
+				// the sign bit of the comparison is 1 if the key is smaller
+				k = 2 * k + (key(k).compareTo(element) >>> 31);
+			}
+		}
+		// every step to the right after the last step to the left is undone
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of elements in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		int k = lowerBound(element, false);
+		return k != 0 && key(k).compareTo(element) == 0;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(T element, boolean inclusive) {
+		int k = lowerBound(element, inclusive);
+		return k == 0 ? size : ranks[k];
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		int k = lowerBound(element, false);
+		return k != 0 && key(k).compareTo(element) == 0 ? ranks[k] : -1;
+	}
+
+	/**
+	 * Returns an iterator that visits the elements in ascending order
+	 * without any extra memory.
+	 *
+	 * @return An in order iterator over the elements
+	 */
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int k = first(size);
+
+			public boolean hasNext() {
+				return k != 0;
+			}
+
+			public T next() {
+				if (k == 0) {
+					throw new NoSuchElementException();
+				}
+				T element = key(k);
+				k = FrozenAVLTree.next(k, size);
+				return element;
+			}
+		};
+	}
+
+	/**
+	 * Builds a mutable tree of the elements in linear time.
+	 * The frozen tree is not changed.
+	 *
+	 * @return A new AVLTree with the same elements
+	 */
+	@SuppressWarnings("unchecked")
+	public AVLTree<T> thaw() {
+		T[] sorted = (T[]) new Comparable<?>[size];
+		int i = 0;
+		for (T element : this) {
+			sorted[i++] = element;
+		}
+		return AVLTree.fromSorted(sorted);
+	}
+}
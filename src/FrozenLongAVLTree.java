@@ -0,0 +1,205 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable set of <code>long</code> keys made by {@link LongAVLTree#freeze()}.
+ * <p>
+ * The keys are stored in a <code>long[]</code> in the Eytzinger layout
+ * described in {@link FrozenAVLTree}. With primitive keys the comparison
+ * in the descent is a single instruction, which the JIT compiles to a
+ * conditional move, so a search has no data dependent branch and touches
+ * only the array.
+ * <p>
+ * Java has no prefetch instruction, so the search reads the key four levels
+ * below the current position as it goes. The read does not hold up the
+ * comparisons, and when the search gets there the cache line is already
+ * loaded. This makes the layout faster than a binary search in a sorted
+ * array once the keys do not fit in the cache.
+ */
+public class FrozenLongAVLTree {
+
+	/**
+	 * The first of the 16 descendants of position k four levels below is at
+	 * 16k. Those 16 keys are next to each other and fill two 64 byte cache lines, so
+	 * the search loads the keys it needs four steps later while it compares
+	 * at this level.
+	 */
+	private static final int PREFETCH_DISTANCE = 16;
+
+	private final long[] keys; // keys[k] has the children keys[2k] and keys[2k + 1], keys[0] is unused
+	private final int[] ranks; // ranks[k] is the position of keys[k] in ascending order
+	private final int size;
+	private final int prefetchLimit; // the last position whose descendants four levels below are loaded ahead
+	private long sink; // written only to keep the loads ahead of the search alive
+
+	/**
+	 * @param sorted The distinct keys in ascending order
+	 */
+	FrozenLongAVLTree(long[] sorted) {
+		size = sorted.length;
+		prefetchLimit = size / PREFETCH_DISTANCE;
+		keys = new long[size + 1];
+		ranks = new int[size + 1];
+		int k = FrozenAVLTree.first(size);
+		for (int i = 0; i < size; i++) {
+			keys[k] = sorted[i];
+			ranks[k] = i;
+			k = FrozenAVLTree.next(k, size);
+		}
+	}
+
+	/**
+	 * Finds the first key not less than (or greater than) the given one
+	 *
+	 * @param element   The searched key
+	 * @param inclusive Whether keys equal to <code>element</code> are skipped
+	 * @return The position of the key found, or 0 if there is none
+	 */
+	private int lowerBound(long element, boolean inclusive) {
+		int k = 1;
+		long prefetched = 0;
+		if (inclusive) {
+			while (k <= size) {
+				prefetched += keys[k <= prefetchLimit ? PREFETCH_DISTANCE * k : 0];
+				k = 2 * k + (keys[k] <= element ? 1 : 0);
+			}
+		} else {
+			while (k <= size) {
+				prefetched += keys[k <= prefetchLimit ? PREFETCH_DISTANCE * k : 0];
+				k = 2 * k + (keys[k] < element ? 1 : 0);
+			}
+		}
+		if (size < 0) {
+			// never true, but keeps the loads above from being removed
+			sink = prefetched;
+		}
+		// every step to the right after the last step to the left is undone
+		return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of keys in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the key in the parameter
+	 * is in the tree
+	 *
+	 * @param element Key to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(long element) {
+		int k = lowerBound(element, false);
+		return k != 0 && keys[k] == element;
+	}
+
+	/**
+	 * Returns the number of keys in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 *
+	 * @param lower the lower limit (not inclusive)
+	 * @param upper the upper limit (not inclusive)
+	 * @return the number of keys within the range
+	 */
+	public int numElementsInRange(long lower, long upper) {
+		if (lower >= upper) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the number of keys in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of keys smaller than <code>element</code>
+	 */
+	public int countLessThan(long element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the keys less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether a key equal to the limit is counted
+	 * @return The number of keys below the limit
+	 */
+	private int countLessThan(long element, boolean inclusive) {
+		int k = lowerBound(element, inclusive);
+		return k == 0 ? size : ranks[k];
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the key whose rank is requested
+	 * @return the rank of the key, or -1 if it is not in the tree
+	 */
+	public int rank(long element) {
+		int k = lowerBound(element, false);
+		return k != 0 && keys[k] == element ? ranks[k] : -1;
+	}
+
+	/**
+	 * Returns an iterator that visits the keys in ascending order
+	 * without boxing them.
+	 *
+	 * @return An in order iterator over the keys
+	 */
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+			private int k = FrozenAVLTree.first(size);
+
+			public boolean hasNext() {
+				return k != 0;
+			}
+
+			public long nextLong() {
+				if (k == 0) {
+					throw new NoSuchElementException();
+				}
+				long element = keys[k];
+				k = FrozenAVLTree.next(k, size);
+				return element;
+			}
+		};
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An array that stores the keys in ascending order
+	 */
+	public long[] inOrderTraversal() {
+		long[] sorted = new long[size];
+		int k = FrozenAVLTree.first(size);
+		for (int i = 0; i < size; i++) {
+			sorted[i] = keys[k];
+			k = FrozenAVLTree.next(k, size);
+		}
+		return sorted;
+	}
+
+	/**
+	 * Builds a mutable tree of the keys in linear time.
+	 * The frozen tree is not changed.
+	 *
+	 * @return A new LongAVLTree with the same keys
+	 */
+	public LongAVLTree thaw() {
+		return LongAVLTree.fromSorted(inOrderTraversal());
+	}
+}
@@ -0,0 +1,564 @@
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of closed intervals on an AVL tree, for stabbing queries (the
+ * intervals that contain a point) and overlap queries (the intervals that
+ * intersect a range).
+ * <p>
+ * The intervals are ordered by their lower endpoints, then by their upper
+ * endpoints, and balanced the same way as {@link AVLTree}. Each node also
+ * keeps the largest upper endpoint in its subtree, which is recalculated
+ * whenever a child of the node changes, so also in the rotations. A query
+ * skips every subtree whose largest upper endpoint is below the range and
+ * stops at the first interval that starts after the range.
+ * <p>
+ * A query that reports k intervals costs O(log n + k log n) in the worst
+ * case, not O(log n + k). The largest upper endpoint of a subtree only tells
+ * that some interval in it reaches the range, not which one, so the walk may
+ * go down O(log n) levels to each reported interval through nodes whose own
+ * intervals end before the range. When the reported intervals are spread
+ * over different branches this happens for each of them. Short results and
+ * intervals that are close together in the order cost less. O(log n + k)
+ * needs the intervals ordered by their upper endpoints as well, as in a
+ * priority search tree, where the overlap with [low, high] is the query
+ * "starts at most high and ends at least low". Keeping such a tree
+ * balanced costs O(log n) per rotation, so the AVL updates would become
+ * O(log^2 n), and it is not done here.
+ * <p>
+ * The nodes are the intervals returned by the queries, and they are never
+ * changed, so an interval stays valid after it is deleted from the tree.
+ */
+public class IntervalTree<T extends Comparable<T>> implements Iterable<IntervalTree.Interval<T>> {
+
+	private Node<T> root;
+	private int size;
+	private int modCount; // number of structural changes, checked by iterators
+
+	/**
+	 * A closed interval [low, high]
+	 */
+	public static class Interval<T extends Comparable<T>> implements Comparable<Interval<T>> {
+		private final T low, high;
+
+		/**
+		 * @param low  The lower endpoint
+		 * @param high The upper endpoint
+		 * @throws IllegalArgumentException if <code>low</code> is greater than <code>high</code>
+		 */
+		public Interval(T low, T high) {
+			if (low.compareTo(high) > 0) {
+				throw new IllegalArgumentException("Empty interval [" + low + ", " + high + "]");
+			}
+			this.low = low;
+			this.high = high;
+		}
+
+		/**
+		 * @return The lower endpoint
+		 */
+		public T low() {
+			return low;
+		}
+
+		/**
+		 * @return The upper endpoint
+		 */
+		public T high() {
+			return high;
+		}
+
+		/**
+		 * @param point A point
+		 * @return true if the point is within the interval, endpoints included
+		 */
+		public boolean contains(T point) {
+			return low.compareTo(point) <= 0 && high.compareTo(point) >= 0;
+		}
+
+		/**
+		 * @param low  The lower endpoint of a range
+		 * @param high The upper endpoint of a range
+		 * @return true if the interval and the closed range have a common point
+		 */
+		public boolean overlaps(T low, T high) {
+			return this.low.compareTo(high) <= 0 && this.high.compareTo(low) >= 0;
+		}
+
+		/**
+		 * Orders intervals by their lower endpoints, then by their upper endpoints
+		 */
+		public int compareTo(Interval<T> other) {
+			int comparison = low.compareTo(other.low);
+			return comparison != 0 ? comparison : high.compareTo(other.high);
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Interval)) {
+				return false;
+			}
+			Interval<?> interval = (Interval<?>) object;
+			return low.equals(interval.low) && high.equals(interval.high);
+		}
+
+		public int hashCode() {
+			return 31 * low.hashCode() + high.hashCode();
+		}
+
+		public String toString() {
+			return "[" + low + ", " + high + "]";
+		}
+	}
+
+	/**
+	 * Basic storage units in a tree. Each node is an interval and has a
+	 * left and right children fields.
+	 * <p>
+	 * If a node does not have a left and/or right child, its right and/or left
+	 * child is null.
+	 */
+	private static class Node<T extends Comparable<T>> extends Interval<T> {
+		private Node<T> left, right; // left and right subtrees
+		private T max; // the largest upper endpoint in the subtree rooted here
+		private int height = 1;
+
+		public Node(T low, T high) {
+			super(low, high);
+			max = high;
+		}
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @return the number of intervals in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(root);
+	}
+
+	/**
+	 * Removes all the intervals of the tree
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns true if the interval is in the tree
+	 *
+	 * @param low  The lower endpoint of the interval
+	 * @param high The upper endpoint of the interval
+	 * @return Whether tree contains the interval
+	 */
+	public boolean contains(T low, T high) {
+		Node<T> node = root;
+		while (node != null) {
+			int comparison = compare(node, low, high);
+			if (comparison == 0) {
+				return true;
+			}
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts the interval [low, high] to the tree
+	 * <p>
+	 * If tree already contains the interval,
+	 * no update is done on the tree
+	 *
+	 * @param low  The lower endpoint of the interval
+	 * @param high The upper endpoint of the interval
+	 * @throws IllegalArgumentException if <code>low</code> is greater than <code>high</code>
+	 */
+	public void insert(T low, T high) {
+		if (low.compareTo(high) > 0) {
+			throw new IllegalArgumentException("Empty interval [" + low + ", " + high + "]");
+		}
+		int size = this.size;
+		root = insert(root, low, high);
+		if (this.size != size) {
+			modCount++;
+		}
+	}
+
+	/**
+	 * Inserts the interval to the subtree of node
+	 *
+	 * @param node Parent node of the subtree
+	 * @param low  The lower endpoint of the interval
+	 * @param high The upper endpoint of the interval
+	 * @return The node at that location after insertion
+	 */
+	private Node<T> insert(Node<T> node, T low, T high) {
+		if (node == null) {
+			size++;
+			return new Node<T>(low, high);
+		}
+		int comparison = compare(node, low, high);
+		if (comparison == 0) {
+			return node;
+		} else if (comparison > 0) {
+			node.left = insert(node.left, low, high);
+		} else {
+			node.right = insert(node.right, low, high);
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Deletes the interval [low, high]
+	 * <p>
+	 * If tree does not contain the interval,
+	 * no update is done on the tree
+	 *
+	 * @param low  The lower endpoint of the interval
+	 * @param high The upper endpoint of the interval
+	 */
+	public void delete(T low, T high) {
+		int size = this.size;
+		root = delete(root, low, high);
+		if (this.size != size) {
+			modCount++;
+		}
+	}
+
+	/**
+	 * Deletes the interval from the subtree of node in a single descent,
+	 * rebalancing the nodes on the way back up. A node with two children is
+	 * replaced by the node of the next interval, the intervals are not changed.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param low  The lower endpoint of the interval
+	 * @param high The upper endpoint of the interval
+	 * @return The node at that location after deletion
+	 */
+	private Node<T> delete(Node<T> node, T low, T high) {
+		if (node == null) {
+			return null;
+		}
+		int comparison = compare(node, low, high);
+		if (comparison > 0) {
+			node.left = delete(node.left, low, high);
+		} else if (comparison < 0) {
+			node.right = delete(node.right, low, high);
+		} else {
+			size--;
+			if (node.left == null) {
+				return node.right;
+			} else if (node.right == null) {
+				return node.left;
+			}
+			Node<T> successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			successor.right = deleteMostLeftNode(node.right);
+			successor.left = node.left;
+			node = successor;
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 * without any comparison, rebalancing the nodes on the way back up.
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private Node<T> deleteMostLeftNode(Node<T> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = deleteMostLeftNode(node.left);
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * @param node A node
+	 * @param low  The lower endpoint of an interval
+	 * @param high The upper endpoint of the interval
+	 * @return The sign of the comparison of the interval of the node with the given one
+	 */
+	private int compare(Node<T> node, T low, T high) {
+		int comparison = node.low().compareTo(low);
+		return comparison != 0 ? comparison : node.high().compareTo(high);
+	}
+
+	/**
+	 * Returns the intervals that contain the point, in ascending order.
+	 * <p>
+	 * The intervals are found while the iterator advances. Each one costs
+	 * O(log n) steps at most, so k intervals cost O(log n + k log n) in the
+	 * worst case (see the class comment), and an empty result costs
+	 * O(log n).
+	 *
+	 * @param point The point
+	 * @return An iterator over the intervals [low, high] with low &lt;= point &lt;= high
+	 */
+	public Iterator<Interval<T>> stab(T point) {
+		return new OverlapIterator(point, point);
+	}
+
+	/**
+	 * Returns the intervals that overlap the closed range [low, high], in
+	 * ascending order, see stab.
+	 *
+	 * @param low  The lower endpoint of the range
+	 * @param high The upper endpoint of the range
+	 * @return An iterator over the intervals with a common point with the range
+	 */
+	public Iterator<Interval<T>> overlapping(T low, T high) {
+		if (low.compareTo(high) > 0) {
+			return Collections.emptyIterator();
+		}
+		return new OverlapIterator(low, high);
+	}
+
+	/**
+	 * @return An iterator over all the intervals in ascending order
+	 */
+	public Iterator<Interval<T>> iterator() {
+		return new OverlapIterator(null, null);
+	}
+
+	/**
+	 * Visits the intervals that overlap a range in order. The stack holds
+	 * the nodes whose left subtrees are being visited. Subtrees whose
+	 * largest upper endpoint is below the range are not entered, and the
+	 * iteration ends at the first interval that starts after the range.
+	 */
+	private class OverlapIterator implements Iterator<Interval<T>> {
+		private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+		private final T low, high; // the range, null if unbounded
+		private Node<T> next;
+		private Node<T> lastReturned;
+		private int expectedModCount = modCount;
+
+		/**
+		 * @param low  The lower endpoint of the range, or null
+		 * @param high The upper endpoint of the range, or null
+		 */
+		OverlapIterator(T low, T high) {
+			this.low = low;
+			this.high = high;
+			pushLeft(root);
+			next = advance();
+		}
+
+		/**
+		 * Pushes the node and its left descendants whose subtrees
+		 * may have intervals that end within the range
+		 *
+		 * @param node The root of a subtree
+		 */
+		private void pushLeft(Node<T> node) {
+			while (node != null && (low == null || node.max.compareTo(low) >= 0)) {
+				stack.push(node);
+				node = node.left;
+			}
+		}
+
+		/**
+		 * @return The next node in order that overlaps the range, or null
+		 */
+		private Node<T> advance() {
+			while (!stack.isEmpty()) {
+				Node<T> node = stack.pop();
+				if (high != null && node.low().compareTo(high) > 0) {
+					// every following interval starts after the range
+					stack.clear();
+					return null;
+				}
+				pushLeft(node.right);
+				if (low == null || node.high().compareTo(low) >= 0) {
+					return node;
+				}
+			}
+			return null;
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Interval<T> next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = advance();
+			return lastReturned;
+		}
+
+		/**
+		 * Deletes the last returned interval. The stack is rebuilt, since
+		 * the rotations may have moved the nodes on it.
+		 */
+		public void remove() {
+			if (lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			delete(lastReturned.low(), lastReturned.high());
+			expectedModCount = modCount;
+			lastReturned = null;
+			if (next != null) {
+				seek(next);
+			}
+		}
+
+		/**
+		 * Fills the stack with the path from the root to a node and
+		 * makes it the next node
+		 *
+		 * @param target A node of the tree
+		 */
+		private void seek(Node<T> target) {
+			stack.clear();
+			Node<T> node = root;
+			while (node != target) {
+				if (compare(node, target.low(), target.high()) > 0) {
+					stack.push(node);
+					node = node.left;
+				} else {
+					node = node.right;
+				}
+			}
+			pushLeft(node.right);
+		}
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private Node<T> makeBalanced(Node<T> node) {
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			if (height(node.left.left) >= height(node.left.right)) {
+				return rightRotate(node);
+			} else {
+				return leftRightRotate(node);
+			}
+		} else if (balance < -1) {
+			if (height(node.right.right) >= height(node.right.left)) {
+				return leftRotate(node);
+			} else {
+				return rightLeftRotate(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private Node<T> rightRotate(Node<T> node) {
+		Node<T> leftNode = node.left;
+		node.left = leftNode.right;
+		leftNode.right = node;
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private Node<T> leftRotate(Node<T> node) {
+		Node<T> rightNode = node.right;
+		node.right = rightNode.left;
+		rightNode.left = node;
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Makes the necessary left-right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private Node<T> leftRightRotate(Node<T> node) {
+		node.left = leftRotate(node.left);
+		return rightRotate(node);
+	}
+
+	/**
+	 * Makes the necessary right-left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private Node<T> rightLeftRotate(Node<T> node) {
+		node.right = rightRotate(node.right);
+		return leftRotate(node);
+	}
+
+	/**
+	 * Recalculates the height and the largest upper endpoint of the given
+	 * node from its children. Must be called whenever a child of the node changes.
+	 *
+	 * @param node The node to be updated
+	 */
+	private void update(Node<T> node) {
+		node.height = Integer.max(height(node.left), height(node.right)) + 1;
+		T max = node.high();
+		if (node.left != null && node.left.max.compareTo(max) > 0) {
+			max = node.left.max;
+		}
+		if (node.right != null && node.right.max.compareTo(max) > 0) {
+			max = node.right.max;
+		}
+		node.max = max;
+	}
+
+	/**
+	 * @param node The node whose height is requested
+	 * @return The height of the node, 0 for null
+	 */
+	private int height(Node<T> node) {
+		if (node == null) {
+			return 0;
+		}
+		return node.height;
+	}
+}
@@ -0,0 +1,90 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the keys of a tree to bytes and back, for tree snapshots.
+ * <p>
+ * A key is encoded at the position of a buffer and has to be decoded from
+ * the same bytes, so that the snapshot can be read without knowing the
+ * length of the keys in advance.
+ */
+public interface KeyCodec<T> {
+
+	/**
+	 * Keys of type Integer, 4 bytes each
+	 */
+	public static final KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+		public int encodedSize(Integer key) {
+			return Integer.BYTES;
+		}
+
+		public void encode(Integer key, ByteBuffer buffer) {
+			buffer.putInt(key);
+		}
+
+		public Integer decode(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+	};
+
+	/**
+	 * Keys of type Long, 8 bytes each
+	 */
+	public static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+		public int encodedSize(Long key) {
+			return Long.BYTES;
+		}
+
+		public void encode(Long key, ByteBuffer buffer) {
+			buffer.putLong(key);
+		}
+
+		public Long decode(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+	};
+
+	/**
+	 * Keys of type String, as the length and the UTF-8 bytes of the key
+	 */
+	public static final KeyCodec<String> STRING = new KeyCodec<String>() {
+		public int encodedSize(String key) {
+			return Integer.BYTES + key.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		public void encode(String key, ByteBuffer buffer) {
+			byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+
+		public String decode(ByteBuffer buffer) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+
+	/**
+	 * @param key A key
+	 * @return The number of bytes written by <code>encode(key, buffer)</code>
+	 */
+	public int encodedSize(T key);
+
+	/**
+	 * Writes the key at the position of the buffer
+	 *
+	 * @param key    The key to be written
+	 * @param buffer A buffer with at least <code>encodedSize(key)</code> bytes remaining
+	 */
+	public void encode(T key, ByteBuffer buffer);
+
+	/**
+	 * Reads a key at the position of the buffer
+	 *
+	 * @param buffer The buffer positioned at an encoded key
+	 * @return The key
+	 * @throws java.nio.BufferUnderflowException if the buffer ends inside the key
+	 */
+	public T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,513 @@
+/**
+ * An AVL tree specialized for <code>long</code> keys.
+ * <p>
+ * It offers the operations of {@link AVLTreeInterface} without boxing the keys:
+ * every node stores a primitive key, comparisons are primitive comparisons and
+ * traversals return primitive arrays.
+ */
+public class LongAVLTree {
+
+	private Node root;
+
+	/**
+	 * Basic storage units in a tree. Each Node object has a left and right
+	 * children fields.
+	 * <p>
+	 * If a node does not have a left and/or right child, its right and/or left
+	 * child is null.
+	 */
+	private static class Node {
+		private long data;
+		private Node left, right; // left and right subtrees
+		private int height = 1;
+		private int size = 1; // number of nodes in the subtree rooted here
+
+		public Node(long data) {
+			this.data = data;
+		}
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @param node The node whose subtree size is requested
+	 * @return Number of nodes in the subtree of the given node
+	 */
+	private static int size(Node node) {
+		if (node == null) {
+			return 0;
+		}
+		return node.size;
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * Returns true if the key in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(long element) {
+		return searchNode(element) != null;
+	}
+
+	/**
+	 * Searches an element starting from the root
+	 *
+	 * @param element The element to be searched
+	 * @return The Node containing element or null if element couldn't found
+	 */
+	private Node searchNode(long element) {
+		Node node = root;
+		while (node != null) {
+			if (element == node.data) {
+				return node;
+			}
+			node = element < node.data ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(long element) {
+		root = insert(root, element);
+	}
+
+	/**
+	 * Inserts the element in the parameter to the subtree of node
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be added
+	 * @return The node at that location after insertion
+	 */
+	private Node insert(Node node, long element) {
+		if (node == null) {
+			return new Node(element);
+		}
+		if (element == node.data) {
+			return node;
+		} else if (element < node.data) {
+			node.left = insert(node.left, element);
+		} else {
+			node.right = insert(node.right, element);
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(long element) {
+		root = delete(root, element);
+	}
+
+	/**
+	 * Deletes the element in the parameter from the subtree of node
+	 * in a single descent, rebalancing the nodes on the way back up.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be deleted
+	 * @return The node at that location after deletion
+	 */
+	private Node delete(Node node, long element) {
+		if (node == null) {
+			return null;
+		}
+		if (element < node.data) {
+			node.left = delete(node.left, element);
+		} else if (element > node.data) {
+			node.right = delete(node.right, element);
+		} else if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
+		} else {
+			Node mostLeft = node.right;
+			while (mostLeft.left != null) {
+				mostLeft = mostLeft.left;
+			}
+			node.data = mostLeft.data;
+			node.right = deleteMostLeftNode(node.right);
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private Node deleteMostLeftNode(Node node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		node.left = deleteMostLeftNode(node.left);
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private static Node makeBalanced(Node node) {
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1) {
+			if (height(node.left.left) < height(node.left.right)) {
+				node.left = leftRotate(node.left);
+			}
+			return rightRotate(node);
+		} else if (balance < -1) {
+			if (height(node.right.right) < height(node.right.left)) {
+				node.right = rightRotate(node.right);
+			}
+			return leftRotate(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private static Node rightRotate(Node node) {
+		Node leftNode = node.left;
+		node.left = leftNode.right;
+		leftNode.right = node;
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private static Node leftRotate(Node node) {
+		Node rightNode = node.right;
+		node.right = rightNode.left;
+		rightNode.left = node;
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Recalculates the height and the subtree size of the given node
+	 * from its children.
+	 *
+	 * @param node The node to be updated
+	 */
+	private static void update(Node node) {
+		node.height = Integer.max(height(node.left), height(node.right)) + 1;
+		node.size = size(node.left) + size(node.right) + 1;
+	}
+
+	/**
+	 * @param node The node whose height is to be calculated
+	 * @return The height of the node
+	 */
+	private static int height(Node node) {
+		if (node == null) {
+			return 0;
+		}
+		return node.height;
+	}
+
+	/**
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(root);
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An array that stores the keys in the order they are visited
+	 */
+	public long[] inOrderTraversal() {
+		long[] keys = new long[size()];
+		inOrderTraversal(keys, 0, root);
+		return keys;
+	}
+
+	/**
+	 * The recursive function to traverse tree in order.
+	 *
+	 * @param keys  Keys traversed
+	 * @param index The position of the next key in <code>keys</code>
+	 * @param node  The next node to be traversed
+	 * @return The position after the keys of the subtree
+	 */
+	private static int inOrderTraversal(long[] keys, int index, Node node) {
+		if (node == null) {
+			return index;
+		}
+		index = inOrderTraversal(keys, index, node.left);
+		keys[index++] = node.data;
+		return inOrderTraversal(keys, index, node.right);
+	}
+
+	/**
+	 * Builds a tree from keys given in ascending order in linear time.
+	 *
+	 * @param elements The distinct keys in ascending order
+	 * @return A perfectly balanced tree of the keys
+	 * @throws IllegalArgumentException if the keys are not in strictly ascending order
+	 */
+	public static LongAVLTree fromSorted(long[] elements) {
+		for (int i = 1; i < elements.length; i++) {
+			if (elements[i - 1] >= elements[i]) {
+				throw new IllegalArgumentException("Elements are not in ascending order: " + elements[i]);
+			}
+		}
+		LongAVLTree tree = new LongAVLTree();
+		tree.root = build(elements, 0, elements.length);
+		return tree;
+	}
+
+	/**
+	 * Builds a perfectly balanced subtree from a range of sorted keys
+	 *
+	 * @param sorted The keys in ascending order
+	 * @param from   First index of the range
+	 * @param to     Index after the range
+	 * @return The root of the subtree, or null if the range is empty
+	 */
+	private static Node build(long[] sorted, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		Node node = new Node(sorted[middle]);
+		node.left = build(sorted, from, middle);
+		node.right = build(sorted, middle + 1, to);
+		update(node);
+		return node;
+	}
+
+	/**
+	 * Makes an immutable copy of the tree for fast lookups.
+	 * The tree itself is not changed.
+	 *
+	 * @return The keys of the tree in the Eytzinger layout
+	 * @see FrozenLongAVLTree
+	 */
+	public FrozenLongAVLTree freeze() {
+		return new FrozenLongAVLTree(inOrderTraversal());
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An array that stores the keys in the order they are visited
+	 */
+	public long[] bfTraverse() {
+		int size = size();
+		long[] keys = new long[size];
+		Node[] queue = new Node[size];
+		int head = 0, tail = 0;
+		if (root != null) {
+			queue[tail++] = root;
+		}
+		while (head < tail) {
+			Node node = queue[head];
+			keys[head++] = node.data;
+			if (node.left != null) {
+				queue[tail++] = node.left;
+			}
+			if (node.right != null) {
+				queue[tail++] = node.right;
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(long element1, long element2) {
+		Node node = root;
+		// descend while both elements are on the same side
+		while (node != null && element1 != node.data && element2 != node.data
+				&& (element1 < node.data) == (element2 < node.data)) {
+			node = element1 < node.data ? node.left : node.right;
+		}
+		if (node == null) {
+			return false;
+		}
+		int level1 = levelBelow(node, element1);
+		int level2 = levelBelow(node, element2);
+		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+		return level1 >= 2 && level1 == level2;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @return The distance of the element to node, or -1 if it is not in the subtree
+	 */
+	private static int levelBelow(Node node, long element) {
+		int level = 0;
+		while (node != null) {
+			if (element == node.data) {
+				return level;
+			}
+			node = element < node.data ? node.left : node.right;
+			level++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(long lower, long upper) {
+		if (lower >= upper) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(long element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(long element, boolean inclusive) {
+		int count = 0;
+		Node node = root;
+		while (node != null) {
+			if (node.data < element || (node.data == element && inclusive)) {
+				count += size(node.left) + 1;
+				node = node.right;
+			} else if (node.data == element) {
+				return count + size(node.left);
+			} else {
+				node = node.left;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(long element) {
+		int count = 0;
+		Node node = root;
+		while (node != null) {
+			if (element == node.data) {
+				return count + size(node.left);
+			} else if (element < node.data) {
+				node = node.left;
+			} else {
+				count += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public long select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.data;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 * BalanceFactor: height(leftSubtree) - height(rightSubtree)
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data, 0 if there is no such node
+	 */
+	public int balanceFactor(long data) {
+		Node node = searchNode(data);
+		if (node == null) {
+			return 0;
+		}
+		return height(node.left) - height(node.right);
+	}
+}
@@ -0,0 +1,763 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An AVL tree of <code>long</code> keys whose nodes live in a memory mapped
+ * file instead of the Java heap.
+ * <p>
+ * The file starts with a header that stores the root, the head of the free
+ * list and the number of used slots, followed by fixed size node records:
+ * <pre>
+ * key (8 bytes) | left (4) | right (4) | height (4) | size (4)
+ * </pre>
+ * Children are record indices and index 0 is a sentinel with height and
+ * size 0 that stands for an empty subtree. Rotations are done in place in the
+ * mapped records, so opening an existing file only reads the header.
+ * <p>
+ * The file is written by the operating system in the background, call
+ * {@link #flush()} or {@link #close()} to force the changes to the disk.
+ * A single mapping is limited to 2 GB, that is about 89 million keys.
+ */
+public class MappedAVLTree implements AVLTreeInterface<Long>, Closeable {
+
+	private static final long MAGIC = 0x41564C5452454531L; // "AVLTREE1"
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int ROOT_OFFSET = 8;
+	private static final int FREE_HEAD_OFFSET = 12;
+	private static final int USED_OFFSET = 16;
+	private static final int HEADER_SIZE = 32;
+
+	private static final int KEY = 0;
+	private static final int LEFT = 8;
+	private static final int RIGHT = 12;
+	private static final int HEIGHT = 16;
+	private static final int SIZE = 20;
+	private static final int NODE_SIZE = 24;
+
+	private static final int NIL = 0;
+	private static final int INITIAL_NODES = 1024;
+	private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+
+	/**
+	 * Opens the tree stored in the file, or creates an empty tree
+	 * if the file does not exist or is empty.
+	 *
+	 * @param file The file of the tree
+	 * @throws IOException if the file cannot be opened or is not a tree file
+	 */
+	public MappedAVLTree(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long length = channel.size();
+		if (length == 0) {
+			map(HEADER_SIZE + (long) INITIAL_NODES * NODE_SIZE);
+			buffer.putLong(MAGIC_OFFSET, MAGIC);
+			setHeader(ROOT_OFFSET, NIL);
+			setHeader(FREE_HEAD_OFFSET, NIL);
+			setHeader(USED_OFFSET, 1);
+		} else {
+			map(length);
+			if (buffer.getLong(MAGIC_OFFSET) != MAGIC) {
+				channel.close();
+				throw new IOException(file + " is not a tree file");
+			}
+		}
+	}
+
+	/**
+	 * Maps the first <code>length</code> bytes of the file,
+	 * extending the file if necessary.
+	 *
+	 * @param length The length of the mapping
+	 */
+	private void map(long length) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+	}
+
+	private int header(int offset) {
+		return buffer.getInt(offset);
+	}
+
+	private void setHeader(int offset, int value) {
+		buffer.putInt(offset, value);
+	}
+
+	/**
+	 * @param node  Index of a node
+	 * @param field Offset of the field in the node record
+	 * @return Offset of the field in the file
+	 */
+	private static int offset(int node, int field) {
+		return HEADER_SIZE + node * NODE_SIZE + field;
+	}
+
+	private long key(int node) {
+		return buffer.getLong(offset(node, KEY));
+	}
+
+	private int left(int node) {
+		return buffer.getInt(offset(node, LEFT));
+	}
+
+	private int right(int node) {
+		return buffer.getInt(offset(node, RIGHT));
+	}
+
+	private int height(int node) {
+		return buffer.getInt(offset(node, HEIGHT));
+	}
+
+	private int size(int node) {
+		return buffer.getInt(offset(node, SIZE));
+	}
+
+	private void setKey(int node, long key) {
+		buffer.putLong(offset(node, KEY), key);
+	}
+
+	private void setLeft(int node, int child) {
+		buffer.putInt(offset(node, LEFT), child);
+	}
+
+	private void setRight(int node, int child) {
+		buffer.putInt(offset(node, RIGHT), child);
+	}
+
+	private int root() {
+		return header(ROOT_OFFSET);
+	}
+
+	/**
+	 * Takes a record from the free list, or a new one after the used records.
+	 * The mapping is doubled when the file is full.
+	 *
+	 * @param element The key of the new node
+	 * @return Index of the new node
+	 */
+	private int newNode(long element) {
+		int node = header(FREE_HEAD_OFFSET);
+		if (node != NIL) {
+			setHeader(FREE_HEAD_OFFSET, left(node));
+		} else {
+			node = header(USED_OFFSET);
+			if (HEADER_SIZE + (long) (node + 1) * NODE_SIZE > buffer.capacity()) {
+				grow();
+			}
+			setHeader(USED_OFFSET, node + 1);
+		}
+		setKey(node, element);
+		setLeft(node, NIL);
+		setRight(node, NIL);
+		buffer.putInt(offset(node, HEIGHT), 1);
+		buffer.putInt(offset(node, SIZE), 1);
+		return node;
+	}
+
+	/**
+	 * Puts the record of a deleted node to the free list
+	 *
+	 * @param node Index of the deleted node
+	 */
+	private void freeNode(int node) {
+		setLeft(node, header(FREE_HEAD_OFFSET));
+		setHeader(FREE_HEAD_OFFSET, node);
+	}
+
+	/**
+	 * Doubles the size of the file and maps it again
+	 */
+	private void grow() {
+		long length = Math.min((long) buffer.capacity() * 2, MAX_MAPPING);
+		if (length <= buffer.capacity()) {
+			throw new IllegalStateException("The tree file cannot hold more than "
+					+ (MAX_MAPPING - HEADER_SIZE) / NODE_SIZE + " nodes");
+		}
+		try {
+			map(length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Forces the changes of the tree to the disk
+	 */
+	public void flush() {
+		buffer.force();
+	}
+
+	/**
+	 * Forces the changes of the tree to the disk and closes the file
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root() == NIL;
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return size(root());
+	}
+
+	/**
+	 * Returns true if the key in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(Long element) {
+		return searchNode(element) != NIL;
+	}
+
+	/**
+	 * Searches an element starting from the root
+	 *
+	 * @param element The element to be searched
+	 * @return Index of the node containing element or NIL if element couldn't found
+	 */
+	private int searchNode(long element) {
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (key == element) {
+				return node;
+			}
+			node = element < key ? left(node) : right(node);
+		}
+		return NIL;
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(Long element) {
+		setHeader(ROOT_OFFSET, insert(root(), element));
+	}
+
+	/**
+	 * Inserts the element in the parameter to the subtree of node
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be added
+	 * @return The node at that location after insertion
+	 */
+	private int insert(int node, long element) {
+		if (node == NIL) {
+			return newNode(element);
+		}
+		long key = key(node);
+		if (element == key) {
+			return node;
+		} else if (element < key) {
+			setLeft(node, insert(left(node), element));
+		} else {
+			setRight(node, insert(right(node), element));
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree
+	 * <p>
+	 * The batch is inserted in ascending order, so consecutive insertions
+	 * share most of their path and find it in the page cache. The root in
+	 * the header is written once per batch.
+	 *
+	 * @param elements Elements to be added
+	 */
+	public void insertAll(Collection<? extends Long> elements) {
+		int node = root();
+		for (long element : sorted(elements)) {
+			node = insert(node, element);
+		}
+		setHeader(ROOT_OFFSET, node);
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(Long element) {
+		setHeader(ROOT_OFFSET, delete(root(), element));
+	}
+
+	/**
+	 * Deletes all the elements in the parameter
+	 * <p>
+	 * The batch is deleted in ascending order, so consecutive deletions
+	 * share most of their path and find it in the page cache. The root in
+	 * the header is written once per batch.
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	public void deleteAll(Collection<? extends Long> elements) {
+		int node = root();
+		for (long element : sorted(elements)) {
+			node = delete(node, element);
+		}
+		setHeader(ROOT_OFFSET, node);
+	}
+
+	/**
+	 * @param elements A batch of elements
+	 * @return The elements of the batch in ascending order
+	 */
+	private static long[] sorted(Collection<? extends Long> elements) {
+		long[] batch = new long[elements.size()];
+		int i = 0;
+		for (Long element : elements) {
+			batch[i++] = element;
+		}
+		Arrays.sort(batch);
+		return batch;
+	}
+
+	/**
+	 * Deletes the element in the parameter from the subtree of node
+	 * in a single descent, rebalancing the nodes on the way back up.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be deleted
+	 * @return The node at that location after deletion
+	 */
+	private int delete(int node, long element) {
+		if (node == NIL) {
+			return NIL;
+		}
+		long key = key(node);
+		if (element < key) {
+			setLeft(node, delete(left(node), element));
+		} else if (element > key) {
+			setRight(node, delete(right(node), element));
+		} else if (left(node) == NIL || right(node) == NIL) {
+			int child = left(node) == NIL ? right(node) : left(node);
+			freeNode(node);
+			return child;
+		} else {
+			int mostLeft = right(node);
+			while (left(mostLeft) != NIL) {
+				mostLeft = left(mostLeft);
+			}
+			setKey(node, key(mostLeft));
+			setRight(node, deleteMostLeftNode(right(node)));
+		}
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The node at that location after deletion
+	 */
+	private int deleteMostLeftNode(int node) {
+		if (left(node) == NIL) {
+			int child = right(node);
+			freeNode(node);
+			return child;
+		}
+		setLeft(node, deleteMostLeftNode(left(node)));
+		update(node);
+		return makeBalanced(node);
+	}
+
+	/**
+	 * Calculates the balance factor of the given node,
+	 * and makes rotation if necessary.
+	 * @param node The node whose balance is controlled
+	 * @return The node at that location after rotation
+	 */
+	private int makeBalanced(int node) {
+		int balance = height(left(node)) - height(right(node));
+		if (balance > 1) {
+			if (height(left(left(node))) >= height(right(left(node)))) {
+				return rightRotate(node);
+			} else {
+				return leftRightRotate(node);
+			}
+		} else if (balance < -1) {
+			if (height(right(right(node))) >= height(left(right(node)))) {
+				return leftRotate(node);
+			} else {
+				return rightLeftRotate(node);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Makes the necessary right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private int rightRotate(int node) {
+		int leftNode = left(node);
+		setLeft(node, right(leftNode));
+		setRight(leftNode, node);
+		update(node);
+		update(leftNode);
+		return leftNode;
+	}
+
+	/**
+	 * Makes the necessary left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after rotation
+	 */
+	private int leftRotate(int node) {
+		int rightNode = right(node);
+		setRight(node, left(rightNode));
+		setLeft(rightNode, node);
+		update(node);
+		update(rightNode);
+		return rightNode;
+	}
+
+	/**
+	 * Makes the necessary left-right rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private int leftRightRotate(int node) {
+		setLeft(node, leftRotate(left(node)));
+		return rightRotate(node);
+	}
+
+	/**
+	 * Makes the necessary right-left rotation to maintain balance
+	 * @param node The node to be rotated
+	 * @return The parent of the given node after double rotation
+	 */
+	private int rightLeftRotate(int node) {
+		setRight(node, rightRotate(right(node)));
+		return leftRotate(node);
+	}
+
+	/**
+	 * Recalculates the height and the subtree size of the given node
+	 * from its children.
+	 *
+	 * @param node The node to be updated
+	 */
+	private void update(int node) {
+		int left = left(node), right = right(node);
+		buffer.putInt(offset(node, HEIGHT), Integer.max(height(left), height(right)) + 1);
+		buffer.putInt(offset(node, SIZE), size(left) + size(right) + 1);
+	}
+
+	/**
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(root());
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<Long> inOrderTraversal() {
+		ArrayList<Long> list = new ArrayList<>(size());
+		inOrderTraversal(list, root());
+		return list;
+	}
+
+	/**
+	 * The recursive function to traverse tree in order.
+	 *
+	 * @param list List of nodes traversed
+	 * @param node The next node to be traversed
+	 */
+	private void inOrderTraversal(ArrayList<Long> list, int node) {
+		if (node == NIL) {
+			return;
+		}
+		inOrderTraversal(list, left(node));
+		list.add(key(node));
+		inOrderTraversal(list, right(node));
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<Long> bfTraverse() {
+		ArrayList<Long> list = new ArrayList<>(size());
+		int[] queue = new int[size()];
+		int head = 0, tail = 0;
+		if (root() != NIL) {
+			queue[tail++] = root();
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			list.add(key(node));
+			if (left(node) != NIL) {
+				queue[tail++] = left(node);
+			}
+			if (right(node) != NIL) {
+				queue[tail++] = right(node);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(Long element1, Long element2) {
+		long first = element1, second = element2;
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (first == key || second == key || (first < key) != (second < key)) {
+				break;
+			}
+			node = first < key ? left(node) : right(node);
+		}
+		if (node == NIL) {
+			return false;
+		}
+		int level1 = levelBelow(node, first);
+		int level2 = levelBelow(node, second);
+		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+		return level1 >= 2 && level1 == level2;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @return The distance of the element to node, or -1 if it is not in the subtree
+	 */
+	private int levelBelow(int node, long element) {
+		int level = 0;
+		while (node != NIL) {
+			long key = key(node);
+			if (key == element) {
+				return level;
+			}
+			node = element < key ? left(node) : right(node);
+			level++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(Long element) {
+		return levelBelow(root(), element);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public Long parentOf(Long element) {
+		long searched = element;
+		int parent = NIL;
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (key == searched) {
+				return parent == NIL ? null : key(parent);
+			}
+			parent = node;
+			node = searched < key ? left(node) : right(node);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public Long lowestCommonAncestor(Long element1, Long element2) {
+		long first = element1, second = element2;
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (first == key || second == key || (first < key) != (second < key)) {
+				break;
+			}
+			node = first < key ? left(node) : right(node);
+		}
+		if (node == NIL || levelBelow(node, first) < 0 || levelBelow(node, second) < 0) {
+			return null;
+		}
+		return key(node);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(Long lower, Long upper) {
+		if (lower >= upper) {
+			return 0;
+		}
+		return countLessThan(upper, false) - countLessThan(lower, true);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(Long element) {
+		return countLessThan(element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 *
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private int countLessThan(long element, boolean inclusive) {
+		int count = 0;
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (key < element || (key == element && inclusive)) {
+				count += size(left(node)) + 1;
+				node = right(node);
+			} else if (key == element) {
+				return count + size(left(node));
+			} else {
+				node = left(node);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(Long element) {
+		long value = element;
+		int count = 0;
+		int node = root();
+		while (node != NIL) {
+			long key = key(node);
+			if (key == value) {
+				return count + size(left(node));
+			} else if (value < key) {
+				node = left(node);
+			} else {
+				count += size(left(node)) + 1;
+				node = right(node);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public Long select(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		int node = root();
+		while (true) {
+			int leftSize = size(left(node));
+			if (index < leftSize) {
+				node = left(node);
+			} else if (index == leftSize) {
+				return key(node);
+			} else {
+				index -= leftSize + 1;
+				node = right(node);
+			}
+		}
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 * BalanceFactor: height(leftSubtree) - height(rightSubtree)
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data, 0 if there is no such node
+	 */
+	public int balanceFactor(Long data) {
+		int node = searchNode(data);
+		if (node == NIL) {
+			return 0;
+		}
+		return height(left(node)) - height(right(node));
+	}
+}
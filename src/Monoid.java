@@ -0,0 +1,272 @@
+import java.math.BigDecimal;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Summarizes the elements of a tree, for {@link AVLTree#rangeAggregate}.
+ * <p>
+ * Each element is mapped to a summary with <code>of</code>, and the
+ * summaries of neighbouring elements are combined in ascending order of the
+ * elements. <code>combine</code> must be associative and <code>identity</code>
+ * must be its neutral element, but the summaries need not commute, so an
+ * ordered summary such as the first element of a range is possible.
+ * <p>
+ * A tree keeps the summary of every subtree in its nodes, so several values
+ * that are needed together should be combined in one summary object.
+ *
+ * @param <T> Type of the elements
+ * @param <A> Type of the summaries
+ */
+public interface Monoid<T, A> {
+
+	/**
+	 * @return The summary of no elements
+	 */
+	public A identity();
+
+	/**
+	 * @param element An element
+	 * @return The summary of the element alone
+	 */
+	public A of(T element);
+
+	/**
+	 * @param left  The summary of some elements
+	 * @param right The summary of the elements that follow them
+	 * @return The summary of all these elements
+	 */
+	public A combine(A left, A right);
+
+	/**
+	 * Makes a monoid from its parts
+	 *
+	 * @param identity The summary of no elements
+	 * @param value    Maps an element to its summary
+	 * @param combine  Combines two neighbouring summaries
+	 * @return The monoid
+	 */
+	public static <T, A> Monoid<T, A> of(A identity, Function<? super T, ? extends A> value,
+			BinaryOperator<A> combine) {
+		return new Monoid<T, A>() {
+			public A identity() {
+				return identity;
+			}
+
+			public A of(T element) {
+				return value.apply(element);
+			}
+
+			public A combine(A left, A right) {
+				return combine.apply(left, right);
+			}
+		};
+	}
+
+	/**
+	 * @param value Maps an element to its value
+	 * @return The exact sum of the values, zero if there are no elements
+	 */
+	public static <T> Monoid<T, BigDecimal> sum(Function<? super T, BigDecimal> value) {
+		return of(BigDecimal.ZERO, value, BigDecimal::add);
+	}
+
+	/**
+	 * @param value Maps an element to its value
+	 * @return The smallest value, null if there are no elements
+	 */
+	public static <T, V extends Comparable<? super V>> Monoid<T, V> min(Function<? super T, ? extends V> value) {
+		return of(null, value, (left, right) -> left == null || (right != null && right.compareTo(left) < 0) ? right : left);
+	}
+
+	/**
+	 * @param value Maps an element to its value
+	 * @return The largest value, null if there are no elements
+	 */
+	public static <T, V extends Comparable<? super V>> Monoid<T, V> max(Function<? super T, ? extends V> value) {
+		return of(null, value, (left, right) -> left == null || (right != null && right.compareTo(left) > 0) ? right : left);
+	}
+
+	/**
+	 * A monoid whose summaries are primitive longs
+	 *
+	 * @param <T> Type of the elements
+	 */
+	public interface OfLong<T> {
+
+		/**
+		 * @return The summary of no elements
+		 */
+		public long identity();
+
+		/**
+		 * @param element An element
+		 * @return The summary of the element alone
+		 */
+		public long of(T element);
+
+		/**
+		 * @param left  The summary of some elements
+		 * @param right The summary of the elements that follow them
+		 * @return The summary of all these elements
+		 */
+		public long combine(long left, long right);
+
+		/**
+		 * @return The number of elements
+		 */
+		public static <T> OfLong<T> count() {
+			return sum(element -> 1);
+		}
+
+		/**
+		 * @param value Maps an element to its value
+		 * @return The sum of the values, which overflows as long addition does
+		 */
+		public static <T> OfLong<T> sum(ToLongFunction<? super T> value) {
+			return new OfLong<T>() {
+				public long identity() {
+					return 0;
+				}
+
+				public long of(T element) {
+					return value.applyAsLong(element);
+				}
+
+				public long combine(long left, long right) {
+					return left + right;
+				}
+			};
+		}
+
+		/**
+		 * @param value Maps an element to its value
+		 * @return The smallest value, Long.MAX_VALUE if there are no elements
+		 */
+		public static <T> OfLong<T> min(ToLongFunction<? super T> value) {
+			return new OfLong<T>() {
+				public long identity() {
+					return Long.MAX_VALUE;
+				}
+
+				public long of(T element) {
+					return value.applyAsLong(element);
+				}
+
+				public long combine(long left, long right) {
+					return Math.min(left, right);
+				}
+			};
+		}
+
+		/**
+		 * @param value Maps an element to its value
+		 * @return The largest value, Long.MIN_VALUE if there are no elements
+		 */
+		public static <T> OfLong<T> max(ToLongFunction<? super T> value) {
+			return new OfLong<T>() {
+				public long identity() {
+					return Long.MIN_VALUE;
+				}
+
+				public long of(T element) {
+					return value.applyAsLong(element);
+				}
+
+				public long combine(long left, long right) {
+					return Math.max(left, right);
+				}
+			};
+		}
+	}
+
+	/**
+	 * A monoid whose summaries are primitive doubles
+	 *
+	 * @param <T> Type of the elements
+	 */
+	public interface OfDouble<T> {
+
+		/**
+		 * @return The summary of no elements
+		 */
+		public double identity();
+
+		/**
+		 * @param element An element
+		 * @return The summary of the element alone
+		 */
+		public double of(T element);
+
+		/**
+		 * @param left  The summary of some elements
+		 * @param right The summary of the elements that follow them
+		 * @return The summary of all these elements
+		 */
+		public double combine(double left, double right);
+
+		/**
+		 * The sum is grouped by the shape of the tree, so its rounding may
+		 * differ from a sum in ascending order by a few ulps.
+		 *
+		 * @param value Maps an element to its value
+		 * @return The sum of the values
+		 */
+		public static <T> OfDouble<T> sum(ToDoubleFunction<? super T> value) {
+			return new OfDouble<T>() {
+				public double identity() {
+					return 0;
+				}
+
+				public double of(T element) {
+					return value.applyAsDouble(element);
+				}
+
+				public double combine(double left, double right) {
+					return left + right;
+				}
+			};
+		}
+
+		/**
+		 * @param value Maps an element to its value
+		 * @return The smallest value, positive infinity if there are no elements
+		 */
+		public static <T> OfDouble<T> min(ToDoubleFunction<? super T> value) {
+			return new OfDouble<T>() {
+				public double identity() {
+					return Double.POSITIVE_INFINITY;
+				}
+
+				public double of(T element) {
+					return value.applyAsDouble(element);
+				}
+
+				public double combine(double left, double right) {
+					return Math.min(left, right);
+				}
+			};
+		}
+
+		/**
+		 * @param value Maps an element to its value
+		 * @return The largest value, negative infinity if there are no elements
+		 */
+		public static <T> OfDouble<T> max(ToDoubleFunction<? super T> value) {
+			return new OfDouble<T>() {
+				public double identity() {
+					return Double.NEGATIVE_INFINITY;
+				}
+
+				public double of(T element) {
+					return value.applyAsDouble(element);
+				}
+
+				public double combine(double left, double right) {
+					return Math.max(left, right);
+				}
+			};
+		}
+	}
+}
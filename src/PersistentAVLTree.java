@@ -0,0 +1,644 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A persistent AVL tree whose nodes are never changed after they are created.
+ * <p>
+ * Insertion and deletion build a new root that shares every untouched subtree
+ * with the old one, so only the O(log n) nodes on the changed path (and the
+ * nodes rebuilt by rotations) are copied. Old roots stay valid, which makes
+ * {@link #snapshot()} O(1). The current root is published through an atomic
+ * reference, so any thread may read the tree or its snapshots without locks
+ * and concurrent writers retry their update when another writer wins.
+ */
+public class PersistentAVLTree<T extends Comparable<T>> implements AVLTreeInterface<T> {
+
+	private final AtomicReference<Node<T>> root;
+
+	/**
+	 * Basic storage units in a tree. Each Node object has a left and right
+	 * children fields.
+	 * <p>
+	 * If a node does not have a left and/or right child, its right and/or left
+	 * child is null. All the fields are final, so a node can be shared by
+	 * many versions of the tree and read from any thread.
+	 */
+	private static class Node<T> {
+		private final T data;
+		private final Node<T> left, right; // left and right subtrees
+		private final int height;
+		private final int size; // number of nodes in the subtree rooted here
+
+		public Node(T data, Node<T> left, Node<T> right) {
+			this.data = data;
+			this.left = left;
+			this.right = right;
+			this.height = Integer.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+
+	/**
+	 * Creates an empty tree
+	 */
+	public PersistentAVLTree() {
+		this(null);
+	}
+
+	/**
+	 * @param root The root of the new tree, shared with its creator
+	 */
+	private PersistentAVLTree(Node<T> root) {
+		this.root = new AtomicReference<>(root);
+	}
+
+	/**
+	 * Returns a tree with the elements of this tree at the moment of the call.
+	 * <p>
+	 * The snapshot shares all of its nodes with this tree, so it is taken in
+	 * constant time and memory. Later changes of this tree are not seen by the
+	 * snapshot and changes of the snapshot are not seen by this tree.
+	 *
+	 * @return A snapshot of the tree
+	 */
+	public PersistentAVLTree<T> snapshot() {
+		return new PersistentAVLTree<>(root.get());
+	}
+
+	/**
+	 * @return true if the tree is empty
+	 */
+	public boolean isEmpty() {
+		return root.get() == null;
+	}
+
+	/**
+	 * @param node The node whose subtree size is requested
+	 * @return Number of nodes in the subtree of the given node
+	 */
+	private static int size(Node<?> node) {
+		if (node == null) {
+			return 0;
+		}
+		return node.size;
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size() {
+		return size(root.get());
+	}
+
+	/**
+	 * Returns true if the object in the parameter
+	 * is in the tree
+	 *
+	 * @param element Element to be searched
+	 * @return Whether tree contains the parameter
+	 */
+	public boolean contains(T element) {
+		return searchNode(root.get(), element) != null;
+	}
+
+	/**
+	 * Searches an element starting from the given node
+	 *
+	 * @param node    The root of the searched subtree
+	 * @param element The element to be searched
+	 * @return The Node containing element or null if element couldn't found
+	 */
+	private static <T extends Comparable<T>> Node<T> searchNode(Node<T> node, T element) {
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return node;
+			}
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Inserts the element in the parameter to the tree
+	 * <p>
+	 * If tree already contains the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be added
+	 */
+	public void insert(T element) {
+		while (true) {
+			Node<T> current = root.get();
+			Node<T> updated = insert(current, element);
+			if (updated == current || root.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Inserts the element in the parameter to the subtree of node
+	 * by copying the nodes on the path to it.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be added
+	 * @return The root of the new subtree, or node itself if element is already in it
+	 */
+	private static <T extends Comparable<T>> Node<T> insert(Node<T> node, T element) {
+		if (node == null) {
+			return new Node<>(element, null, null);
+		}
+		int comparison = node.data.compareTo(element);
+		if (comparison > 0) {
+			Node<T> left = insert(node.left, element);
+			return left == node.left ? node : makeBalanced(node.data, left, node.right);
+		} else if (comparison < 0) {
+			Node<T> right = insert(node.right, element);
+			return right == node.right ? node : makeBalanced(node.data, node.left, right);
+		}
+		return node;
+	}
+
+	/**
+	 * Inserts all the elements in the parameter to the tree
+	 * <p>
+	 * The batch is inserted in ascending order into a new version of the
+	 * tree, which is published at once. Readers and snapshots see either
+	 * none or all of the batch.
+	 *
+	 * @param elements Elements to be added
+	 */
+	public void insertAll(Collection<? extends T> elements) {
+		T[] batch = sorted(elements);
+		while (true) {
+			Node<T> current = root.get();
+			Node<T> updated = current;
+			for (T element : batch) {
+				updated = insert(updated, element);
+			}
+			if (updated == current || root.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the element in the parameter
+	 * <p>
+	 * If tree does not contain the element in the parameter,
+	 * no update is done on the tree
+	 *
+	 * @param element Element to be deleted
+	 */
+	public void delete(T element) {
+		while (true) {
+			Node<T> current = root.get();
+			Node<T> updated = delete(current, element);
+			if (updated == current || root.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Deletes all the elements in the parameter
+	 * <p>
+	 * The batch is deleted in ascending order from a new version of the
+	 * tree, which is published at once. Readers and snapshots see either
+	 * none or all of the batch.
+	 *
+	 * @param elements Elements to be deleted
+	 */
+	public void deleteAll(Collection<? extends T> elements) {
+		T[] batch = sorted(elements);
+		while (true) {
+			Node<T> current = root.get();
+			Node<T> updated = current;
+			for (T element : batch) {
+				updated = delete(updated, element);
+			}
+			if (updated == current || root.compareAndSet(current, updated)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param elements A batch of elements
+	 * @return The elements of the batch in ascending order
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<T>> T[] sorted(Collection<? extends T> elements) {
+		T[] batch = (T[]) elements.toArray(new Comparable<?>[0]);
+		Arrays.sort(batch);
+		return batch;
+	}
+
+	/**
+	 * Deletes the element in the parameter from the subtree of node
+	 * by copying the nodes on the path to it.
+	 *
+	 * @param node Parent node of the subtree
+	 * @param element Element to be deleted
+	 * @return The root of the new subtree, or node itself if element is not in it
+	 */
+	private static <T extends Comparable<T>> Node<T> delete(Node<T> node, T element) {
+		if (node == null) {
+			return null;
+		}
+		int comparison = node.data.compareTo(element);
+		if (comparison > 0) {
+			Node<T> left = delete(node.left, element);
+			return left == node.left ? node : makeBalanced(node.data, left, node.right);
+		} else if (comparison < 0) {
+			Node<T> right = delete(node.right, element);
+			return right == node.right ? node : makeBalanced(node.data, node.left, right);
+		} else if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
+		}
+		Node<T> mostLeft = node.right;
+		while (mostLeft.left != null) {
+			mostLeft = mostLeft.left;
+		}
+		return makeBalanced(mostLeft.data, node.left, deleteMostLeftNode(node.right));
+	}
+
+	/**
+	 * Removes the smallest node in the subtree of given node
+	 *
+	 * @param node The node whose subtree is to be updated
+	 * @return The root of the new subtree
+	 */
+	private static <T> Node<T> deleteMostLeftNode(Node<T> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return makeBalanced(node.data, deleteMostLeftNode(node.left), node.right);
+	}
+
+	/**
+	 * Creates a node from the given data and subtrees,
+	 * and makes rotation if necessary.
+	 * @param data  The data of the new node
+	 * @param left  The left subtree of the new node
+	 * @param right The right subtree of the new node
+	 * @return The root of the new balanced subtree
+	 */
+	private static <T> Node<T> makeBalanced(T data, Node<T> left, Node<T> right) {
+		int balance = height(left) - height(right);
+		if (balance > 1) {
+			if (height(left.left) >= height(left.right)) {
+				return rightRotate(data, left, right);
+			} else {
+				return leftRightRotate(data, left, right);
+			}
+		} else if (balance < -1) {
+			if (height(right.right) >= height(right.left)) {
+				return leftRotate(data, left, right);
+			} else {
+				return rightLeftRotate(data, left, right);
+			}
+		}
+		return new Node<>(data, left, right);
+	}
+
+	/**
+	 * Builds the result of a right rotation on a node made of the given
+	 * data and subtrees, without creating the node itself
+	 * @return The parent of the rotated node
+	 */
+	private static <T> Node<T> rightRotate(T data, Node<T> left, Node<T> right) {
+		return new Node<>(left.data, left.left, new Node<>(data, left.right, right));
+	}
+
+	/**
+	 * Builds the result of a left rotation on a node made of the given
+	 * data and subtrees, without creating the node itself
+	 * @return The parent of the rotated node
+	 */
+	private static <T> Node<T> leftRotate(T data, Node<T> left, Node<T> right) {
+		return new Node<>(right.data, new Node<>(data, left, right.left), right.right);
+	}
+
+	/**
+	 * Builds the result of a left-right rotation on a node made of the given
+	 * data and subtrees, without creating the node itself
+	 * @return The parent of the rotated node
+	 */
+	private static <T> Node<T> leftRightRotate(T data, Node<T> left, Node<T> right) {
+		Node<T> middle = left.right;
+		return new Node<>(middle.data, new Node<>(left.data, left.left, middle.left),
+				new Node<>(data, middle.right, right));
+	}
+
+	/**
+	 * Builds the result of a right-left rotation on a node made of the given
+	 * data and subtrees, without creating the node itself
+	 * @return The parent of the rotated node
+	 */
+	private static <T> Node<T> rightLeftRotate(T data, Node<T> left, Node<T> right) {
+		Node<T> middle = right.left;
+		return new Node<>(middle.data, new Node<>(data, left, middle.left),
+				new Node<>(right.data, middle.right, right.right));
+	}
+
+	/**
+	 * @param node The node whose height is to be calculated
+	 * @return The height of the node
+	 */
+	private static int height(Node<?> node) {
+		if (node == null) {
+			return 0;
+		}
+		return node.height;
+	}
+
+	/**
+	 * The height of a node is defined as the number of edges
+	 * from the node to the deepest leaf.
+	 * The height of a tree is the height of the root.
+	 *
+	 * @return The height of the tree
+	 */
+	public int height() {
+		return height(root.get());
+	}
+
+	/**
+	 * Traverses the tree "in order".
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> inOrderTraversal() {
+		Node<T> node = root.get();
+		ArrayList<T> list = new ArrayList<>(size(node));
+		inOrderTraversal(list, node);
+		return list;
+	}
+
+	/**
+	 * The recursive function to traverse tree in order.
+	 *
+	 * @param list Data traversed
+	 * @param node The next node to be traversed
+	 */
+	private static <T> void inOrderTraversal(ArrayList<T> list, Node<T> node) {
+		if (node == null) {
+			return;
+		}
+		inOrderTraversal(list, node.left);
+		list.add(node.data);
+		inOrderTraversal(list, node.right);
+	}
+
+	/**
+	 * Visits all the nodes in a breadth first manner.
+	 *
+	 * @return An ArrayList that stores the "data" field in nodes visited
+	 */
+	public ArrayList<T> bfTraverse() {
+		Node<T> node = root.get();
+		ArrayList<T> list = new ArrayList<>(size(node));
+		ArrayDeque<Node<T>> queue = new ArrayDeque<>();
+		if (node != null) {
+			queue.add(node);
+		}
+		while (!queue.isEmpty()) {
+			node = queue.poll();
+			list.add(node.data);
+			if (node.left != null) {
+				queue.add(node.left);
+			}
+			if (node.right != null) {
+				queue.add(node.right);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * For two nodes, if their distances to the root is the same and
+	 * their parents are not the same, they are said to be "cousins".
+	 *
+	 * @return true if elements in the parameter are cousins, false otherwise
+	 */
+	public boolean areCousins(T element1, T element2) {
+		Node<T> node = root.get();
+		// descend while both elements are on the same side
+		while (node != null) {
+			int comparison1 = Integer.signum(node.data.compareTo(element1));
+			int comparison2 = Integer.signum(node.data.compareTo(element2));
+			if (comparison1 != comparison2 || comparison1 == 0) {
+				break;
+			}
+			node = comparison1 > 0 ? node.left : node.right;
+		}
+		if (node == null) {
+			return false;
+		}
+		int level1 = levelBelow(node, element1);
+		int level2 = levelBelow(node, element2);
+		// They shouldn't be equal to the each other, their parent must be different and they should appear in the tree.
+		return level1 >= 2 && level1 == level2;
+	}
+
+	/**
+	 * @param node    The node under which the search operation is started
+	 * @param element The element to be searched
+	 * @return The distance of the element to node, or -1 if it is not in the subtree
+	 */
+	private static <T extends Comparable<T>> int levelBelow(Node<T> node, T element) {
+		int level = 0;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return level;
+			}
+			node = comparison > 0 ? node.left : node.right;
+			level++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the distance of the node storing <code>element</code>
+	 * to the root. The depth of the root is 0.
+	 *
+	 * @param element the element whose depth is requested
+	 * @return the depth of the element, or -1 if it is not in the tree
+	 */
+	public int depthOf(T element) {
+		return levelBelow(root.get(), element);
+	}
+
+	/**
+	 * Returns the element stored in the parent of the node
+	 * storing <code>element</code>
+	 *
+	 * @param element the element whose parent is requested
+	 * @return the parent element, or null if the element is the root
+	 * or is not in the tree
+	 */
+	public T parentOf(T element) {
+		Node<T> parent = null;
+		Node<T> node = root.get();
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return parent == null ? null : parent.data;
+			}
+			parent = node;
+			node = comparison > 0 ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the element stored in the deepest node that has both
+	 * elements in its subtree. A node is an ancestor of itself, so
+	 * if one element is an ancestor of the other, it is returned.
+	 *
+	 * @param element1 the first element
+	 * @param element2 the second element
+	 * @return the lowest common ancestor, or null if one of the
+	 * elements is not in the tree
+	 */
+	public T lowestCommonAncestor(T element1, T element2) {
+		Node<T> node = root.get();
+		while (node != null) {
+			int comparison1 = Integer.signum(node.data.compareTo(element1));
+			int comparison2 = Integer.signum(node.data.compareTo(element2));
+			if (comparison1 != comparison2 || comparison1 == 0) {
+				break;
+			}
+			node = comparison1 > 0 ? node.left : node.right;
+		}
+		if (node == null || levelBelow(node, element1) < 0 || levelBelow(node, element2) < 0) {
+			return null;
+		}
+		return node.data;
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * greater than <code>lower</code> and less than <code>upper</code>
+	 * (bounds are not inclusive, i.e., not less than or equal to)
+	 *
+	 * @param lower the lower limit
+	 * @param upper the upper limit
+	 * @return the number of elements within the range
+	 */
+	public int numElementsInRange(T lower, T upper) {
+		if (lower.compareTo(upper) >= 0) {
+			return 0;
+		}
+		Node<T> node = root.get();
+		return countLessThan(node, upper, false) - countLessThan(node, lower, true);
+	}
+
+	/**
+	 * Returns the number of elements in the tree that are
+	 * less than <code>element</code>
+	 *
+	 * @param element the upper limit (not inclusive)
+	 * @return the number of elements smaller than <code>element</code>
+	 */
+	public int countLessThan(T element) {
+		return countLessThan(root.get(), element, false);
+	}
+
+	/**
+	 * Counts the elements less than (or equal to) <code>element</code>
+	 * in the subtree of node
+	 *
+	 * @param node      The root of the subtree
+	 * @param element   The limit
+	 * @param inclusive Whether an element equal to the limit is counted
+	 * @return The number of elements below the limit
+	 */
+	private static <T extends Comparable<T>> int countLessThan(Node<T> node, T element, boolean inclusive) {
+		int count = 0;
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison < 0 || (comparison == 0 && inclusive)) {
+				count += size(node.left) + 1;
+				node = node.right;
+			} else {
+				node = node.left;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the position of <code>element</code> in the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param element the element whose rank is requested
+	 * @return the rank of the element, or -1 if it is not in the tree
+	 */
+	public int rank(T element) {
+		int count = 0;
+		Node<T> node = root.get();
+		while (node != null) {
+			int comparison = node.data.compareTo(element);
+			if (comparison == 0) {
+				return count + size(node.left);
+			} else if (comparison > 0) {
+				node = node.left;
+			} else {
+				count += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the element at the given position of the in order traversal
+	 * of the tree, starting from 0.
+	 *
+	 * @param index the rank of the requested element
+	 * @return the element whose rank is <code>index</code>
+	 * @throws IndexOutOfBoundsException if index is negative or not less than size()
+	 */
+	public T select(int index) {
+		Node<T> node = root.get();
+		if (index < 0 || index >= size(node)) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size(node));
+		}
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.data;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns the balance factor of the node that stores the data
+	 * given as parameter
+	 * BalanceFactor: height(leftSubtree) - height(rightSubtree)
+	 *
+	 * @param data
+	 * @return balance factor of the node storing data, 0 if there is no such node
+	 */
+	public int balanceFactor(T data) {
+		Node<T> node = searchNode(root.get(), data);
+		if (node == null) {
+			return 0;
+		}
+		return height(node.left) - height(node.right);
+	}
+}
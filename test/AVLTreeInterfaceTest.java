@@ -0,0 +1,253 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Runs the same random operations on every implementation of
+ * AVLTreeInterface and on a TreeSet, and compares the answers.
+ * <p>
+ * The shape queries are checked against the tree that
+ * <code>parentOf</code> describes: it must be a binary search tree of the
+ * elements that is balanced like an AVL tree, and the depths, heights,
+ * balance factors, cousins, common ancestors and the breadth first order
+ * must all be the ones of that tree.
+ */
+class AVLTreeInterfaceTest {
+
+	private static final int KEYS = 1 << 14; // the elements are drawn from [0, KEYS)
+	private static final int STEPS = 3000;
+	private static final int CHECK_EVERY = 300;
+
+	/**
+	 * Creates an empty tree
+	 */
+	@FunctionalInterface
+	interface Factory {
+		/**
+		 * @param directory An empty directory for the trees stored in files
+		 * @return An empty tree
+		 */
+		AVLTreeInterface<Long> create(Path directory) throws IOException;
+	}
+
+	/**
+	 * @return The name and the factory of every implementation
+	 */
+	static Stream<Arguments> implementations() {
+		return Stream.of(Arguments.of("AVLTree", (Factory) directory -> new AVLTree<Long>()),
+				Arguments.of("ArrayAVLTree", (Factory) directory -> new ArrayAVLTree<Long>()),
+				Arguments.of("ConcurrentAVLTree", (Factory) directory -> new ConcurrentAVLTree<Long>()),
+				Arguments.of("PersistentAVLTree", (Factory) directory -> new PersistentAVLTree<Long>()),
+				Arguments.of("BPlusAVLTree", (Factory) directory -> new BPlusAVLTree<Long>()),
+				Arguments.of("BoundedAVLTree", (Factory) directory -> new BoundedAVLTree<Long>(KEYS,
+						BoundedAVLTree.EvictionPolicy.oldest())),
+				Arguments.of("MappedAVLTree", (Factory) directory -> new MappedAVLTree(directory.resolve("tree"))),
+				Arguments.of("DurableAVLTree", (Factory) directory -> new DurableAVLTree<>(directory, KeyCodec.LONG)));
+	}
+
+	/**
+	 * Random inserts, deletes and batches agree with a TreeSet
+	 */
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("implementations")
+	void agreesWithTreeSet(String name, Factory factory, @TempDir Path directory) throws IOException {
+		AVLTreeInterface<Long> tree = factory.create(directory);
+		try {
+			TreeSet<Long> expected = new TreeSet<>();
+			Random random = new Random(name.hashCode());
+			check(tree, expected, random);
+			for (int step = 1; step <= STEPS; step++) {
+				int operation = random.nextInt(100);
+				if (operation < 45) {
+					Long element = key(random);
+					tree.insert(element);
+					expected.add(element);
+				} else if (operation < 85) {
+					Long element = key(random);
+					tree.delete(element);
+					expected.remove(element);
+				} else {
+					List<Long> batch = new ArrayList<>();
+					for (int i = random.nextInt(400); i > 0; i--) {
+						batch.add(key(random));
+					}
+					if (operation < 95) {
+						tree.insertAll(batch);
+						expected.addAll(batch);
+					} else {
+						tree.deleteAll(batch);
+						expected.removeAll(batch);
+					}
+				}
+				if (step % CHECK_EVERY == 0) {
+					check(tree, expected, random);
+				}
+			}
+		} finally {
+			if (tree instanceof Closeable) {
+				((Closeable) tree).close();
+			}
+		}
+	}
+
+	/**
+	 * @param random The random numbers
+	 * @return A key that may or may not be in the tree
+	 */
+	private static Long key(Random random) {
+		return (long) random.nextInt(KEYS);
+	}
+
+	/**
+	 * Compares every query of the tree with the TreeSet
+	 *
+	 * @param tree     The tree
+	 * @param expected The same elements in a TreeSet
+	 * @param random   The random numbers of the probes
+	 */
+	private static void check(AVLTreeInterface<Long> tree, TreeSet<Long> expected, Random random) {
+		List<Long> sorted = new ArrayList<>(expected);
+		assertEquals(expected.size(), tree.size());
+		assertEquals(expected.isEmpty(), tree.isEmpty());
+		assertEquals(sorted, tree.inOrderTraversal());
+		for (int i = 0; i < 200; i++) {
+			Long element = key(random);
+			boolean present = expected.contains(element);
+			int less = expected.headSet(element, false).size();
+			assertEquals(present, tree.contains(element), "contains " + element);
+			assertEquals(less, tree.countLessThan(element), "countLessThan " + element);
+			assertEquals(present ? less : -1, tree.rank(element), "rank " + element);
+			Long upper = key(random);
+			int inRange = element < upper ? expected.subSet(element, false, upper, false).size() : 0;
+			assertEquals(inRange, tree.numElementsInRange(element, upper), "range " + element + " " + upper);
+			if (!sorted.isEmpty()) {
+				int index = random.nextInt(sorted.size());
+				assertEquals(sorted.get(index), tree.select(index), "select " + index);
+			}
+		}
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.select(sorted.size()));
+		checkShape(tree, sorted, random);
+	}
+
+	/**
+	 * Rebuilds the tree from <code>parentOf</code> and checks the shape
+	 * queries against it
+	 *
+	 * @param tree   The tree
+	 * @param sorted The elements in ascending order
+	 * @param random The random numbers of the probes
+	 */
+	private static void checkShape(AVLTreeInterface<Long> tree, List<Long> sorted, Random random) {
+		Map<Long, Long> parent = new HashMap<>();
+		Map<Long, Long> left = new HashMap<>();
+		Map<Long, Long> right = new HashMap<>();
+		Long root = null;
+		for (Long element : sorted) {
+			Long up = tree.parentOf(element);
+			parent.put(element, up);
+			if (up == null) {
+				assertNull(root, "two roots");
+				root = element;
+			} else {
+				assertNull((element < up ? left : right).put(up, element), "two children on one side of " + up);
+			}
+		}
+		Map<Long, Integer> depth = new HashMap<>();
+		Map<Long, Integer> height = new HashMap<>();
+		List<Long> inOrder = new ArrayList<>();
+		int treeHeight = walk(root, 0, left, right, depth, height, inOrder);
+		assertEquals(sorted, inOrder, "the parents do not form a search tree of the elements");
+		assertEquals(treeHeight, tree.height());
+		for (Long element : sorted) {
+			assertEquals(depth.get(element), tree.depthOf(element), "depthOf " + element);
+			int balance = height.getOrDefault(left.get(element), 0) - height.getOrDefault(right.get(element), 0);
+			assertTrue(Math.abs(balance) <= 1, element + " is out of balance");
+			assertEquals(balance, tree.balanceFactor(element), "balanceFactor " + element);
+		}
+		List<Long> breadthFirst = new ArrayList<>(sorted);
+		breadthFirst.sort(Comparator.comparing((Long element) -> depth.get(element)).thenComparing(element -> element));
+		assertEquals(breadthFirst, tree.bfTraverse());
+		for (int i = 0; i < 200; i++) {
+			Long first = probe(sorted, random), second = probe(sorted, random);
+			boolean present = depth.containsKey(first) && depth.containsKey(second);
+			boolean cousins = present && depth.get(first).equals(depth.get(second))
+					&& !Objects.equals(parent.get(first), parent.get(second));
+			assertEquals(cousins, tree.areCousins(first, second), "areCousins " + first + " " + second);
+			assertEquals(present ? ancestor(first, second, parent) : null, tree.lowestCommonAncestor(first, second),
+					"lowestCommonAncestor " + first + " " + second);
+			if (!depth.containsKey(first)) {
+				assertEquals(-1, tree.depthOf(first));
+				assertNull(tree.parentOf(first));
+			}
+		}
+	}
+
+	/**
+	 * Walks the subtree in order and records the depth and the height of
+	 * every node, the height of a leaf is 1
+	 *
+	 * @return The height of the subtree, 0 if it is empty
+	 */
+	private static int walk(Long node, int level, Map<Long, Long> left, Map<Long, Long> right,
+			Map<Long, Integer> depth, Map<Long, Integer> height, List<Long> inOrder) {
+		if (node == null) {
+			return 0;
+		}
+		depth.put(node, level);
+		int leftHeight = walk(left.get(node), level + 1, left, right, depth, height, inOrder);
+		inOrder.add(node);
+		int rightHeight = walk(right.get(node), level + 1, left, right, depth, height, inOrder);
+		int nodeHeight = Math.max(leftHeight, rightHeight) + 1;
+		height.put(node, nodeHeight);
+		return nodeHeight;
+	}
+
+	/**
+	 * @param sorted The elements
+	 * @param random The random numbers
+	 * @return An element of the tree most of the time, a random key otherwise
+	 */
+	private static Long probe(List<Long> sorted, Random random) {
+		if (sorted.isEmpty() || random.nextInt(8) == 0) {
+			return key(random);
+		}
+		return sorted.get(random.nextInt(sorted.size()));
+	}
+
+	/**
+	 * @return The deepest element that is an ancestor of both elements
+	 */
+	private static Long ancestor(Long first, Long second, Map<Long, Long> parent) {
+		Set<Long> ancestors = new HashSet<>();
+		for (Long node = first; node != null; node = parent.get(node)) {
+			ancestors.add(node);
+		}
+		Long node = second;
+		while (!ancestors.contains(node)) {
+			node = parent.get(node);
+		}
+		return node;
+	}
+}
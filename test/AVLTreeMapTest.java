@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the same random operations on an AVLTreeMap and a TreeMap and
+ * compares the answers, also through the range views
+ */
+class AVLTreeMapTest {
+
+	private static final int KEYS = 4096; // the keys are drawn from [0, KEYS)
+
+	/**
+	 * Random updates agree with a TreeMap
+	 */
+	@Test
+	void agreesWithTreeMap() {
+		AVLTreeMap<Integer, Integer> map = new AVLTreeMap<>();
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+		Random random = new Random(17);
+		// null removes the mapping
+		BiFunction<Integer, Integer, Integer> remap = (key, value) -> value % 3 == 0 ? null : value + key;
+		for (int step = 1; step <= 40_000; step++) {
+			Integer key = random.nextInt(KEYS), value = random.nextInt(1000);
+			int operation = random.nextInt(8);
+			if (operation < 3) {
+				assertEquals(expected.put(key, value), map.put(key, value), "put " + key);
+			} else if (operation < 5) {
+				assertEquals(expected.remove(key), map.remove(key), "remove " + key);
+			} else if (operation == 5) {
+				assertEquals(expected.merge(key, value, remap), map.merge(key, value, remap), "merge " + key);
+			} else if (operation == 6) {
+				assertEquals(expected.computeIfPresent(key, remap), map.computeIfPresent(key, remap),
+						"computeIfPresent " + key);
+			} else {
+				assertEquals(expected.computeIfAbsent(key, k -> k + 1), map.computeIfAbsent(key, k -> k + 1),
+						"computeIfAbsent " + key);
+			}
+			if (step % 2000 == 0) {
+				check(map, expected, random);
+				checkView(map, expected, random);
+			}
+		}
+	}
+
+	/**
+	 * Polling, removing through iterators and setting values through entries
+	 * agree with a TreeMap
+	 */
+	@Test
+	void iteratorsAndEntriesAgreeWithTreeMap() {
+		AVLTreeMap<Integer, Integer> map = new AVLTreeMap<>();
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+		Random random = new Random(19);
+		for (int i = 0; i < 2000; i++) {
+			Integer key = random.nextInt(KEYS);
+			map.put(key, i);
+			expected.put(key, i);
+		}
+		assertEquals(entry(expected.pollFirstEntry()), entry(map.pollFirstEntry()));
+		assertEquals(entry(expected.pollLastEntry()), entry(map.pollLastEntry()));
+		Iterator<Map.Entry<Integer, Integer>> actual = map.entrySet().iterator();
+		Iterator<Map.Entry<Integer, Integer>> wanted = expected.entrySet().iterator();
+		while (wanted.hasNext()) {
+			Map.Entry<Integer, Integer> next = actual.next(), wantedNext = wanted.next();
+			assertEquals(entry(wantedNext), entry(next));
+			if (next.getKey() % 3 == 0) {
+				actual.remove();
+				wanted.remove();
+			} else if (next.getKey() % 3 == 1) {
+				assertEquals(wantedNext.setValue(-next.getKey()), next.setValue(-next.getKey()));
+			}
+		}
+		assertEquals(wanted.hasNext(), actual.hasNext());
+		check(map, expected, random);
+		Iterator<Integer> keys = map.descendingMap().keySet().iterator();
+		for (Integer key : expected.descendingMap().keySet()) {
+			assertEquals(key, keys.next());
+		}
+		while (!expected.isEmpty()) {
+			assertEquals(entry(expected.pollLastEntry()), entry(map.pollLastEntry()));
+		}
+		assertEquals(0, map.size());
+		assertThrows(NoSuchElementException.class, map::firstKey);
+		assertEquals(null, map.pollFirstEntry());
+	}
+
+	/**
+	 * @param entry An entry, or null
+	 * @return The key and the value of the entry, null if there is no entry
+	 */
+	private static String entry(Map.Entry<Integer, Integer> entry) {
+		return entry == null ? null : entry.getKey() + "=" + entry.getValue();
+	}
+
+	/**
+	 * Compares the mappings and the navigation queries
+	 *
+	 * @param map      The map
+	 * @param expected The same mappings in a TreeMap
+	 * @param random   The random numbers of the probes
+	 */
+	private static void check(NavigableMap<Integer, Integer> map, NavigableMap<Integer, Integer> expected,
+			Random random) {
+		assertEquals(expected.size(), map.size());
+		assertEquals(expected.isEmpty(), map.isEmpty());
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(map.keySet()));
+		assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+		assertEquals(expected, map);
+		assertEquals(expected.hashCode(), map.hashCode());
+		if (!expected.isEmpty()) {
+			assertEquals(entry(expected.firstEntry()), entry(map.firstEntry()));
+			assertEquals(entry(expected.lastEntry()), entry(map.lastEntry()));
+		}
+		for (int i = 0; i < 200; i++) {
+			Integer key = random.nextInt(KEYS + 2) - 1;
+			assertEquals(expected.get(key), map.get(key), "get " + key);
+			assertEquals(expected.containsKey(key), map.containsKey(key), "containsKey " + key);
+			assertEquals(entry(expected.lowerEntry(key)), entry(map.lowerEntry(key)), "lowerEntry " + key);
+			assertEquals(entry(expected.floorEntry(key)), entry(map.floorEntry(key)), "floorEntry " + key);
+			assertEquals(entry(expected.ceilingEntry(key)), entry(map.ceilingEntry(key)), "ceilingEntry " + key);
+			assertEquals(entry(expected.higherEntry(key)), entry(map.higherEntry(key)), "higherEntry " + key);
+		}
+	}
+
+	/**
+	 * Compares a random range view, updates the map through it and compares
+	 * the view again
+	 *
+	 * @param map      The map
+	 * @param expected The same mappings in a TreeMap
+	 * @param random   The random numbers of the view and the updates
+	 */
+	private static void checkView(AVLTreeMap<Integer, Integer> map, TreeMap<Integer, Integer> expected,
+			Random random) {
+		int from = random.nextInt(KEYS), to = from + random.nextInt(KEYS - from + 1);
+		boolean fromInclusive = random.nextBoolean(), toInclusive = random.nextBoolean();
+		List<NavigableMap<Integer, Integer>> views = List.of(
+				map.subMap(from, fromInclusive, to, toInclusive),
+				map.headMap(to, toInclusive),
+				map.tailMap(from, fromInclusive),
+				map.subMap(from, fromInclusive, to, toInclusive).descendingMap());
+		List<NavigableMap<Integer, Integer>> expectedViews = List.of(
+				expected.subMap(from, fromInclusive, to, toInclusive),
+				expected.headMap(to, toInclusive),
+				expected.tailMap(from, fromInclusive),
+				expected.subMap(from, fromInclusive, to, toInclusive).descendingMap());
+		for (int v = 0; v < views.size(); v++) {
+			NavigableMap<Integer, Integer> view = views.get(v), expectedView = expectedViews.get(v);
+			check(view, expectedView, random);
+			for (int i = 0; i < 20 && to - from > 1; i++) {
+				Integer key = from + 1 + random.nextInt(to - from - 1); // inside every view
+				if (random.nextBoolean()) {
+					assertEquals(expectedView.put(key, i), view.put(key, i), "put in view " + key);
+				} else {
+					assertEquals(expectedView.remove(key), view.remove(key), "remove in view " + key);
+				}
+			}
+			check(view, expectedView, random);
+		}
+		check(map, expected, random);
+	}
+}
@@ -0,0 +1,41 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regression cases of BoundedAVLTree
+ */
+class BoundedAVLTreeTest {
+
+	/**
+	 * Both batches build the same tree as applying their elements one by one
+	 * in ascending order
+	 */
+	@Test
+	void batchesAreAppliedInAscendingOrder() {
+		List<Integer> batch = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			batch.add(i);
+		}
+		BoundedAVLTree<Integer> ascending = new BoundedAVLTree<Integer>(2000, BoundedAVLTree.EvictionPolicy.oldest());
+		for (int element : batch) {
+			ascending.insert(element);
+		}
+		Collections.shuffle(batch, new Random(7));
+		BoundedAVLTree<Integer> tree = new BoundedAVLTree<Integer>(2000, BoundedAVLTree.EvictionPolicy.oldest());
+		tree.insertAll(batch);
+		assertEquals(ascending.bfTraverse(), tree.bfTraverse());
+		List<Integer> removed = new ArrayList<>(batch.subList(0, 500));
+		tree.deleteAll(removed);
+		Collections.sort(removed);
+		for (int element : removed) {
+			ascending.delete(element);
+		}
+		assertEquals(ascending.bfTraverse(), tree.bfTraverse());
+	}
+}
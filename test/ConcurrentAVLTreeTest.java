@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regression cases of ConcurrentAVLTree
+ */
+class ConcurrentAVLTreeTest {
+
+	/**
+	 * @return A tree storing 1, 2 and 3
+	 */
+	private static ConcurrentAVLTree<Integer> small() {
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		tree.insertAll(Arrays.asList(1, 2, 3));
+		return tree;
+	}
+
+	/**
+	 * A range above every element used to pop from an empty stack
+	 */
+	@Test
+	void rangeAboveEveryElementIsEmpty() {
+		ConcurrentAVLTree<Integer> tree = small();
+		assertEquals(0, tree.numElementsInRange(5, 10));
+		assertEquals(0, tree.numElementsInRange(3, 10));
+		assertEquals(1, tree.numElementsInRange(2, 10));
+	}
+
+	/**
+	 * The empty tree has no element in any range
+	 */
+	@Test
+	void emptyTreeHasNoElementInRange() {
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		assertEquals(0, tree.numElementsInRange(0, 10));
+		assertEquals(0, tree.countLessThan(10));
+	}
+
+	/**
+	 * Readers of the whole tree see a batch either completely or not at all
+	 */
+	@Test
+	void batchIsSeenWholeOrNotAtAll() throws InterruptedException {
+		int size = 200_000;
+		List<Integer> batch = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			batch.add(i);
+		}
+		Collections.shuffle(batch, new Random(7));
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		AtomicBoolean done = new AtomicBoolean();
+		List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+		Thread reader = new Thread(() -> {
+			while (!done.get()) {
+				seen.add(tree.inOrderTraversal().size());
+				seen.add(tree.numElementsInRange(-1, size));
+			}
+		});
+		reader.start();
+		tree.insertAll(batch);
+		done.set(true);
+		reader.join();
+		for (int count : seen) {
+			assertTrue(count == 0 || count == size, "a read saw " + count + " elements of the batch");
+		}
+		assertEquals(size, tree.size());
+	}
+
+	/**
+	 * A batch builds the same tree as inserting its elements in ascending order
+	 */
+	@Test
+	void batchIsAppliedInAscendingOrder() {
+		List<Integer> batch = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			batch.add(i);
+		}
+		ConcurrentAVLTree<Integer> ascending = new ConcurrentAVLTree<>();
+		for (int element : batch) {
+			ascending.insert(element);
+		}
+		Collections.shuffle(batch, new Random(7));
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		tree.insertAll(batch);
+		assertEquals(ascending.bfTraverse(), tree.bfTraverse());
+		List<Integer> removed = new ArrayList<>(batch.subList(0, 500));
+		tree.deleteAll(removed);
+		Collections.sort(removed);
+		for (int element : removed) {
+			ascending.delete(element);
+		}
+		assertEquals(ascending.bfTraverse(), tree.bfTraverse());
+	}
+
+	/**
+	 * While writers keep adding and deleting odd elements, the reads of larger
+	 * parts of the tree still return every even element, which stays in the
+	 * tree, in ascending order
+	 */
+	@Test
+	void readsDuringWritesSeeTheStableElements() throws InterruptedException {
+		int size = 20_000;
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<>();
+		for (int i = 0; i < size; i++) {
+			tree.insert(2 * i);
+		}
+		AtomicBoolean done = new AtomicBoolean();
+		List<Thread> writers = new ArrayList<>();
+		for (int w = 0; w < 3; w++) {
+			Random random = new Random(w);
+			writers.add(new Thread(() -> {
+				while (!done.get()) {
+					int odd = 2 * random.nextInt(size) + 1;
+					tree.insert(odd);
+					tree.delete(odd);
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+		try {
+			Random random = new Random(11);
+			for (int round = 0; round < 200; round++) {
+				List<Integer> elements = tree.inOrderTraversal();
+				int evens = 0;
+				for (int i = 0; i < elements.size(); i++) {
+					if (i > 0) {
+						assertTrue(elements.get(i - 1) < elements.get(i), "the traversal is not ascending");
+					}
+					if (elements.get(i) % 2 == 0) {
+						assertEquals(2 * evens++, elements.get(i));
+					}
+				}
+				assertEquals(size, evens);
+				int lower = 2 * random.nextInt(size), upper = lower + 2 + 2 * random.nextInt(100);
+				int count = tree.numElementsInRange(lower, upper);
+				assertTrue(count >= (upper - lower) / 2 - 1 && count <= upper - lower - 1, "range count " + count);
+				int rank = tree.rank(upper);
+				assertTrue(rank >= upper / 2 && rank <= upper, "rank " + rank);
+				assertNotNull(tree.lowestCommonAncestor(lower, upper));
+				assertTrue(tree.select(size - 1) >= size - 1);
+			}
+		} finally {
+			done.set(true);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		}
+		assertEquals(size, tree.size());
+	}
+}
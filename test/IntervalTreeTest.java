@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the queries of IntervalTree with a scan of every interval
+ */
+class IntervalTreeTest {
+
+	private static final int POINTS = 2000; // the endpoints are drawn from [0, POINTS)
+
+	/**
+	 * Random inserts and deletes, and the stabbing and overlap queries
+	 * after them, agree with a scan
+	 */
+	@Test
+	void queriesAgreeWithScan() {
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		TreeSet<IntervalTree.Interval<Integer>> expected = new TreeSet<>();
+		Random random = new Random(23);
+		for (int step = 1; step <= 20_000; step++) {
+			IntervalTree.Interval<Integer> interval = interval(random);
+			if (random.nextInt(3) < 2) {
+				tree.insert(interval.low(), interval.high());
+				expected.add(interval);
+			} else {
+				tree.delete(interval.low(), interval.high());
+				expected.remove(interval);
+			}
+			if (step % 1000 == 0) {
+				check(tree, expected, random);
+			}
+		}
+	}
+
+	/**
+	 * Removing through a stabbing iterator deletes exactly the returned
+	 * intervals and keeps reporting the rest
+	 */
+	@Test
+	void removeThroughQueryAgreesWithScan() {
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		TreeSet<IntervalTree.Interval<Integer>> expected = new TreeSet<>();
+		Random random = new Random(29);
+		for (int i = 0; i < 3000; i++) {
+			IntervalTree.Interval<Integer> interval = interval(random);
+			tree.insert(interval.low(), interval.high());
+			expected.add(interval);
+		}
+		for (int round = 0; round < 50; round++) {
+			int point = random.nextInt(POINTS);
+			List<IntervalTree.Interval<Integer>> before = scan(expected, point, point);
+			List<IntervalTree.Interval<Integer>> stabbed = new ArrayList<>();
+			for (Iterator<IntervalTree.Interval<Integer>> iterator = tree.stab(point); iterator.hasNext();) {
+				IntervalTree.Interval<Integer> interval = iterator.next();
+				stabbed.add(interval);
+				if (random.nextBoolean()) {
+					iterator.remove();
+					expected.remove(interval);
+				}
+			}
+			assertEquals(before, stabbed, "stab " + point);
+			check(tree, expected, random);
+		}
+	}
+
+	/**
+	 * An interval whose lower endpoint is greater than its upper endpoint
+	 * is rejected by insert and overlaps nothing as a query
+	 */
+	@Test
+	void emptyIntervals() {
+		IntervalTree<Integer> tree = new IntervalTree<>();
+		tree.insert(1, 5);
+		assertThrows(IllegalArgumentException.class, () -> tree.insert(5, 1));
+		assertFalse(tree.overlapping(4, 2).hasNext());
+		assertEquals(1, tree.size());
+	}
+
+	/**
+	 * @param random The random numbers
+	 * @return A random interval, mostly short
+	 */
+	private static IntervalTree.Interval<Integer> interval(Random random) {
+		int low = random.nextInt(POINTS);
+		int length = random.nextInt(10) == 0 ? random.nextInt(POINTS) : random.nextInt(20);
+		return new IntervalTree.Interval<>(low, Math.min(POINTS - 1, low + length));
+	}
+
+	/**
+	 * @return The intervals of the set with a common point with [low, high], in ascending order
+	 */
+	private static List<IntervalTree.Interval<Integer>> scan(TreeSet<IntervalTree.Interval<Integer>> intervals,
+			int low, int high) {
+		List<IntervalTree.Interval<Integer>> found = new ArrayList<>();
+		for (IntervalTree.Interval<Integer> interval : intervals) {
+			if (interval.low() <= high && interval.high() >= low) {
+				found.add(interval);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param iterator An iterator
+	 * @return The rest of the elements of the iterator
+	 */
+	private static List<IntervalTree.Interval<Integer>> list(Iterator<IntervalTree.Interval<Integer>> iterator) {
+		List<IntervalTree.Interval<Integer>> list = new ArrayList<>();
+		iterator.forEachRemaining(list::add);
+		return list;
+	}
+
+	/**
+	 * Compares the tree with the scans of the set
+	 *
+	 * @param tree     The tree
+	 * @param expected The same intervals
+	 * @param random   The random numbers of the queries
+	 */
+	private static void check(IntervalTree<Integer> tree, TreeSet<IntervalTree.Interval<Integer>> expected,
+			Random random) {
+		assertEquals(expected.size(), tree.size());
+		assertEquals(new ArrayList<>(expected), list(tree.iterator()));
+		for (int i = 0; i < 100; i++) {
+			int point = random.nextInt(POINTS + 2) - 1;
+			assertEquals(scan(expected, point, point), list(tree.stab(point)), "stab " + point);
+			int low = random.nextInt(POINTS + 2) - 1, high = low + random.nextInt(100);
+			assertEquals(scan(expected, low, high), list(tree.overlapping(low, high)),
+					"overlapping " + low + " " + high);
+			IntervalTree.Interval<Integer> interval = interval(random);
+			assertEquals(expected.contains(interval), tree.contains(interval.low(), interval.high()),
+					"contains " + interval);
+		}
+	}
+}